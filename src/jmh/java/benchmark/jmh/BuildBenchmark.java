@@ -0,0 +1,28 @@
+package benchmark.jmh;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import parser.InvalidJsonFormatException;
+
+import java.io.IOException;
+
+/**
+ * Parsing of input file together with link verification and building of the graph
+ */
+public class BuildBenchmark extends GraphBenchmark {
+
+    @Param({"OBJECT", "COMPACT"})
+    public StorageMode storage;
+
+    @Benchmark
+    public App parseFile() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        App app = new App(storage);
+        app.parseFile(file.getPath());
+
+        return app;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark.jmh;
+
+import app.App;
+import app.BatchMode;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch clone of the first entity of every chain in a graph of disjoint chains, planned in
+ * {@link BatchMode#SNAPSHOT} mode on the calling thread or in {@link BatchMode#PARALLEL} mode on 1 to 4 threads.
+ * Clones stay in the graph, so the graph is loaded from its snapshot before every batch and each iteration
+ * is a single batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class CloneBatchBenchmark {
+
+    private static final int CHAIN_LENGTH = 100;
+
+    @Param({"100000", "1000000"})
+    public int entityCount;
+
+    /**
+     * Threads of parallel batch, 0 for snapshot batch
+     */
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    private File snapshot;
+    private int[] roots;
+    private ForkJoinPool pool;
+    private App app;
+
+    @Setup(Level.Trial)
+    public void createSnapshot() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        snapshot = GraphFiles.snapshot(GraphFiles.chains(entityCount, CHAIN_LENGTH));
+
+        roots = new int[entityCount / CHAIN_LENGTH];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = 1 + i * CHAIN_LENGTH;
+        }
+
+        pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    @Setup(Level.Iteration)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = new App(StorageMode.COMPACT);
+        app.parseFile(snapshot.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int cloneAll() {
+        return app.cloneAll(roots, threads == 0 ? BatchMode.SNAPSHOT : BatchMode.PARALLEL, pool).size();
+    }
+}
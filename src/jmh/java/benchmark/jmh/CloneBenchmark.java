@@ -0,0 +1,47 @@
+package benchmark.jmh;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+
+import java.io.IOException;
+
+/**
+ * Clone of entity 1, which reaches the whole chain or cluster graph and most of the random one
+ */
+public class CloneBenchmark extends GraphBenchmark {
+
+    @Param({"OBJECT", "COMPACT"})
+    public StorageMode storage;
+
+    private App app;
+
+    /**
+     * Clones stay in the graph and cyclic graphs reach them, so every clone starts from a freshly loaded graph.
+     * Clone of the smallest graphs takes well under a millisecond, too short for per invocation setup, so each
+     * iteration is a single clone timed on its own and the graph is loaded again before the next iteration.
+     */
+    @Setup(Level.Iteration)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = new App(storage);
+        app.parseFile(file.getPath());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 30)
+    public CloneResult cloneRoot() {
+        return app.clone(ROOT_ID);
+    }
+}
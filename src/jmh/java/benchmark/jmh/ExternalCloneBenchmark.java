@@ -0,0 +1,74 @@
+package benchmark.jmh;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.generator.GraphGenerator;
+import app.generator.Topology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+import parser.ParserOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * External clone of entity 1 of random graphs whose input files are several times larger than the memory budget.
+ * Forks run with heap of a few times the default budget, every graph is cloned within the same heap whatever
+ * its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx64m"})
+public class ExternalCloneBenchmark {
+
+    private static final long BUDGET = 16L << 20;
+
+    /**
+     * Size of the input file as a multiple of the memory budget
+     */
+    @Param({"1", "4", "16"})
+    public int multiple;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = GraphFiles.get(Topology.RANDOM, new GraphGenerator().estimateEntityCount(multiple * BUDGET));
+    }
+
+    /**
+     * Output is discarded, so the time is of parsing, sorted runs on disk and serialization
+     */
+    @Benchmark
+    public long cloneExternal() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        return new App().cloneExternal(file.getPath(), new ParserOptions(), GraphBenchmark.ROOT_ID, BUDGET,
+                false, false, new NullOutputStream(), 64 * 1024);
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
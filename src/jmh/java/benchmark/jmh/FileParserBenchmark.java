@@ -0,0 +1,23 @@
+package benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import parser.FileParser;
+import parser.InvalidJsonFormatException;
+import parser.ParsingResult;
+
+import java.io.IOException;
+
+/**
+ * Parsing of input file into entities and links, without building the graph, with regular and memory mapped input
+ */
+public class FileParserBenchmark extends GraphBenchmark {
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    @Benchmark
+    public ParsingResult parse() throws IOException, InvalidJsonFormatException {
+        return new FileParser(file.getPath(), mapped).parse();
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark.jmh;
+
+import app.generator.Topology;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark over every topology and size of synthetic graph. Operations on whole graphs take milliseconds
+ * to seconds, so they are measured as average time of a single call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public abstract class GraphBenchmark {
+
+    /**
+     * ID of the entity cloned in every topology
+     */
+    static final int ROOT_ID = 1;
+
+    /**
+     * Power law graphs are left out, entity 1 of some sizes has no links
+     */
+    @Param({"CHAINS", "CLUSTERS", "RANDOM"})
+    public Topology topology;
+
+    @Param({"1000", "100000", "1000000"})
+    public int entityCount;
+
+    File file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = GraphFiles.get(topology, entityCount);
+    }
+}
@@ -0,0 +1,120 @@
+package benchmark.jmh;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.generator.GraphGenerator;
+import app.generator.Topology;
+import app.store.StorageMode;
+import parser.InvalidJsonFormatException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Input files of benchmark graphs. Files are generated once into java.io.tmpdir and reused by later forks and runs.
+ */
+final class GraphFiles {
+
+    private static final long SEED = 1;
+
+    private GraphFiles() {
+    }
+
+    /**
+     * Get input file of the graph, generating it if it does not exist. Chains and clusters span the whole graph,
+     * so {@link Topology#CHAINS} is a single deep chain and {@link Topology#CLUSTERS} a single ring with random
+     * chords, in which every entity reaches every other one.
+     * @param topology Graph topology
+     * @param entityCount Number of entities
+     * @return File
+     * @throws IOException
+     */
+    static File get(Topology topology, int entityCount) throws IOException {
+
+        GraphGenerator generator = generator(topology, entityCount);
+        generator.setChainLength(entityCount);
+        generator.setClusterSize(entityCount);
+
+        return get(String.format("%s-%d", topology.name().toLowerCase(), entityCount), generator);
+    }
+
+    /**
+     * Get input file of disjoint chains, chain starting at entity 1 + k * chainLength clones only that chain
+     * @param entityCount Number of entities
+     * @param chainLength Number of entities in a chain
+     * @return File
+     * @throws IOException
+     */
+    static File chains(int entityCount, int chainLength) throws IOException {
+
+        GraphGenerator generator = generator(Topology.CHAINS, entityCount);
+        generator.setChainLength(chainLength);
+
+        return get(String.format("chains-%d-%d", entityCount, chainLength), generator);
+    }
+
+    /**
+     * Get binary snapshot of the input file, writing it if it does not exist
+     * @param json Input file
+     * @return Snapshot file
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     */
+    static File snapshot(File json) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        File file = new File(json.getParentFile(), json.getName().replaceFirst("\\.json$", ".snapshot"));
+
+        if (file.exists()) {
+            return file;
+        }
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(json.getPath());
+
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        app.writeSnapshot(temp.getPath());
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        return file;
+    }
+
+    private static GraphGenerator generator(Topology topology, int entityCount) {
+
+        GraphGenerator generator = new GraphGenerator();
+        generator.setEntityCount(entityCount);
+        generator.setTopology(topology);
+        generator.setSeed(SEED);
+
+        return generator;
+    }
+
+    private static File get(String name, GraphGenerator generator) throws IOException {
+
+        File directory = new File(System.getProperty("java.io.tmpdir"), "graph-node-cloning-jmh");
+        File file = new File(directory, name + ".json");
+
+        if (file.exists()) {
+            return file;
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+
+        // Written under temporary name, so an interrupted run does not leave a truncated file behind
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+            generator.write(out);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        return file;
+    }
+}
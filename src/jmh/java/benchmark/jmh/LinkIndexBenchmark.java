@@ -0,0 +1,111 @@
+package benchmark.jmh;
+
+import app.model.Link;
+import app.store.LinkIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and lookup of the same random links in {@link LinkIndex} and in {@link HashSet} of {@link Link} objects.
+ * Half of the lookups are of missing links. Retained heap of both is compared by LinkIndexMemoryBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class LinkIndexBenchmark {
+
+    @Param({"300000", "3000000"})
+    public int linkCount;
+
+    private int[] from;
+    private int[] to;
+    private Set<Link> set;
+    private LinkIndex index;
+
+    /**
+     * Links are between a third as many entities as there are links, as in graphs of the other benchmarks
+     */
+    @Setup(Level.Trial)
+    public void createLinks() {
+
+        int entityCount = Math.max(1, linkCount / 3);
+        Random random = new Random(1);
+
+        from = new int[linkCount];
+        to = new int[linkCount];
+
+        for (int i = 0; i < linkCount; i++) {
+            from[i] = 1 + random.nextInt(entityCount);
+            to[i] = 1 + random.nextInt(entityCount);
+        }
+
+        set = hashSetAdd();
+        index = linkIndexAdd();
+    }
+
+    @Benchmark
+    public Set<Link> hashSetAdd() {
+
+        Set<Link> set = new HashSet<>();
+        for (int i = 0; i < linkCount; i++) {
+            set.add(new Link(from[i], to[i]));
+        }
+
+        return set;
+    }
+
+    @Benchmark
+    public LinkIndex linkIndexAdd() {
+
+        LinkIndex index = new LinkIndex();
+        for (int i = 0; i < linkCount; i++) {
+            index.add(from[i], to[i]);
+        }
+
+        return index;
+    }
+
+    @Benchmark
+    public int hashSetContains() {
+
+        int found = 0;
+        for (int i = 0; i < linkCount; i++) {
+            if (set.contains(new Link(from[i], i % 2 == 0 ? to[i] : -to[i]))) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int linkIndexContains() {
+
+        int found = 0;
+        for (int i = 0; i < linkCount; i++) {
+            if (index.contains(from[i], i % 2 == 0 ? to[i] : -to[i])) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,23 @@
+package benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import parser.InvalidJsonFormatException;
+import parser.ParallelFileParser;
+import parser.ParsingResult;
+
+import java.io.IOException;
+
+/**
+ * Parsing of input file in chunks on several threads, to compare with {@link FileParserBenchmark}
+ */
+public class ParallelParseBenchmark extends GraphBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    @Benchmark
+    public ParsingResult parse() throws IOException, InvalidJsonFormatException {
+        return new ParallelFileParser(file.getPath(), threads).parse();
+    }
+}
@@ -0,0 +1,96 @@
+package benchmark.jmh;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.output.GraphJsonWriter;
+import app.output.ParallelGraphJsonWriter;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import parser.InvalidJsonFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JSON output of the whole graph after clone of entity 1 by {@link ParallelGraphJsonWriter}, to compare with
+ * the sequential output of {@link SerializeBenchmark}. Writer is reused between calls, so after warmup its buffers
+ * fit the chunks and allocation shows the steady state.
+ */
+public class ParallelSerializeBenchmark extends GraphBenchmark {
+
+    @Param({"OBJECT", "COMPACT"})
+    public StorageMode storage;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private App app;
+    private ForkJoinPool pool;
+    private ParallelGraphJsonWriter writer;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = new App(storage);
+        app.parseFile(file.getPath());
+        app.clone(ROOT_ID);
+
+        pool = new ForkJoinPool(threads);
+        writer = new ParallelGraphJsonWriter(pool, ParallelGraphJsonWriter.DEFAULT_CHUNK_SIZE,
+                GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        writer.close();
+        pool.shutdown();
+    }
+
+    /**
+     * Writes to a channel that only counts bytes, measures serialization without the cost of the output
+     */
+    @Benchmark
+    public long writeGraph() throws IOException {
+        return writer.writeGraph(app.getStore(), new CountingChannel());
+    }
+
+    private static class CountingChannel implements GatheringByteChannel {
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+
+            long count = 0;
+
+            for (int i = offset; i < offset + length; i++) {
+                count += sources[i].remaining();
+                sources[i].position(sources[i].limit());
+            }
+
+            return count;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[]{source});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark.jmh;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.output.GraphJsonWriter;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import parser.InvalidJsonFormatException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON output of the whole graph after clone of entity 1
+ */
+public class SerializeBenchmark extends GraphBenchmark {
+
+    @Param({"OBJECT", "COMPACT"})
+    public StorageMode storage;
+
+    private App app;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = new App(storage);
+        app.parseFile(file.getPath());
+        app.clone(ROOT_ID);
+    }
+
+    @Benchmark
+    public String printElementsAndLinks() throws IOException {
+        return app.printElementsAndLinks();
+    }
+
+    /**
+     * Streams to an output that only counts bytes, measures serialization without building the string
+     */
+    @Benchmark
+    public long writeElementsAndLinks() throws IOException {
+
+        CountingOutputStream out = new CountingOutputStream();
+        app.writeElementsAndLinks(out, GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
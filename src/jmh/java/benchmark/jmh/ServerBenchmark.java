@@ -0,0 +1,152 @@
+package benchmark.jmh;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.output.GraphJsonWriter;
+import app.server.CloneServer;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delta clone of a random chain of a graph of disjoint chains, served by {@link CloneServer} keeping the graph
+ * resident to one and to four concurrent clients, and one shot, parsing the file for each clone as the command
+ * line does. One shot time leaves out JVM startup, so the real difference to the command line is larger.
+ * Server latency percentiles come from sample time mode.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ServerBenchmark {
+
+    private static final int CHAIN_LENGTH = 10;
+
+    @Param({"1000000"})
+    public int entityCount;
+
+    private File file;
+    private CloneServer server;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        file = GraphFiles.chains(entityCount, CHAIN_LENGTH);
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(file.getPath());
+
+        server = new CloneServer(app, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                Runtime.getRuntime().availableProcessors(), GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Threads(1)
+    public long server(Client client) throws IOException {
+        return client.request(server.getPort(), "/clone?delta&id=" + randomChain(client));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Threads(4)
+    public long serverConcurrent(Client client) throws IOException {
+        return client.request(server.getPort(), "/clone?delta&id=" + randomChain(client));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Threads(1)
+    public int oneShot(Client client) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(file.getPath());
+
+        CloneResult result = app.clone(randomChain(client));
+        app.writeClonedElementsAndLinks(result, false, new NullOutputStream(), GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+        return result.size();
+    }
+
+    /**
+     * First entity of a random chain, its clone is the whole chain
+     */
+    private int randomChain(Client client) {
+        return 1 + client.random.nextInt(entityCount / CHAIN_LENGTH) * CHAIN_LENGTH;
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final Random random = new Random();
+        private final byte[] buffer = new byte[8192];
+
+        /**
+         * Reads the whole response, so the connection is reused
+         * @return Number of bytes of the response body
+         */
+        long request(int port, String path) throws IOException {
+
+            HttpURLConnection connection = (HttpURLConnection) new URL("http",
+                    InetAddress.getLoopbackAddress().getHostAddress(), port, path).openConnection();
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected status " + connection.getResponseCode());
+            }
+
+            long bytes = 0;
+
+            try (InputStream in = connection.getInputStream()) {
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    bytes += count;
+                }
+            }
+
+            return bytes;
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+        }
+    }
+}
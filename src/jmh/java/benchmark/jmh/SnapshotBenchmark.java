@@ -0,0 +1,57 @@
+package benchmark.jmh;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loading of the graph from binary snapshot into compact storage, to compare with JSON loading of
+ * {@link BuildBenchmark}, and clone of entity 1 from the loaded graph
+ */
+public class SnapshotBenchmark extends GraphBenchmark {
+
+    private File snapshot;
+    private App app;
+
+    @Setup(Level.Trial)
+    public void createSnapshot() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        snapshot = GraphFiles.snapshot(file);
+    }
+
+    /**
+     * Clone modifies the graph, so the graph is loaded again before every single clone, as in {@link CloneBenchmark}
+     */
+    @Setup(Level.Iteration)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = loadSnapshot();
+    }
+
+    @Benchmark
+    public App loadSnapshot() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(snapshot.getPath());
+
+        return app;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 30)
+    public CloneResult cloneRoot() {
+        return app.clone(ROOT_ID);
+    }
+}
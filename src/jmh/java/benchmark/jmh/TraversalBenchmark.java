@@ -0,0 +1,62 @@
+package benchmark.jmh;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.InvalidJsonFormatException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Clone of entity 1 by sequential depth first traversal or by parallel breadth first traversal on 1 to 4 threads.
+ * Graph is loaded from its snapshot before every single clone, as in {@link CloneBenchmark}.
+ */
+public class TraversalBenchmark extends GraphBenchmark {
+
+    /**
+     * Threads of breadth first traversal, 0 for depth first traversal
+     */
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    private File snapshot;
+    private ForkJoinPool pool;
+    private App app;
+
+    @Setup(Level.Trial)
+    public void createSnapshot() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        snapshot = GraphFiles.snapshot(file);
+        pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    @Setup(Level.Iteration)
+    public void load() throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        app = new App(StorageMode.COMPACT);
+        app.parseFile(snapshot.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 30)
+    public CloneResult cloneRoot() {
+        return threads == 0 ? app.clone(ROOT_ID) : app.clone(ROOT_ID, pool);
+    }
+}
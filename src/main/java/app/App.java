@@ -1,30 +1,100 @@
 package app;
 
 import app.exceptions.InvalidEntityLinkException;
+import app.external.ExternalCloner;
+import app.metrics.Metrics;
+import app.metrics.Phase;
 import app.model.Entity;
 import app.model.Link;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import parser.FileParser;
+import app.output.GraphJsonWriter;
+import app.output.ParallelGraphJsonWriter;
+import app.store.CompactGraphBuilder;
+import app.store.CompactGraphStore;
+import app.store.GraphMemory;
+import app.store.GraphSnapshot;
+import app.store.GraphStore;
+import app.store.HeapMemory;
+import app.store.LinkCursor;
+import app.store.LinkIndex;
+import app.store.ObjectGraphBuilder;
+import app.store.ObjectGraphStore;
+import app.store.StorageMode;
+import app.store.offheap.OffHeapMemory;
+import app.util.IntList;
+import parser.GraphUpdate;
 import parser.InvalidJsonFormatException;
-import parser.ParsingResult;
+import parser.JsonFileParser;
+import parser.ParserOptions;
+import parser.ParsingSink;
+import parser.StringPool;
+import parser.UpdateParser;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class App {
 
-    private Map<Integer, Entity> entityMap;
-    private List<Link> links;
+    private final StorageMode storageMode;
 
     /**
-     * Cloned entities will have ID that is largestId incremented by one
+     * Memory for compact graph, off heap memory is created on first parse
      */
-    private int largestId;
+    private GraphMemory memory;
+
+    /**
+     * Cloned entities will have ID that is largest ID in the store incremented by one
+     */
+    private GraphStore store;
+
+    /**
+     * Built on first clone estimate, rebuilt when the graph has changed since
+     */
+    private ReachabilityIndex reachabilityIndex;
+
+    /**
+     * Links of the graph when duplicate links are dropped, null otherwise
+     */
+    private LinkIndex linkIndex;
+
+    private Metrics metrics = Metrics.DISABLED;
 
     public App(){
-        entityMap = new HashMap<>();
-        links = new ArrayList<>();
+        this(StorageMode.OBJECT);
+    }
+
+    public App(StorageMode storageMode){
+        this.storageMode = storageMode;
+        this.memory = storageMode == StorageMode.OFF_HEAP ? null : new HeapMemory();
+        this.store = storageMode == StorageMode.OBJECT ? new ObjectGraphStore() : new CompactGraphStore();
+    }
+
+    /**
+     * Creates app that keeps compact graph in given memory
+     * @param memory Memory for graph columns, adjacency and strings
+     */
+    public App(GraphMemory memory){
+        this.storageMode = memory instanceof OffHeapMemory ? StorageMode.OFF_HEAP : StorageMode.COMPACT;
+        this.memory = memory;
+        this.store = new CompactGraphStore(memory);
+    }
+
+    /**
+     * Creates app over already loaded graph
+     * @param store Graph store
+     */
+    public App(GraphStore store){
+        this.storageMode = store instanceof ObjectGraphStore ? StorageMode.OBJECT : StorageMode.COMPACT;
+        this.memory = new HeapMemory();
+        this.store = store;
     }
 
     /**
@@ -33,115 +103,765 @@ public class App {
      * @throws IOException
      */
     public void parseFile(String fileName) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        parseFile(fileName, new ParserOptions());
+    }
+
+    /**
+     * Parses JSON input file or loads graph snapshot written by {@link #writeSnapshot(String)}.
+     * Snapshot is always loaded as compact graph, also in {@link StorageMode#OBJECT} mode.
+     * With {@link ParserOptions#setInternStrings(boolean)} every distinct name and description is kept once.
+     * @param fileName Path of the file
+     * @param options Parser options
+     * @throws IOException
+     */
+    public void parseFile(String fileName, ParserOptions options) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        File file = new File(fileName);
+        long start = metrics.start();
+
+        linkIndex = null;
+
+        if (GraphSnapshot.isSnapshot(file)) {
+
+            store = GraphSnapshot.load(file, compactMemory());
+
+            if (options.isDeduplicateLinks()) {
+                int linkCount = store.getLinkCount();
+                linkIndex = LinkIndex.build(store);
+                metrics.droppedDuplicateLinks(linkCount - store.getLinkCount());
+            }
+
+            metrics.end(Phase.LOAD_SNAPSHOT, start);
+            metrics.parsed(store.getEntityCount(), store.getLinkCount());
+            return;
+        }
+
+        StringPool stringPool = options.isInternStrings() ? new StringPool() : null;
+        JsonFileParser parser = options.createParser(fileName, stringPool);
 
-        FileParser parser = new FileParser(fileName);
-        ParsingResult result = parser.parse();
+        if (storageMode == StorageMode.OBJECT) {
+            ObjectGraphBuilder builder = new ObjectGraphBuilder();
+            parser.parse(deduplicate(builder, options));
+            metrics.end(Phase.PARSE, start);
+            start = metrics.start();
+            store = builder.build();
+        } else {
+            CompactGraphBuilder builder = new CompactGraphBuilder(compactMemory(), stringPool != null);
+            parser.parse(deduplicate(builder, options));
+            metrics.end(Phase.PARSE, start);
+            start = metrics.start();
+            store = builder.build();
+        }
+
+        metrics.end(Phase.BUILD, start);
+        metrics.parsed(store.getEntityCount(), store.getLinkCount());
 
-        entityMap = result.getEntities();
-        links = result.getLinks();
-        largestId = result.getLargestId();
+        if (linkIndex != null) {
+            metrics.droppedDuplicateLinks(linkIndex.getDroppedLinks());
+        }
 
-        verifyAndBuildGraph();
+        if (stringPool != null) {
+            metrics.pooledStrings(stringPool.getLookups(), stringPool.size(), stringPool.getSavedBytes());
+        }
     }
 
     /**
-     * Find entity by its ID
+     * Clones one entity of JSON input file and streams the result, keeping names and descriptions only of entities
+     * reachable from the entity. First pass over the file builds compact graph of IDs and links, second pass writes
+     * every entity to the output as it is parsed and keeps attributes of the entities to clone. Output is the same
+     * as of {@link StorageMode#COMPACT} storage parsing the file, cloning and writing the graph or the delta.
+     * <p>
+     * Graph of the app is the scoped graph afterwards, other entities have no name and description in it.
+     * Snapshot input is loaded and cloned as usual, it keeps no attributes on heap anyway.
+     * @param fileName Path of the input file
+     * @param options Parser options
+     * @param entityId ID of the entity to clone
+     * @param delta Whether to write only the clone, as {@link #writeClonedElementsAndLinks(CloneResult, boolean, OutputStream, int)}
+     * @param includeIdMap Whether to add original to clone ID mapping to the delta
+     * @param out Output stream, flushed but not closed
+     * @param bufferSize Size of the output buffer in bytes
+     * @return Clone result
+     * @throws IOException
+     * @throws IllegalArgumentException if the entity does not exist
+     */
+    public CloneResult cloneScoped(String fileName, ParserOptions options, int entityId, boolean delta, boolean includeIdMap,
+                                   OutputStream out, int bufferSize) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        if (GraphSnapshot.isSnapshot(new File(fileName))) {
+
+            parseFile(fileName, options);
+
+            if (!store.containsEntity(entityId)) {
+                throw new IllegalArgumentException(String.format("Entity with ID %d not found", entityId));
+            }
+
+            CloneResult result = clone(entityId);
+
+            if (delta) {
+                writeClonedElementsAndLinks(result, includeIdMap, out, bufferSize);
+            } else {
+                writeElementsAndLinks(out, bufferSize);
+            }
+            return result;
+        }
+
+        long start = metrics.start();
+        CompactGraphBuilder builder = new CompactGraphBuilder(storageMode == StorageMode.OFF_HEAP ? compactMemory() : new HeapMemory());
+
+        linkIndex = null;
+
+        options.createParser(fileName).parse(deduplicate(new ParsingSink() {
+
+            @Override
+            public void addEntity(int id, String name, String description) {
+                builder.addEntity(id, null, null);
+            }
+
+            @Override
+            public void addLink(int from, int to) {
+                builder.addLink(from, to);
+            }
+        }, options));
+
+        metrics.end(Phase.PARSE, start);
+        start = metrics.start();
+        store = builder.build();
+        metrics.end(Phase.BUILD, start);
+        metrics.parsed(store.getEntityCount(), store.getLinkCount());
+
+        if (linkIndex != null) {
+            metrics.droppedDuplicateLinks(linkIndex.getDroppedLinks());
+        }
+
+        if (!store.containsEntity(entityId)) {
+            throw new IllegalArgumentException(String.format("Entity with ID %d not found", entityId));
+        }
+
+        ClonePlan plan = ClonePlan.create(store, entityId);
+        int entityCount = store.getEntityCount();
+
+        long serializeStart = metrics.start();
+
+        try (GraphJsonWriter writer = new GraphJsonWriter(metrics.countBytes(out), bufferSize)) {
+
+            if (!delta) {
+                writer.startGraph();
+            }
+
+            try {
+                options.createParser(fileName, options.isInternStrings() ? new StringPool() : null).parse(new ParsingSink() {
+
+                    @Override
+                    public void addEntity(int id, String name, String description) {
+
+                        if (plan.indexOf(id) != ClonePlan.NONE) {
+                            store.addEntity(id, name, description);
+                        }
+
+                        if (!delta) {
+                            try {
+                                writer.writeEntity(id, name, description);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void addLink(int from, int to) {
+                        // Links are already in the graph
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Clone is committed once attributes of the originals are known, clones share them
+            long cloneStart = metrics.start();
+            CloneResult result = commit(plan, store.getLargestId() + 1, cloneStart);
+
+            if (delta) {
+                writer.writeDelta(store, result, includeIdMap);
+            } else {
+                writer.writeEntities(store, entityCount);
+                writer.endGraph(store);
+            }
+
+            metrics.end(Phase.SERIALIZE, serializeStart);
+
+            return result;
+        }
+    }
+
+    /**
+     * Clones one entity of JSON input file that may not fit in memory and streams the result. Entities and links
+     * are kept in sorted runs in scratch files in {@code java.io.tmpdir} and memory of sort buffers stays under
+     * the budget, see {@link ExternalCloner}. Clone is the same as of {@link #clone(int, ForkJoinPool)},
+     * graph of the app is not changed.
+     * @param fileName Path of the input file
+     * @param options Parser options
+     * @param entityId ID of the entity to clone
+     * @param memoryBudget Bytes of memory sort and merge buffers may take
+     * @param delta Whether to write only the clone
+     * @param includeIdMap Whether to add original to clone ID mapping to the delta
+     * @param out Output stream, flushed but not closed
+     * @param bufferSize Size of the output buffer in bytes
+     * @return Number of cloned entities
+     * @throws IOException
+     * @throws IllegalArgumentException if the entity does not exist or input is a snapshot
+     */
+    public long cloneExternal(String fileName, ParserOptions options, int entityId, long memoryBudget, boolean delta,
+                              boolean includeIdMap, OutputStream out, int bufferSize) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        if (GraphSnapshot.isSnapshot(new File(fileName))) {
+            throw new IllegalArgumentException("External cloning requires JSON input");
+        }
+
+        ExternalCloner cloner = new ExternalCloner(new File(System.getProperty("java.io.tmpdir")), memoryBudget);
+        cloner.setMetrics(metrics);
+
+        return cloner.clone(options.createParser(fileName, options.isInternStrings() ? new StringPool() : null),
+                entityId, delta, includeIdMap, out, bufferSize);
+    }
+
+    /**
+     * Writes binary snapshot of the graph that can be loaded with {@link #parseFile(String)} much faster than JSON
+     * @param fileName Path of the snapshot file
+     * @throws IOException
+     */
+    public void writeSnapshot(String fileName) throws IOException {
+        long start = metrics.start();
+        GraphSnapshot.write(store, new File(fileName));
+        metrics.end(Phase.WRITE_SNAPSHOT, start);
+    }
+
+    /**
+     * Checks whether the graph has a link between the entities. Answered from the link index in O(1) when
+     * duplicate links are dropped, otherwise by scanning links of the source entity.
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     * @return true if the link exists
+     */
+    public boolean containsLink(int from, int to) {
+
+        if (linkIndex != null) {
+            return linkIndex.contains(from, to);
+        }
+
+        if (!store.containsEntity(from) || !store.containsEntity(to)) {
+            return false;
+        }
+
+        IntList outgoing = new IntList();
+        store.copyOutgoing(from, outgoing);
+
+        for (int i = 0; i < outgoing.size(); i++) {
+            if (outgoing.get(i) == to) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Find entity by its ID. In storages other than {@link StorageMode#OBJECT} returned entity is
+     * a detached copy without links to other entities.
      * @param entityId ID of the entity
-     * @return Entity
+     * @return Entity or null if not found
      */
     public Entity findEntity(int entityId){
-        return entityMap.get(entityId);
+
+        if (store instanceof ObjectGraphStore) {
+            return ((ObjectGraphStore) store).findEntity(entityId);
+        }
+
+        if (!store.containsEntity(entityId)) {
+            return null;
+        }
+
+        Entity entity = new Entity();
+        entity.setId(entityId);
+        entity.setName(store.getName(entityId));
+        entity.setDescription(store.getDescription(entityId));
+
+        return entity;
+    }
+
+    /**
+     * Prints entities and links as JSON
+     * @return JSON document
+     * @throws IOException
+     */
+    public String printElementsAndLinks() throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeElementsAndLinks(out, GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams entities and links as JSON to the output, output stream is flushed but not closed
+     * @param out Output stream
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     */
+    public void writeElementsAndLinks(OutputStream out, int bufferSize) throws IOException {
+
+        long start = metrics.start();
+
+        try (GraphJsonWriter writer = new GraphJsonWriter(metrics.countBytes(out), bufferSize)) {
+            writer.writeGraph(store);
+        }
+
+        metrics.end(Phase.SERIALIZE, start);
+    }
+
+    /**
+     * Writes entities and links as JSON to the channel serializing chunks of them concurrently by the writer,
+     * channel is not closed. Output is the same as of {@link #writeElementsAndLinks(OutputStream, int)}.
+     * The writer is owned by the caller, so repeated writes reuse its chunks and buffers.
+     * @param channel Output channel
+     * @param writer Parallel writer, must not be used by other threads until the method returns
+     * @throws IOException
+     */
+    public void writeElementsAndLinks(GatheringByteChannel channel, ParallelGraphJsonWriter writer) throws IOException {
+
+        long start = metrics.start();
+        metrics.wrote(writer.writeGraph(store, channel));
+        metrics.end(Phase.SERIALIZE, start);
+    }
+
+    /**
+     * Streams only entities and links created by the clone as JSON to the output, output stream is flushed but not closed
+     * @param result Result of {@link #clone(int)}
+     * @param includeIdMap Whether to add original to clone ID mapping to the output
+     * @param out Output stream
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     */
+    public void writeClonedElementsAndLinks(CloneResult result, boolean includeIdMap, OutputStream out, int bufferSize) throws IOException {
+        writeClonedElementsAndLinks(Collections.singletonList(result), includeIdMap, out, bufferSize);
+    }
+
+    /**
+     * Streams entities and links created by several clones as one JSON document, output stream is flushed but not closed
+     * @param results Results of {@link #cloneAll(int[], BatchMode)}
+     * @param includeIdMap Whether to add original to clone ID mapping to the output
+     * @param out Output stream
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     */
+    public void writeClonedElementsAndLinks(List<CloneResult> results, boolean includeIdMap, OutputStream out, int bufferSize) throws IOException {
+
+        long start = metrics.start();
+
+        try (GraphJsonWriter writer = new GraphJsonWriter(metrics.countBytes(out), bufferSize)) {
+            writer.writeDelta(store, results, includeIdMap);
+        }
+
+        metrics.end(Phase.SERIALIZE, start);
     }
 
     /**
-     * Prints entities and links as JSON to stdout
-     * @throws JsonProcessingException
+     * Streams number of entities and links cloning each entity would create as JSON, nothing is cloned.
+     * Output stream is flushed but not closed.
+     * @param entityIds IDs of entities
+     * @param out Output stream
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     * @throws IllegalArgumentException if any of the entities does not exist
+     * @see #estimateClone(int)
      */
-    public String printElementsAndLinks() throws JsonProcessingException {
+    public void writeCloneEstimates(int[] entityIds, OutputStream out, int bufferSize) throws IOException {
 
-        ObjectMapper mapper = new ObjectMapper();
+        List<CloneEstimate> estimates = new ArrayList<>(entityIds.length);
+
+        for (int entityId : entityIds) {
+            estimates.add(estimateClone(entityId));
+        }
 
-        Map<String, Collection<?>> outputMap = new HashMap<>();
-        outputMap.put("entities", entityMap.values());
-        outputMap.put("links", links);
+        long start = metrics.start();
 
-        return mapper.writeValueAsString(outputMap);
+        try (GraphJsonWriter writer = new GraphJsonWriter(metrics.countBytes(out), bufferSize)) {
+            writer.writeEstimates(estimates);
+        }
+
+        metrics.end(Phase.SERIALIZE, start);
     }
 
     /**
-     * Recursively clones entities linked to this entity (including this entity itself)
+     * Clones this entity and all entities reachable from it. Traversal is iterative so
+     * the depth of the graph is not limited by the thread stack size.
      * @param entity Starting entity to clone
+     * @return Clone result with original to clone ID mapping
+     */
+    public CloneResult clone(Entity entity){
+        return clone(entity.getId());
+    }
+
+    /**
+     * Clones entity with given ID and all entities reachable from it
+     * @param entityId ID of the starting entity
+     * @return Clone result with original to clone ID mapping
+     */
+    public CloneResult clone(int entityId){
+        long start = metrics.start();
+        return commit(ClonePlan.create(store, entityId), store.getLargestId() + 1, start);
+    }
+
+    /**
+     * Clones entity with given ID and all entities reachable from it, traversing the graph level by level
+     * on the pool. Clone is not the same as of {@link #clone(int)}: the same entities are cloned with the same
+     * number of links, but clone IDs are in breadth first order and each clone is linked from the clone of its first
+     * predecessor in the previous level, so the clone is a different spanning tree of the reachable entities.
+     * Result does not depend on the number of threads.
+     * @param entityId ID of the starting entity
+     * @param pool Pool to traverse on
+     * @return Clone result with original to clone ID mapping
+     */
+    public CloneResult clone(int entityId, ForkJoinPool pool){
+        long start = metrics.start();
+        return commit(ParallelClonePlan.create(store, entityId, pool), store.getLargestId() + 1, start);
+    }
+
+    /**
+     * Reads graph update from the file and applies it
+     * @param fileName Update file in the format of {@link UpdateParser}
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException if the update references entities or links that do not exist,
+     * the graph is not changed then
+     * @see #applyUpdate(GraphUpdate)
+     */
+    public void applyUpdate(String fileName) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+        applyUpdate(new FileInputStream(fileName));
+    }
+
+    /**
+     * Reads graph update from the stream and applies it, stream is closed
+     * @param in Update in the format of {@link UpdateParser}
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException if the update references entities or links that do not exist,
+     * the graph is not changed then
+     */
+    public void applyUpdate(InputStream in) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        long start = metrics.start();
+        GraphUpdate update = new UpdateParser(in).parse();
+
+        apply(update);
+        metrics.end(Phase.UPDATE, start);
+    }
+
+    /**
+     * Applies update to the loaded graph, cost is proportional to the size of the update and degrees of changed
+     * entities, not to the size of the graph. Removed links are applied first, then removed entities, added entities
+     * and added links. Update is validated before anything is changed.
+     * @param update Graph update
+     * @throws InvalidEntityLinkException if the update removes entity or link that does not exist or adds link
+     * to entity that does not exist after the update, the graph is not changed then
+     */
+    public void applyUpdate(GraphUpdate update) throws InvalidEntityLinkException {
+        long start = metrics.start();
+        apply(update);
+        metrics.end(Phase.UPDATE, start);
+    }
+
+    /**
+     * Get number of entities and links cloning the entity would create, without cloning it.
+     * First estimate builds {@link ReachabilityIndex} in O(entities + links) time, as does the first one
+     * after the graph has changed, later estimates use the index.
+     * Estimates of several entities are exact for {@link BatchMode#SNAPSHOT} batch.
+     * @param entityId ID of the entity
+     * @return Clone estimate
+     * @throws IllegalArgumentException if the entity does not exist
      */
-    public void clone(Entity entity){
-        cloneEntities(entity, new ArrayList<>(), entity.getFromEntities().toArray(new Entity[0]));
+    public CloneEstimate estimateClone(int entityId){
+        return getReachabilityIndex().estimateClone(entityId);
     }
 
     /**
-     * Recursively clones given entity including entities that link to this entity
-     * @param entity Entity to clone
-     * @param attachTo List of entities to attach clones to
-     * @param visited Empty list to keep info about visited entities and clones
+     * Get reachability index of the current graph
+     * @return Reachability index
      */
-    private void cloneEntities(Entity entity, List<Integer> visited, Entity... attachTo){
+    public ReachabilityIndex getReachabilityIndex(){
 
-        Entity clone = new Entity();
-        clone.setId(++largestId);
-        clone.setDescription(entity.getDescription());
-        clone.setName(entity.getName());
+        if (reachabilityIndex == null || !reachabilityIndex.isCurrent(store)) {
+            reachabilityIndex = ReachabilityIndex.build(store);
+        }
 
-        for(Entity e : attachTo) {
-            clone.getFromEntities().add(e);
-            e.getToEntities().add(clone);
+        return reachabilityIndex;
+    }
 
-            links.add(new Link(e.getId(), clone.getId()));
+    /**
+     * Clones several entities and entities reachable from them in one run, {@link BatchMode#PARALLEL} mode
+     * runs on the common fork-join pool.
+     * @param entityIds IDs of the starting entities, validated before anything is cloned
+     * @param mode Whether clones see clones of entities before them
+     * @return Clone results in order of entities
+     * @throws IllegalArgumentException if any of the entities does not exist
+     * @see #cloneAll(int[], BatchMode, ForkJoinPool)
+     */
+    public List<CloneResult> cloneAll(int[] entityIds, BatchMode mode){
+        return cloneAll(entityIds, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Clones several entities and entities reachable from them in one run. IDs are allocated
+     * in one block per entity, clones of each entity get consecutive IDs in order of entities.
+     * @param entityIds IDs of the starting entities, validated before anything is cloned
+     * @param mode Whether clones see clones of entities before them
+     * @param pool Pool to plan clones on in {@link BatchMode#PARALLEL} mode
+     * @return Clone results in order of entities
+     * @throws IllegalArgumentException if any of the entities does not exist
+     */
+    public List<CloneResult> cloneAll(int[] entityIds, BatchMode mode, ForkJoinPool pool){
+
+        for (int entityId : entityIds) {
+            if (!store.containsEntity(entityId)) {
+                throw new IllegalArgumentException(String.format("Entity with ID %d not found", entityId));
+            }
         }
 
-        entityMap.put(clone.getId(), clone);
-        visited.add(entity.getId());
-        visited.add(clone.getId());
+        List<CloneResult> results = new ArrayList<>(entityIds.length);
+
+        if (mode == BatchMode.SEQUENTIAL) {
+            for (int entityId : entityIds) {
+                results.add(clone(entityId));
+            }
+            return results;
+        }
 
-        for (Entity neighbour : entity.getToEntities()) {
+        long start = metrics.start();
 
-            if (!visited.contains(neighbour.getId())) {
-                cloneEntities(neighbour, visited, clone);
+        // All plans are made against the original graph, before any clone is added
+        ClonePlan[] plans = new ClonePlan[entityIds.length];
+
+        if (mode == BatchMode.PARALLEL) {
+            // Several tasks per thread, so threads that finish small roots steal from large ones
+            pool.invoke(new ClonePlanTask(store, entityIds, plans, entityIds.length / (pool.getParallelism() * 8)));
+        } else {
+            for (int i = 0; i < entityIds.length; i++) {
+                plans[i] = ClonePlan.create(store, entityIds[i]);
             }
         }
+
+        // Store has a single writer, plans are committed in order of entities so IDs do not depend on
+        // the order in which plans completed
+        IdAllocator ids = new IdAllocator(store.getLargestId() + 1);
+
+        for (ClonePlan plan : plans) {
+            results.add(commit(plan, ids.reserve(plan.size())));
+        }
+
+        metrics.end(Phase.CLONE, start);
+
+        return results;
+    }
+
+    /**
+     * Get metrics the app records to
+     * @return Metrics, {@link Metrics#DISABLED} unless set
+     */
+    public Metrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Sets metrics to record phase times and counters to
+     * @param metrics Metrics
+     */
+    public void setMetrics(Metrics metrics){
+        this.metrics = metrics;
     }
 
     /**
      * Get entities as map with entity IDs as keys
      * @return Entities map
+     * @throws UnsupportedOperationException if storage mode is not {@link StorageMode#OBJECT}
      */
     public Map<Integer, Entity> getEntityMap(){
-        return entityMap;
+        return objectStore().getEntityMap();
     }
 
     /**
      * Get links
      * @return links list
+     * @throws UnsupportedOperationException if storage mode is not {@link StorageMode#OBJECT}
      */
     public List<Link> getLinks(){
-        return links;
+        return objectStore().getLinks();
     }
 
     /**
-     * Verify that links correspond to existing entities
-     * @throws InvalidEntityLinkException
+     * Get graph store
+     * @return Graph store
      */
-    private void verifyAndBuildGraph() throws InvalidEntityLinkException {
+    public GraphStore getStore(){
+        return store;
+    }
+
+    private void apply(GraphUpdate update) throws InvalidEntityLinkException {
+
+        validate(update);
 
-        for(Link link : links) {
+        // Index only notices added entities and links, so it is built again after any update
+        reachabilityIndex = null;
 
-            if(!entityMap.containsKey(link.getFrom())){
-                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+        for (Link link : update.getRemovedLinks()) {
+            store.removeLink(link.getFrom(), link.getTo());
+            if (linkIndex != null) {
+                linkIndex.remove(link.getFrom(), link.getTo());
             }
+        }
 
-            if(!entityMap.containsKey(link.getTo())){
-                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+        IntList removedIds = update.getRemovedEntityIds();
+        for (int i = 0; i < removedIds.size(); i++) {
+            if (linkIndex != null && store.containsEntity(removedIds.get(i))) {
+                linkIndex.removeEntity(store, removedIds.get(i));
             }
+            store.removeEntity(removedIds.get(i));
+        }
+
+        // Applied while the update holds the graph alone, so that reads do not modify the store
+        store.applyRemovals();
+
+        for (Entity entity : update.getEntities()) {
+            store.addEntity(entity.getId(), entity.getName(), entity.getDescription());
+        }
+
+        long duplicates = 0;
 
-            entityMap.get(link.getFrom()).getToEntities().add(entityMap.get(link.getTo()));
-            entityMap.get(link.getTo()).getFromEntities().add(entityMap.get(link.getFrom()));
+        for (Link link : update.getLinks()) {
+            if (linkIndex == null || linkIndex.add(link.getFrom(), link.getTo())) {
+                store.addLink(link.getFrom(), link.getTo());
+            } else {
+                duplicates++;
+            }
         }
+
+        metrics.droppedDuplicateLinks(duplicates);
+    }
+
+    private void validate(GraphUpdate update) throws InvalidEntityLinkException {
+
+        // Removed links are counted, so duplicate links can be removed as many times as they exist
+        Map<Link, Integer> removedLinks = new HashMap<>();
+        IntList neighbours = new IntList();
+
+        for (Link link : update.getRemovedLinks()) {
+
+            requireEntity(link.getFrom());
+            requireEntity(link.getTo());
+
+            int removed = removedLinks.merge(link, 1, Integer::sum);
+
+            neighbours.clear();
+            store.copyOutgoing(link.getFrom(), neighbours);
+
+            int existing = 0;
+            for (int i = 0; i < neighbours.size(); i++) {
+                if (neighbours.get(i) == link.getTo()) {
+                    existing++;
+                }
+            }
+
+            if (removed > existing) {
+                throw new InvalidEntityLinkException(String.format("No link found from %d to %d", link.getFrom(), link.getTo()));
+            }
+        }
+
+        Set<Integer> removedIds = new HashSet<>();
+        IntList removedEntityIds = update.getRemovedEntityIds();
+
+        for (int i = 0; i < removedEntityIds.size(); i++) {
+            requireEntity(removedEntityIds.get(i));
+            removedIds.add(removedEntityIds.get(i));
+        }
+
+        Set<Integer> addedIds = new HashSet<>();
+
+        for (Entity entity : update.getEntities()) {
+            addedIds.add(entity.getId());
+        }
+
+        for (Link link : update.getLinks()) {
+            for (int id : new int[]{link.getFrom(), link.getTo()}) {
+                if (!addedIds.contains(id) && (removedIds.contains(id) || !store.containsEntity(id))) {
+                    throw new InvalidEntityLinkException(String.format("No entity found with ID %d", id));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates link index and wraps the sink to drop duplicate links, if the options ask for it
+     */
+    private ParsingSink deduplicate(ParsingSink sink, ParserOptions options) {
+
+        if (!options.isDeduplicateLinks()) {
+            return sink;
+        }
+
+        linkIndex = new LinkIndex();
+
+        return linkIndex.deduplicate(sink);
+    }
+
+    private void requireEntity(int id) throws InvalidEntityLinkException {
+        if (!store.containsEntity(id)) {
+            throw new InvalidEntityLinkException(String.format("No entity found with ID %d", id));
+        }
+    }
+
+    private CloneResult commit(ClonePlan plan, int firstCloneId, long start){
+
+        CloneResult result = commit(plan, firstCloneId);
+        metrics.end(Phase.CLONE, start);
+
+        return result;
+    }
+
+    /**
+     * Commits the plan, adds its links to the link index and counts the clone, without ending the clone phase
+     */
+    private CloneResult commit(ClonePlan plan, int firstCloneId){
+
+        CloneResult result = plan.commit(store, firstCloneId);
+
+        // Clone links end at new clones and root clone is linked once from each predecessor,
+        // so a graph without duplicate links stays without them and links only need to be indexed
+        if (linkIndex != null) {
+            LinkCursor links = store.linkCursor(result.getFirstLinkIndex());
+            while (links.next()) {
+                linkIndex.add(links.from(), links.to());
+            }
+        }
+
+        metrics.cloned(plan.size(), plan.getLinkCount(), plan.getTraversalSteps());
+
+        return result;
+    }
+
+    private GraphMemory compactMemory() throws IOException {
+
+        if (memory == null) {
+            memory = OffHeapMemory.mapped(new File(System.getProperty("java.io.tmpdir")));
+        }
+
+        return memory;
+    }
+
+    private ObjectGraphStore objectStore(){
+
+        if (!(store instanceof ObjectGraphStore)) {
+            throw new UnsupportedOperationException(
+                    String.format("Entity objects are only available in %s storage mode", StorageMode.OBJECT));
+        }
+
+        return (ObjectGraphStore) store;
     }
 }
@@ -0,0 +1,23 @@
+package app;
+
+/**
+ * How entities cloned in one batch see each other's clones
+ */
+public enum BatchMode {
+
+    /**
+     * Entities are cloned one after another, each clone sees clones of the entities before it
+     */
+    SEQUENTIAL,
+
+    /**
+     * Every entity is cloned against the graph as it was before the batch
+     */
+    SNAPSHOT,
+
+    /**
+     * Same as {@link #SNAPSHOT}, entities are planned concurrently on a fork-join pool. Clone IDs are the same
+     * as in {@link #SNAPSHOT} mode, whatever the number of threads.
+     */
+    PARALLEL
+}
@@ -0,0 +1,33 @@
+package app;
+
+/**
+ * Number of entities and links cloning an entity would create, see {@link ReachabilityIndex}
+ */
+public class CloneEstimate {
+
+    private final int entityId;
+    private final int entityCount;
+    private final int linkCount;
+
+    CloneEstimate(int entityId, int entityCount, int linkCount) {
+        this.entityId = entityId;
+        this.entityCount = entityCount;
+        this.linkCount = linkCount;
+    }
+
+    /**
+     * Get ID of the entity to clone
+     * @return Entity ID
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    public int getLinkCount() {
+        return linkCount;
+    }
+}
@@ -0,0 +1,183 @@
+package app;
+
+import app.store.GraphStore;
+import app.util.IntIntMap;
+import app.util.IntList;
+
+/**
+ * Read only part of cloning: entities reachable from the root in depth first preorder, tree links between them
+ * and entities linking to the root. Making a plan does not modify the graph, so plans against the same graph
+ * can all be made before any of them is committed.
+ * <p>
+ * Entities are addressed by their index in the plan, clone of entity at index i gets ID firstCloneId + i.
+ */
+class ClonePlan {
+
+    static final int NONE = -1;
+
+    private static final int FRAME_SIZE = 3;
+
+    private final IntList originalIds;
+    private final IntIntMap indexByOriginal;
+
+    /**
+     * Index of the entity the clone is linked from, {@link #NONE} for the root
+     */
+    private final IntList parents;
+    private final IntList rootPredecessors;
+
+    /**
+     * Number of links followed while traversing
+     */
+    private long traversalSteps;
+
+    private ClonePlan() {
+        this(new IntList(), new IntList(), new IntList(), new IntIntMap());
+    }
+
+    /**
+     * Creates plan of already traversed entities, subclass looks entities up by overriding {@link #indexOf(int)}
+     * @param originalIds Entities in order of plan indices, root first
+     * @param parents Plan index of the entity each clone is linked from, {@link #NONE} for the root
+     * @param rootPredecessors Entities linking to the root
+     * @param traversalSteps Number of links followed while traversing
+     */
+    ClonePlan(IntList originalIds, IntList parents, IntList rootPredecessors, long traversalSteps) {
+        this(originalIds, parents, rootPredecessors, null);
+        this.traversalSteps = traversalSteps;
+    }
+
+    private ClonePlan(IntList originalIds, IntList parents, IntList rootPredecessors, IntIntMap indexByOriginal) {
+        this.originalIds = originalIds;
+        this.parents = parents;
+        this.rootPredecessors = rootPredecessors;
+        this.indexByOriginal = indexByOriginal;
+    }
+
+    /**
+     * Plans clone of the entity and all entities reachable from it. Traversal is iterative so
+     * the depth of the graph is not limited by the thread stack size.
+     * @param store Graph store
+     * @param rootId ID of the starting entity
+     * @return Plan
+     */
+    static ClonePlan create(GraphStore store, int rootId) {
+
+        ClonePlan plan = new ClonePlan();
+
+        store.copyIncoming(rootId, plan.rootPredecessors);
+
+        // Each frame holds plan index of the entity, start of its neighbours in the buffer and position of the next neighbour.
+        // Neighbours of the frame on top of the stack are always at the end of the buffer.
+        IntList frames = new IntList();
+        IntList neighbours = new IntList();
+
+        plan.pushFrame(store, frames, neighbours, rootId, plan.add(rootId, NONE));
+
+        while (!frames.isEmpty()) {
+
+            int top = frames.size() - FRAME_SIZE;
+            int next = frames.get(top + 2);
+
+            if (next == neighbours.size()) {
+                neighbours.truncate(frames.get(top + 1));
+                frames.truncate(top);
+                continue;
+            }
+
+            frames.set(top + 2, next + 1);
+            int neighbour = neighbours.get(next);
+
+            if (!plan.indexByOriginal.containsKey(neighbour)) {
+                plan.pushFrame(store, frames, neighbours, neighbour, plan.add(neighbour, frames.get(top)));
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Adds clones and their links to the store. Clones get consecutive IDs in plan order.
+     * @param store Graph store the plan was made against
+     * @param firstCloneId ID of the root clone, must be larger than any ID in the store
+     * @return Clone result
+     */
+    CloneResult commit(GraphStore store, int firstCloneId) {
+
+        int firstLinkIndex = store.getLinkCount();
+
+        for (int i = 0; i < originalIds.size(); i++) {
+            store.addEntityCopy(firstCloneId + i, originalIds.get(i));
+        }
+
+        for (int i = 0; i < rootPredecessors.size(); i++) {
+            store.addLink(rootPredecessors.get(i), firstCloneId);
+        }
+
+        for (int i = 1; i < originalIds.size(); i++) {
+            store.addLink(firstCloneId + parents.get(i), firstCloneId + i);
+        }
+
+        return new CloneResult(this, firstCloneId, firstLinkIndex);
+    }
+
+    /**
+     * Get number of entities to clone
+     * @return Number of entities
+     */
+    int size() {
+        return originalIds.size();
+    }
+
+    /**
+     * Get number of links the commit creates
+     * @return Number of links
+     */
+    int getLinkCount() {
+        return rootPredecessors.size() + originalIds.size() - 1;
+    }
+
+    long getTraversalSteps() {
+        return traversalSteps;
+    }
+
+    int getOriginalId(int index) {
+        return originalIds.get(index);
+    }
+
+    /**
+     * Get plan index of the entity
+     * @param originalId ID of the original entity
+     * @return Index or -1 if the entity is not part of the plan
+     */
+    int indexOf(int originalId) {
+        return indexByOriginal.get(originalId, NONE);
+    }
+
+    int[] getOriginalIds() {
+        return originalIds.toArray();
+    }
+
+    private void pushFrame(GraphStore store, IntList frames, IntList neighbours, int entityId, int index) {
+
+        int start = neighbours.size();
+
+        frames.add(index);
+        frames.add(start);
+        frames.add(start);
+
+        store.copyOutgoing(entityId, neighbours);
+        traversalSteps += neighbours.size() - start;
+    }
+
+    private int add(int originalId, int parent) {
+
+        int index = originalIds.size();
+
+        originalIds.add(originalId);
+        indexByOriginal.put(originalId, index);
+        parents.add(parent);
+
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+package app;
+
+import app.store.GraphStore;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Makes clone plans of a range of roots on a fork-join pool. Range is split in halves until it is small
+ * enough, so idle threads steal the other halves. Plans only read the graph, each plan is built privately
+ * and stored at position of its root.
+ */
+class ClonePlanTask extends RecursiveAction {
+
+    private final GraphStore store;
+    private final int[] rootIds;
+    private final ClonePlan[] plans;
+    private final int from;
+    private final int to;
+    private final int threshold;
+
+    /**
+     * @param store Graph store, must not be modified until the task completes
+     * @param rootIds IDs of the starting entities
+     * @param plans Array to store plans to, same length as root IDs
+     * @param threshold Largest number of roots planned by one task without splitting
+     */
+    ClonePlanTask(GraphStore store, int[] rootIds, ClonePlan[] plans, int threshold) {
+        this(store, rootIds, plans, 0, rootIds.length, Math.max(threshold, 1));
+    }
+
+    private ClonePlanTask(GraphStore store, int[] rootIds, ClonePlan[] plans, int from, int to, int threshold) {
+        this.store = store;
+        this.rootIds = rootIds;
+        this.plans = plans;
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+
+        if (to - from <= threshold) {
+            for (int i = from; i < to; i++) {
+                plans[i] = ClonePlan.create(store, rootIds[i]);
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+
+        invokeAll(new ClonePlanTask(store, rootIds, plans, from, middle, threshold),
+                new ClonePlanTask(store, rootIds, plans, middle, to, threshold));
+    }
+}
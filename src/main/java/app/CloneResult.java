@@ -0,0 +1,93 @@
+package app;
+
+import app.model.Entity;
+
+/**
+ * Class that holds results of cloning, original to clone ID mapping and range of created links.
+ * Clones have consecutive IDs starting with the root clone.
+ */
+public class CloneResult {
+
+    private final ClonePlan plan;
+    private final int firstCloneId;
+    private final int firstLinkIndex;
+
+    CloneResult(ClonePlan plan, int firstCloneId, int firstLinkIndex) {
+        this.plan = plan;
+        this.firstCloneId = firstCloneId;
+        this.firstLinkIndex = firstLinkIndex;
+    }
+
+    /**
+     * Check whether entity was already cloned, O(1)
+     * @param originalId ID of the original entity
+     * @return true if entity was cloned
+     */
+    public boolean isCloned(int originalId) {
+        return plan.indexOf(originalId) >= 0;
+    }
+
+    /**
+     * Get ID of the clone of the original entity
+     * @param originalId ID of the original entity
+     * @return ID of the clone or {@link Entity#INVALID_ID} if entity was not cloned
+     */
+    public int getCloneId(int originalId) {
+        int index = plan.indexOf(originalId);
+        return index < 0 ? Entity.INVALID_ID : firstCloneId + index;
+    }
+
+    /**
+     * Get ID of the clone of the initial entity
+     * @return Clone ID
+     */
+    public int getRootCloneId() {
+        return firstCloneId;
+    }
+
+    /**
+     * Get number of cloned entities
+     * @return Number of clones
+     */
+    public int size() {
+        return plan.size();
+    }
+
+    /**
+     * Get original entity IDs in order in which they were cloned
+     * @return Original IDs
+     */
+    public int[] getOriginalIds() {
+        return plan.getOriginalIds();
+    }
+
+    /**
+     * Get clone IDs, element at index i is the clone of {@link #getOriginalIds()} element at index i
+     * @return Clone IDs
+     */
+    public int[] getCloneIds() {
+        int[] cloneIds = new int[plan.size()];
+
+        for (int i = 0; i < cloneIds.length; i++) {
+            cloneIds[i] = firstCloneId + i;
+        }
+
+        return cloneIds;
+    }
+
+    /**
+     * Get index of the first link created by cloning, see {@link App#getLinks()}
+     * @return Index of the first new link
+     */
+    public int getFirstLinkIndex() {
+        return firstLinkIndex;
+    }
+
+    /**
+     * Get number of links created by cloning
+     * @return Number of new links
+     */
+    public int getLinkCount() {
+        return plan.getLinkCount();
+    }
+}
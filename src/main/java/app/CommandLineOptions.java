@@ -0,0 +1,64 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line arguments split into positional arguments and options in form --name or --name=value
+ */
+public class CommandLineOptions {
+
+    private static final String OPTION_PREFIX = "--";
+
+    private final List<String> arguments = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    public CommandLineOptions(String[] args) {
+
+        for (String arg : args) {
+
+            if (arg != null && arg.startsWith(OPTION_PREFIX)) {
+
+                int separator = arg.indexOf('=');
+
+                if (separator < 0) {
+                    options.put(arg.substring(OPTION_PREFIX.length()), "");
+                } else {
+                    options.put(arg.substring(OPTION_PREFIX.length(), separator), arg.substring(separator + 1));
+                }
+            } else {
+                arguments.add(arg);
+            }
+        }
+    }
+
+    /**
+     * Get positional argument
+     * @param index Position of the argument, options are not counted
+     * @return Argument or null if there are not enough arguments
+     */
+    public String getArgument(int index) {
+        return index < arguments.size() ? arguments.get(index) : null;
+    }
+
+    public int getArgumentCount() {
+        return arguments.size();
+    }
+
+    public boolean hasOption(String name) {
+        return options.containsKey(name);
+    }
+
+    /**
+     * Get option value
+     * @param name Option name without leading dashes
+     * @param defaultValue Value to return when option is not specified
+     * @return Option value
+     */
+    public String getOption(String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,41 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates IDs for clones in blocks of consecutive IDs. Block is reserved with one atomic update,
+ * so threads sharing the allocator never contend per cloned entity.
+ */
+class IdAllocator {
+
+    private final AtomicInteger nextId;
+
+    /**
+     * @param firstId First ID to allocate, must be larger than any ID in the graph
+     */
+    IdAllocator(int firstId) {
+        this.nextId = new AtomicInteger(firstId);
+    }
+
+    /**
+     * Reserves block of consecutive IDs
+     * @param count Number of IDs
+     * @return First ID of the block
+     * @throws IllegalStateException if IDs up to {@link Integer#MAX_VALUE} are not enough
+     */
+    int reserve(int count) {
+
+        while (true) {
+
+            int first = nextId.get();
+
+            if (first > Integer.MAX_VALUE - count) {
+                throw new IllegalStateException(String.format("Not enough entity IDs left to clone %d entities", count));
+            }
+
+            if (nextId.compareAndSet(first, first + count)) {
+                return first;
+            }
+        }
+    }
+}
@@ -1,69 +1,452 @@
 package app;
 
-import app.model.Entity;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import app.external.ExternalCloner;
+import app.metrics.Metrics;
+import app.output.GraphJsonWriter;
+import app.output.ParallelGraphJsonWriter;
+import app.server.CloneServer;
+import app.store.StorageMode;
+import parser.ParserOptions;
+
+import javax.management.JMException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
 
     private static final int STATUS_ERROR = 1;
 
+    private static final String USAGE = "Usage:\n app [options] <inputfile> <entityID> [<entityID>...]\n" +
+            " app --write-snapshot=<file> [options] <inputfile>\n" +
+            " app --serve=<port> [options] <inputfile>\n\n" +
+            "Input file is JSON or graph snapshot.\n\n" +
+            "Options:\n" +
+            " --storage=object|compact|off-heap   graph representation, compact uses primitive arrays,\n" +
+            "                                     off-heap keeps them in mapped scratch files in java.io.tmpdir\n" +
+            "                                     (default object)\n" +
+            " --buffer-size=<bytes>                output buffer size (default " + GraphJsonWriter.DEFAULT_BUFFER_SIZE + ")\n" +
+            " --delta                              print only cloned entities and new links\n" +
+            " --id-map                             with --delta, also print original to clone ID mapping\n" +
+            " --parse-threads=<n>                  parse input on n threads (default 1)\n" +
+            " --mmap                               read input through memory mapping\n" +
+            " --intern-strings                     keep one instance of every distinct name and description\n" +
+            " --dedup-links                        drop duplicate links while loading and applying updates\n" +
+            " --scoped                             clone single entity keeping names and descriptions only of entities\n" +
+            "                                     reachable from it, input is read twice\n" +
+            " --external                           clone single entity keeping the graph in sorted runs in scratch\n" +
+            "                                     files in java.io.tmpdir, for graphs larger than memory,\n" +
+            "                                     clone IDs are in breadth first order\n" +
+            " --memory-budget=<bytes>[k|m|g]       memory of external sort buffers (default 64m)\n" +
+            " --update=<file>[,<file>...]          apply updates with added and removed entities and links, in order,\n" +
+            "                                     before cloning, writing snapshot or serving\n" +
+            " --write-snapshot=<file>              write binary snapshot of the input graph for fast reload,\n" +
+            "                                     clones and prints the graph only if entityID is given\n" +
+            " --serve=<port>                       keep the graph loaded and serve clone requests on localhost,\n" +
+            "                                     GET /clone?id=<entityID>[&delta][&id-map], GET /graph\n" +
+            "                                     and POST /update\n" +
+            " --batch=sequential|snapshot|parallel with several entity IDs, whether each clone sees clones of\n" +
+            "                                     entities before it or the original graph, parallel is snapshot\n" +
+            "                                     planned on several threads (default sequential)\n" +
+            " --traversal=dfs|parallel-bfs         parallel-bfs traverses each clone level by level on clone threads,\n" +
+            "                                     clone IDs and links between clones differ from dfs (default dfs)\n" +
+            " --clone-threads=<n>                  threads of parallel batch and traversal (default number of processors)\n" +
+            " --output-threads=<n>                 serialize whole graph output in chunks on n threads (default 1)\n" +
+            " --dry-run                            print number of entities and links each clone would create,\n" +
+            "                                     without cloning\n" +
+            " --stats[=<file>]                     write phase times and counters as JSON to standard error or file,\n" +
+            "                                     with --serve they are exposed through JMX as " + Metrics.OBJECT_NAME;
+
     public static void main(String[] args){
 
         //args = new String[]{"data/valid.json", "5"};
 
-        if(args.length < 2) {
-            System.out.println("Usage:\n app <inputfile> <entityID>");
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        String snapshotFileName = options.getOption("write-snapshot", null);
+        String servePort = options.getOption("serve", null);
+        boolean entityIdRequired = snapshotFileName == null && servePort == null;
+
+        if(options.getArgumentCount() < (entityIdRequired ? 2 : 1)) {
+            System.out.println(USAGE);
             return;
         }
 
-        String fileName = args[0];
-        String entityIdStr = args[1];
-        int entityId = Entity.INVALID_ID;
+        String fileName = options.getArgument(0);
+        String entityIdStr = options.getArgumentCount() > 1 ? options.getArgument(1) : null;
+        int[] entityIds = new int[Math.max(options.getArgumentCount() - 1, 0)];
+        BatchMode batchMode = BatchMode.SEQUENTIAL;
+        StorageMode storageMode = StorageMode.OBJECT;
+        int bufferSize = GraphJsonWriter.DEFAULT_BUFFER_SIZE;
 
         if(fileName == null || fileName.isEmpty()) {
             System.out.println("Path to input JSON file must be specified");
             System.exit(STATUS_ERROR);
         }
 
-        if(entityIdStr == null || entityIdStr.isEmpty()) {
+        if(entityIdRequired && (entityIdStr == null || entityIdStr.isEmpty())) {
             System.out.println("Entity ID must be specified");
             System.exit(STATUS_ERROR);
         }
 
         try {
-            entityId = Integer.parseInt(entityIdStr);
+            for (int i = 0; i < entityIds.length; i++) {
+                entityIds[i] = Integer.parseInt(options.getArgument(i + 1));
+            }
         } catch (NumberFormatException nfe){
             //nfe.printStackTrace();
             System.out.println("Entity ID must be integer number");
             System.exit(STATUS_ERROR);
         }
 
-        App app = new App();
+        try {
+            storageMode = StorageMode.valueOf(options.getOption("storage", StorageMode.OBJECT.name()).toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException iae){
+            System.out.println(String.format("Unknown storage mode %s", options.getOption("storage", "")));
+            System.exit(STATUS_ERROR);
+        }
+
+        try {
+            batchMode = BatchMode.valueOf(options.getOption("batch", BatchMode.SEQUENTIAL.name()).toUpperCase());
+        } catch (IllegalArgumentException iae){
+            System.out.println(String.format("Unknown batch mode %s", options.getOption("batch", "")));
+            System.exit(STATUS_ERROR);
+        }
+
+        try {
+            bufferSize = Integer.parseInt(options.getOption("buffer-size", String.valueOf(bufferSize)));
+        } catch (NumberFormatException nfe){
+            bufferSize = 0;
+        }
+
+        if(bufferSize <= 0) {
+            System.out.println("Buffer size must be positive integer number");
+            System.exit(STATUS_ERROR);
+        }
+
+        int cloneThreads = 0;
+
+        try {
+            cloneThreads = Integer.parseInt(options.getOption("clone-threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+        } catch (NumberFormatException nfe){
+            cloneThreads = 0;
+        }
+
+        if(cloneThreads <= 0) {
+            System.out.println("Number of clone threads must be positive integer number");
+            System.exit(STATUS_ERROR);
+        }
+
+        int outputThreads = 0;
+
+        try {
+            outputThreads = Integer.parseInt(options.getOption("output-threads", "1"));
+        } catch (NumberFormatException nfe){
+            outputThreads = 0;
+        }
+
+        if(outputThreads <= 0) {
+            System.out.println("Number of output threads must be positive integer number");
+            System.exit(STATUS_ERROR);
+        }
+
+        String traversal = options.getOption("traversal", "dfs");
+        boolean parallelTraversal = traversal.equals("parallel-bfs");
+
+        if(!parallelTraversal && !traversal.equals("dfs")) {
+            System.out.println(String.format("Unknown traversal %s", traversal));
+            System.exit(STATUS_ERROR);
+        }
+
+        if(parallelTraversal && batchMode != BatchMode.SEQUENTIAL) {
+            System.out.println("Parallel traversal requires sequential batch");
+            System.exit(STATUS_ERROR);
+        }
+
+        ParserOptions parserOptions = new ParserOptions();
+
+        try {
+            parserOptions.setThreads(Integer.parseInt(options.getOption("parse-threads", "1")));
+        } catch (NumberFormatException nfe){
+            System.out.println("Number of parse threads must be integer number");
+            System.exit(STATUS_ERROR);
+        }
+
+        parserOptions.setMapped(options.hasOption("mmap"));
+        parserOptions.setInternStrings(options.hasOption("intern-strings"));
+        parserOptions.setDeduplicateLinks(options.hasOption("dedup-links"));
+
+        App app = new App(storageMode);
+
+        if(options.hasOption("stats") || servePort != null) {
+            app.setMetrics(new Metrics());
+        }
+
+        if(options.hasOption("external")) {
+            cloneExternal(app, options, fileName, entityIds, parserOptions, bufferSize);
+            return;
+        }
+
+        if(options.hasOption("scoped")) {
+            cloneScoped(app, options, fileName, entityIds, parserOptions, bufferSize);
+            return;
+        }
 
         try {
-            app.parseFile(fileName);
+            app.parseFile(fileName, parserOptions);
         } catch (Exception e) {
             //e.printStackTrace();
             System.out.println(String.format("Error parsing JSON file: %s", e.getMessage()));
             System.exit(STATUS_ERROR);
         }
 
-        Entity entity = app.findEntity(entityId);
+        String updateFileNames = options.getOption("update", null);
 
-        if(entity == null) {
-            System.out.println(String.format("Entity with ID %d not found", entityId));
-            System.exit(STATUS_ERROR);
+        if(updateFileNames != null) {
+
+            for (String updateFileName : updateFileNames.split(",")) {
+                try {
+                    app.applyUpdate(updateFileName);
+                } catch (Exception e) {
+                    System.out.println(String.format("Error applying update %s: %s", updateFileName, e.getMessage()));
+                    System.exit(STATUS_ERROR);
+                }
+            }
+        }
+
+        if(snapshotFileName != null) {
+
+            try {
+                app.writeSnapshot(snapshotFileName);
+            } catch (IOException e) {
+                System.out.println(String.format("Error writing snapshot: %s", e.getMessage()));
+                System.exit(STATUS_ERROR);
+            }
+
+            if(entityIdStr == null && servePort == null) {
+                writeStats(app, options);
+                return;
+            }
+        }
+
+        if(servePort != null) {
+            serve(app, servePort, bufferSize);
+            return;
+        }
+
+        for (int entityId : entityIds) {
+            if(app.findEntity(entityId) == null) {
+                System.out.println(String.format("Entity with ID %d not found", entityId));
+                System.exit(STATUS_ERROR);
+            }
         }
 
-        app.clone(entity);
+        if(options.hasOption("dry-run")) {
+
+            try {
+                OutputStream out = new FileOutputStream(FileDescriptor.out);
+                app.writeCloneEstimates(entityIds, out, bufferSize);
+                out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                System.out.println(String.format("Error generating JSON: %s", e.getMessage()));
+                System.exit(STATUS_ERROR);
+            }
+
+            writeStats(app, options);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(cloneThreads);
+        List<CloneResult> results;
+
+        try {
+            if (parallelTraversal) {
+                results = new ArrayList<>(entityIds.length);
+                for (int entityId : entityIds) {
+                    results.add(app.clone(entityId, pool));
+                }
+            } else {
+                results = app.cloneAll(entityIds, batchMode, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // Standard output is written directly, bypassing System.out, and is not closed
+        FileOutputStream out = new FileOutputStream(FileDescriptor.out);
 
         try {
-            String out = app.printElementsAndLinks();
-            System.out.println(out);
-        } catch (JsonProcessingException e) {
+            if (options.hasOption("delta")) {
+                app.writeClonedElementsAndLinks(results, options.hasOption("id-map"), out, bufferSize);
+            } else if (outputThreads > 1) {
+                ForkJoinPool outputPool = new ForkJoinPool(outputThreads);
+                try (ParallelGraphJsonWriter writer = new ParallelGraphJsonWriter(outputPool,
+                        ParallelGraphJsonWriter.DEFAULT_CHUNK_SIZE, bufferSize)) {
+                    app.writeElementsAndLinks(out.getChannel(), writer);
+                } finally {
+                    outputPool.shutdown();
+                }
+            } else {
+                app.writeElementsAndLinks(out, bufferSize);
+            }
+            out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
             //e.printStackTrace();
             System.out.println(String.format("Error generating JSON: %s", e.getMessage()));
             System.exit(STATUS_ERROR);
         }
+
+        writeStats(app, options);
+    }
+
+    /**
+     * Clones single entity loading only what it needs, see {@link App#cloneScoped}
+     */
+    private static void cloneScoped(App app, CommandLineOptions options, String fileName, int[] entityIds,
+                                    ParserOptions parserOptions, int bufferSize) {
+
+        if(entityIds.length != 1 || options.hasOption("write-snapshot") || options.hasOption("serve")
+                || options.hasOption("update") || options.hasOption("dry-run")) {
+            System.out.println("Scoped loading requires single entity ID and no snapshot writing, serving, updates or dry run");
+            System.exit(STATUS_ERROR);
+        }
+
+        // Standard output is written directly, bypassing System.out, and is not closed
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+
+        try {
+            app.cloneScoped(fileName, parserOptions, entityIds[0], options.hasOption("delta"), options.hasOption("id-map"),
+                    out, bufferSize);
+            out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(STATUS_ERROR);
+        } catch (Exception e) {
+            System.out.println(String.format("Error cloning JSON file: %s", e.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
+
+        writeStats(app, options);
+    }
+
+    /**
+     * Clones single entity of a graph larger than memory, see {@link App#cloneExternal}
+     */
+    private static void cloneExternal(App app, CommandLineOptions options, String fileName, int[] entityIds,
+                                      ParserOptions parserOptions, int bufferSize) {
+
+        if(entityIds.length != 1 || options.hasOption("scoped") || options.hasOption("write-snapshot") || options.hasOption("serve")
+                || options.hasOption("update") || options.hasOption("dry-run") || options.hasOption("dedup-links")) {
+            System.out.println("External cloning requires single entity ID and no scoped loading, snapshot writing, serving, updates, dry run or link deduplication");
+            System.exit(STATUS_ERROR);
+        }
+
+        long memoryBudget = 0;
+
+        try {
+            memoryBudget = parseSize(options.getOption("memory-budget", String.valueOf(ExternalCloner.DEFAULT_MEMORY_BUDGET)));
+        } catch (NumberFormatException nfe) {
+            memoryBudget = 0;
+        }
+
+        if(memoryBudget <= 0) {
+            System.out.println("Memory budget must be positive number of bytes");
+            System.exit(STATUS_ERROR);
+        }
+
+        // Standard output is written directly, bypassing System.out, and is not closed
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+
+        try {
+            app.cloneExternal(fileName, parserOptions, entityIds[0], memoryBudget, options.hasOption("delta"),
+                    options.hasOption("id-map"), out, bufferSize);
+            out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(STATUS_ERROR);
+        } catch (Exception e) {
+            System.out.println(String.format("Error cloning JSON file: %s", e.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
+
+        writeStats(app, options);
+    }
+
+    /**
+     * Parses number of bytes with optional k, m or g suffix
+     */
+    private static long parseSize(String size) {
+
+        String value = size.toLowerCase();
+        int shift = 0;
+
+        if(value.endsWith("k")) {
+            shift = 10;
+        } else if(value.endsWith("m")) {
+            shift = 20;
+        } else if(value.endsWith("g")) {
+            shift = 30;
+        }
+
+        if(shift > 0) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        return Long.parseLong(value) << shift;
+    }
+
+    /**
+     * Writes metrics to standard error or to the file given by --stats option, if the option is set
+     */
+    private static void writeStats(App app, CommandLineOptions options) {
+
+        if(!options.hasOption("stats")) {
+            return;
+        }
+
+        String fileName = options.getOption("stats", null);
+
+        try {
+            if(fileName == null) {
+                app.getMetrics().writeStats(System.err);
+                System.err.println();
+            } else {
+                try (OutputStream out = new FileOutputStream(fileName)) {
+                    app.getMetrics().writeStats(out);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(String.format("Error writing stats: %s", e.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
+    }
+
+    private static void serve(App app, String port, int bufferSize) {
+
+        try {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+            app.getMetrics().register();
+            CloneServer server = new CloneServer(app, address, Runtime.getRuntime().availableProcessors(), bufferSize);
+            server.start();
+            System.out.println(String.format("Serving clone requests on http://%s:%d", address.getHostString(), server.getPort()));
+        } catch (NumberFormatException nfe) {
+            System.out.println("Port must be integer number");
+            System.exit(STATUS_ERROR);
+        } catch (IOException | JMException e) {
+            System.out.println(String.format("Error starting server: %s", e.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
     }
 }
@@ -0,0 +1,196 @@
+package app;
+
+import app.store.GraphStore;
+import app.util.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Clone plan made by level synchronous breadth first traversal on a fork-join pool, for single clones
+ * that reach most of a large graph.
+ * <p>
+ * Each level is split into more chunks than there are threads, so idle threads steal chunks of busy ones.
+ * Chunk collects entities it claimed in {@link VisitTable} into its own buffer, buffers are merged in chunk order
+ * at the end of the level. Plan is the same as of sequential breadth first traversal, whatever the number
+ * of threads: entities are in breadth first order and each clone is linked from the clone of the first entity
+ * of the previous level linking to it.
+ * <p>
+ * Plan is not equivalent to {@link ClonePlan#create(GraphStore, int)}. It clones the same entities with the same
+ * number of links, but as a different spanning tree: clone IDs and the links between clones differ, as depth first
+ * order and tree links can not be reproduced level by level.
+ */
+class ParallelClonePlan extends ClonePlan {
+
+    private static final int TASKS_PER_THREAD = 8;
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    private final VisitTable visited;
+
+    private ParallelClonePlan(IntList originalIds, IntList parents, IntList rootPredecessors, long traversalSteps,
+                              VisitTable visited) {
+        super(originalIds, parents, rootPredecessors, traversalSteps);
+        this.visited = visited;
+    }
+
+    /**
+     * Plans clone of the entity and all entities reachable from it
+     * @param store Graph store, must not be modified until the plan is made
+     * @param rootId ID of the starting entity
+     * @param pool Pool to traverse on
+     * @return Plan
+     */
+    static ParallelClonePlan create(GraphStore store, int rootId, ForkJoinPool pool) {
+
+        IntList originalIds = new IntList();
+        IntList parents = new IntList();
+        IntList rootPredecessors = new IntList();
+        VisitTable visited = new VisitTable(store.getEntityCount());
+
+        store.copyIncoming(rootId, rootPredecessors);
+
+        visited.claim(rootId, 0);
+        visited.setIndex(rootId, 0);
+        originalIds.add(rootId);
+        parents.add(NONE);
+
+        int levelStart = 0;
+        long traversalSteps = 0;
+
+        while (levelStart < originalIds.size()) {
+
+            int levelEnd = originalIds.size();
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, (levelEnd - levelStart) / (pool.getParallelism() * TASKS_PER_THREAD) + 1);
+
+            List<LevelChunk> chunks = new ArrayList<>();
+
+            for (int from = levelStart; from < levelEnd; from += chunkSize) {
+                chunks.add(new LevelChunk(store, visited, originalIds, from, Math.min(from + chunkSize, levelEnd)));
+            }
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+
+            // Claims of all chunks must be settled before any chunk keeps its children
+            for (LevelChunk chunk : chunks) {
+                tasks.add(ForkJoinTask.adapt(chunk::expand));
+            }
+            invokeAll(pool, tasks);
+
+            tasks.clear();
+            for (LevelChunk chunk : chunks) {
+                tasks.add(ForkJoinTask.adapt(chunk::keepClaimed));
+            }
+            invokeAll(pool, tasks);
+
+            int next = levelEnd;
+
+            for (LevelChunk chunk : chunks) {
+                chunk.offset = next;
+                next += chunk.children.size();
+                traversalSteps += chunk.steps;
+            }
+
+            originalIds.resize(next);
+            parents.resize(next);
+
+            tasks.clear();
+            for (LevelChunk chunk : chunks) {
+                tasks.add(ForkJoinTask.adapt(() -> chunk.merge(parents)));
+            }
+            invokeAll(pool, tasks);
+
+            levelStart = levelEnd;
+        }
+
+        return new ParallelClonePlan(originalIds, parents, rootPredecessors, traversalSteps, visited);
+    }
+
+    @Override
+    int indexOf(int originalId) {
+        return visited.indexOf(originalId);
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<ForkJoinTask<?>> tasks) {
+        if (tasks.size() == 1) {
+            pool.invoke(tasks.get(0));
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    /**
+     * Range of entities of one level and entities of the next level they claimed
+     */
+    private static class LevelChunk {
+
+        private final GraphStore store;
+        private final VisitTable visited;
+        private final IntList originalIds;
+        private final int from;
+        private final int to;
+
+        private final IntList children = new IntList();
+        private final IntList childParents = new IntList();
+        private int offset;
+        private long steps;
+
+        LevelChunk(GraphStore store, VisitTable visited, IntList originalIds, int from, int to) {
+            this.store = store;
+            this.visited = visited;
+            this.originalIds = originalIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        void expand() {
+
+            IntList neighbours = new IntList();
+
+            for (int parent = from; parent < to; parent++) {
+
+                neighbours.clear();
+                store.copyOutgoing(originalIds.get(parent), neighbours);
+                steps += neighbours.size();
+
+                for (int i = 0; i < neighbours.size(); i++) {
+                    int neighbour = neighbours.get(i);
+                    if (visited.claim(neighbour, parent)) {
+                        children.add(neighbour);
+                        childParents.add(parent);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drops children claimed later by a parent of an earlier chunk
+         */
+        void keepClaimed() {
+
+            int kept = 0;
+
+            for (int i = 0; i < children.size(); i++) {
+                int child = children.get(i);
+                int parent = childParents.get(i);
+                if (visited.getClaim(child) == parent) {
+                    children.set(kept, child);
+                    childParents.set(kept, parent);
+                    kept++;
+                }
+            }
+
+            children.truncate(kept);
+            childParents.truncate(kept);
+        }
+
+        void merge(IntList parents) {
+            for (int i = 0; i < children.size(); i++) {
+                originalIds.set(offset + i, children.get(i));
+                parents.set(offset + i, childParents.get(i));
+                visited.setIndex(children.get(i), offset + i);
+            }
+        }
+    }
+}
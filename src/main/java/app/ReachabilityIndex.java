@@ -0,0 +1,349 @@
+package app;
+
+import app.store.EntityCursor;
+import app.store.GraphStore;
+import app.store.LinkCursor;
+import app.util.IntIntMap;
+import app.util.IntList;
+
+import java.util.Arrays;
+
+/**
+ * Index of the graph that tells how many entities are reachable from an entity, so size of a clone is known
+ * without cloning. Graph is condensed to its strongly connected components, all entities of a component reach
+ * the same entities, so reachable counts are cached per component.
+ * <p>
+ * Counts of components that link to at most one other component are computed when the index is built,
+ * others on their first query by traversing the condensation, which is usually much smaller than the graph.
+ * <p>
+ * Index describes the graph as it was when built, it is not updated when entities or links are added.
+ * Queries are thread safe.
+ */
+public class ReachabilityIndex {
+
+    private static final int NONE = -1;
+
+    private final IntIntMap indexById;
+    private final int entityCount;
+    private final int linkCount;
+
+    /**
+     * Component of each entity, components are numbered in reverse topological order,
+     * so components an entity links to have smaller or equal numbers
+     */
+    private final int[] components;
+    private final int[] incomingCounts;
+    private final int[] componentSizes;
+
+    /**
+     * Condensation, component c links to successors[successorOffsets[c]..successorOffsets[c + 1])
+     */
+    private final int[] successorOffsets;
+    private final int[] successors;
+
+    /**
+     * Number of entities reachable from each component, {@link #NONE} until known
+     */
+    private final int[] reachableCounts;
+
+    /**
+     * Query in which each component was last visited
+     */
+    private final int[] visits;
+    private int query;
+
+    private ReachabilityIndex(GraphStore store, IntIntMap indexById, int[] components, int[] incomingCounts,
+                              int[] componentSizes, int[] successorOffsets, int[] successors) {
+        this.indexById = indexById;
+        this.entityCount = store.getEntityCount();
+        this.linkCount = store.getLinkCount();
+        this.components = components;
+        this.incomingCounts = incomingCounts;
+        this.componentSizes = componentSizes;
+        this.successorOffsets = successorOffsets;
+        this.successors = successors;
+        this.reachableCounts = new int[componentSizes.length];
+        this.visits = new int[componentSizes.length];
+
+        // Components without fan-out reach their own entities plus whatever their only successor reaches.
+        // Successors have smaller numbers, so they are resolved first.
+        for (int c = 0; c < componentSizes.length; c++) {
+            int start = successorOffsets[c];
+            int end = successorOffsets[c + 1];
+            if (end == start) {
+                reachableCounts[c] = componentSizes[c];
+            } else if (end == start + 1 && reachableCounts[successors[start]] != NONE) {
+                reachableCounts[c] = componentSizes[c] + reachableCounts[successors[start]];
+            } else {
+                reachableCounts[c] = NONE;
+            }
+        }
+    }
+
+    /**
+     * Builds index of the graph in O(entities + links) time
+     * @param store Graph store
+     * @return Index
+     */
+    public static ReachabilityIndex build(GraphStore store) {
+
+        int entityCount = store.getEntityCount();
+        IntIntMap indexById = new IntIntMap(entityCount);
+
+        EntityCursor entities = store.entityCursor();
+        for (int index = 0; entities.next(); index++) {
+            indexById.put(entities.id(), index);
+        }
+
+        // Adjacency of dense indices in CSR form, links are read twice to avoid keeping their endpoints
+        int[] offsets = new int[entityCount + 1];
+        int[] incomingCounts = new int[entityCount];
+
+        LinkCursor links = store.linkCursor(0);
+        while (links.next()) {
+            offsets[indexById.get(links.from(), NONE) + 1]++;
+            incomingCounts[indexById.get(links.to(), NONE)]++;
+        }
+
+        for (int i = 0; i < entityCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[offsets[entityCount]];
+        int[] next = new int[entityCount];
+        System.arraycopy(offsets, 0, next, 0, entityCount);
+
+        links = store.linkCursor(0);
+        while (links.next()) {
+            targets[next[indexById.get(links.from(), NONE)]++] = indexById.get(links.to(), NONE);
+        }
+
+        int[] components = findComponents(offsets, targets, next);
+        int componentCount = 0;
+        for (int component : components) {
+            componentCount = Math.max(componentCount, component + 1);
+        }
+
+        int[] componentSizes = new int[componentCount];
+        for (int component : components) {
+            componentSizes[component]++;
+        }
+
+        // Members of each component, ordered by component
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] = memberOffsets[c] + componentSizes[c];
+        }
+
+        int[] members = new int[entityCount];
+        System.arraycopy(memberOffsets, 0, next, 0, componentCount);
+        for (int i = 0; i < entityCount; i++) {
+            members[next[components[i]]++] = i;
+        }
+
+        // Distinct links between components, marks hold the last component that added each successor
+        int[] successorOffsets = new int[componentCount + 1];
+        IntList successors = new IntList();
+        int[] marks = next;
+        Arrays.fill(marks, 0, componentCount, NONE);
+
+        for (int c = 0; c < componentCount; c++) {
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int member = members[m];
+                for (int i = offsets[member]; i < offsets[member + 1]; i++) {
+                    int successor = components[targets[i]];
+                    if (successor != c && marks[successor] != c) {
+                        marks[successor] = c;
+                        successors.add(successor);
+                    }
+                }
+            }
+            successorOffsets[c + 1] = successors.size();
+        }
+
+        return new ReachabilityIndex(store, indexById, components, incomingCounts, componentSizes,
+                successorOffsets, successors.toArray());
+    }
+
+    /**
+     * Check whether the index still describes the store, i.e. no entities or links were added since it was built.
+     * Only counts are compared, so the index must be dropped after entities or links are removed.
+     * @param store Graph store the index was built from
+     * @return true if index is current
+     */
+    public boolean isCurrent(GraphStore store) {
+        return store.getEntityCount() == entityCount && store.getLinkCount() == linkCount;
+    }
+
+    public int getComponentCount() {
+        return componentSizes.length;
+    }
+
+    /**
+     * Get number of entities in the strongly connected component of the entity
+     * @param entityId Entity ID
+     * @return Component size
+     * @throws IllegalArgumentException if entity does not exist
+     */
+    public int getComponentSize(int entityId) {
+        return componentSizes[components[indexOf(entityId)]];
+    }
+
+    /**
+     * Get number of entities reachable from the entity, including the entity itself
+     * @param entityId Entity ID
+     * @return Number of entities
+     * @throws IllegalArgumentException if entity does not exist
+     */
+    public synchronized int getReachableCount(int entityId) {
+
+        int component = components[indexOf(entityId)];
+
+        if (reachableCounts[component] == NONE) {
+            reachableCounts[component] = countReachable(component);
+        }
+
+        return reachableCounts[component];
+    }
+
+    /**
+     * Get number of links to the entity, duplicate links and link from the entity to itself included
+     * @param entityId Entity ID
+     * @return Number of links
+     * @throws IllegalArgumentException if entity does not exist
+     */
+    public int getIncomingCount(int entityId) {
+        return incomingCounts[indexOf(entityId)];
+    }
+
+    /**
+     * Get number of entities and links cloning the entity would create
+     * @param entityId Entity ID
+     * @return Clone estimate
+     * @throws IllegalArgumentException if entity does not exist
+     */
+    public CloneEstimate estimateClone(int entityId) {
+
+        int entities = getReachableCount(entityId);
+
+        // Clone of every entity but the root is linked from one other clone, root clone from all predecessors of the root
+        return new CloneEstimate(entityId, entities, getIncomingCount(entityId) + entities - 1);
+    }
+
+    private int countReachable(int root) {
+
+        if (++query == 0) {
+            Arrays.fill(visits, 0);
+            query = 1;
+        }
+
+        IntList stack = new IntList();
+        stack.add(root);
+        visits[root] = query;
+
+        int count = 0;
+
+        while (!stack.isEmpty()) {
+
+            int component = stack.removeLast();
+            count += componentSizes[component];
+
+            for (int i = successorOffsets[component]; i < successorOffsets[component + 1]; i++) {
+                int successor = successors[i];
+                if (visits[successor] != query) {
+                    visits[successor] = query;
+                    stack.add(successor);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private int indexOf(int entityId) {
+
+        int index = indexById.get(entityId, NONE);
+
+        if (index == NONE) {
+            throw new IllegalArgumentException(String.format("No entity found with ID %d", entityId));
+        }
+
+        return index;
+    }
+
+    /**
+     * Finds strongly connected components with iterative Tarjan's algorithm. Components are numbered in order
+     * in which they are completed, which is reverse topological order of the condensation.
+     * @param offsets CSR offsets
+     * @param targets CSR targets
+     * @param next Scratch array of entity count length
+     * @return Component of each entity
+     */
+    private static int[] findComponents(int[] offsets, int[] targets, int[] next) {
+
+        int entityCount = offsets.length - 1;
+
+        int[] order = new int[entityCount];
+        int[] low = new int[entityCount];
+        int[] components = new int[entityCount];
+        Arrays.fill(order, NONE);
+        Arrays.fill(components, NONE);
+
+        IntList stack = new IntList();
+        IntList path = new IntList();
+        int counter = 0;
+        int componentCount = 0;
+
+        for (int start = 0; start < entityCount; start++) {
+
+            if (order[start] != NONE) {
+                continue;
+            }
+
+            order[start] = low[start] = counter++;
+            next[start] = offsets[start];
+            stack.add(start);
+            path.add(start);
+
+            while (!path.isEmpty()) {
+
+                int entity = path.get(path.size() - 1);
+
+                if (next[entity] < offsets[entity + 1]) {
+
+                    int target = targets[next[entity]++];
+
+                    if (order[target] == NONE) {
+                        order[target] = low[target] = counter++;
+                        next[target] = offsets[target];
+                        stack.add(target);
+                        path.add(target);
+                    } else if (components[target] == NONE) {
+                        // Target is still on the stack
+                        low[entity] = Math.min(low[entity], order[target]);
+                    }
+
+                    continue;
+                }
+
+                path.removeLast();
+
+                if (!path.isEmpty()) {
+                    int parent = path.get(path.size() - 1);
+                    low[parent] = Math.min(low[parent], low[entity]);
+                }
+
+                if (low[entity] == order[entity]) {
+                    int member;
+                    do {
+                        member = stack.removeLast();
+                        components[member] = componentCount;
+                    } while (member != entity);
+                    componentCount++;
+                }
+            }
+        }
+
+        return components;
+    }
+}
@@ -0,0 +1,139 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent open addressing table of entities visited by {@link ParallelClonePlan}. Each slot packs entity ID
+ * and state into one long, so an entity is inserted and its state changed with a single CAS.
+ * <p>
+ * While a level is expanded, entities found for the next level are claimed by the smallest plan index
+ * of an entity linking to them, which is the parent a sequential breadth first traversal would pick.
+ * Once the level is merged, claims are replaced with plan indices of the entities.
+ */
+class VisitTable {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * @param maxEntities Largest number of entities that may be visited, table is never resized
+     */
+    VisitTable(int maxEntities) {
+
+        int needed = (int) Math.min((long) (maxEntities / LOAD_FACTOR) + 1, 1 << 30);
+        int capacity = Math.max(Integer.highestOneBit(needed - 1) << 1, 8);
+
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Claims not yet visited entity for the parent, unless a parent with smaller index claimed it
+     * @param id Entity ID
+     * @param parent Plan index of the parent
+     * @return True if the parent holds the claim now
+     */
+    boolean claim(int id, int parent) {
+
+        long claimed = pack(id, -parent - 1);
+
+        for (int slot = slot(id); ; slot = (slot + 1) & mask) {
+
+            long current = slots.get(slot);
+
+            while (current == 0) {
+                if (slots.compareAndSet(slot, 0, claimed)) {
+                    return true;
+                }
+                current = slots.get(slot);
+            }
+
+            if ((int) (current >>> 32) != id) {
+                continue;
+            }
+
+            while (true) {
+
+                int state = (int) current;
+
+                // Visited, or claimed by the same or an earlier parent
+                if (state > 0 || -state - 1 <= parent) {
+                    return false;
+                }
+
+                if (slots.compareAndSet(slot, current, claimed)) {
+                    return true;
+                }
+
+                current = slots.get(slot);
+            }
+        }
+    }
+
+    /**
+     * Get index of the parent holding claim of the entity
+     * @param id Entity ID
+     * @return Parent index or -1 if the entity is not claimed
+     */
+    int getClaim(int id) {
+        int state = state(id);
+        return state < 0 ? -state - 1 : -1;
+    }
+
+    /**
+     * Marks claimed entity visited, only the thread that merges the entity may call this
+     * @param id Entity ID
+     * @param index Plan index of the entity
+     */
+    void setIndex(int id, int index) {
+        slots.set(find(id), pack(id, index + 1));
+    }
+
+    /**
+     * Get plan index of visited entity
+     * @param id Entity ID
+     * @return Index or -1 if the entity is not visited
+     */
+    int indexOf(int id) {
+        int state = state(id);
+        return state > 0 ? state - 1 : -1;
+    }
+
+    private int state(int id) {
+        int slot = find(id);
+        return slot < 0 ? 0 : (int) slots.get(slot);
+    }
+
+    /**
+     * @return Slot of the entity or -1 if it is not in the table
+     */
+    private int find(int id) {
+
+        for (int slot = slot(id); ; slot = (slot + 1) & mask) {
+
+            long current = slots.get(slot);
+
+            if (current == 0) {
+                return -1;
+            }
+
+            if ((int) (current >>> 32) == id) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * State is never 0, so 0 marks free slots also for entity 0
+     */
+    private static long pack(int id, int state) {
+        return ((long) id << 32) | (state & 0xFFFFFFFFL);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
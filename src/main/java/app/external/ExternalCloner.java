@@ -0,0 +1,533 @@
+package app.external;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.metrics.Metrics;
+import app.metrics.Phase;
+import app.output.GraphJsonWriter;
+import parser.InvalidJsonFormatException;
+import parser.JsonFileParser;
+import parser.ParsingSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Clones one entity of a graph that does not fit in memory. Entities and links are spilled to sorted runs
+ * in scratch files while parsing, the graph is traversed level by level by merging the frontier with links
+ * sorted by their source, and output is written by concatenating the original runs with runs of the clone.
+ * <p>
+ * Memory taken by sort buffers and merge buffers stays under the budget, whatever the size of the graph,
+ * parser and output buffers come on top of it. Every level reads all links once, so time grows with the depth
+ * of the clone times the number of links.
+ * <p>
+ * Clone is the same as of breadth first traversal of the app: clone IDs are in breadth first order and each clone
+ * is linked from the clone of its first predecessor in the previous level, so delta output is the same byte for byte.
+ * Whole graph output lists entities and links in the order of the input file, followed by clones and new links.
+ * Every link is checked against the entities before cloning, so invalid input is rejected as by other storages.
+ */
+public class ExternalCloner {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private static final int NONE = -1;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 4 * 1024;
+
+    private static final int HAS_NAME = 1;
+    private static final int HAS_DESCRIPTION = 2;
+
+    private final File scratchDirectory;
+    private final long memoryBudget;
+    private final int bufferSize;
+
+    private Metrics metrics = Metrics.DISABLED;
+
+    private File directory;
+
+    /**
+     * @param scratchDirectory Directory in which scratch files are created and deleted
+     * @param memoryBudget Bytes of memory sort and merge buffers may take
+     */
+    public ExternalCloner(File scratchDirectory, long memoryBudget) {
+        this.scratchDirectory = scratchDirectory;
+        this.memoryBudget = memoryBudget;
+        // At most two sorters are filled at once, each merges runs through buffers of this size
+        this.bufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, memoryBudget / 16));
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Clones the entity and all entities reachable from it and writes the result
+     * @param parser Parser of the input file
+     * @param entityId ID of the entity to clone
+     * @param delta Whether to write only cloned entities and new links
+     * @param includeIdMap Whether to add original to clone ID mapping to the delta
+     * @param out Output stream, flushed but not closed
+     * @param outputBufferSize Size of the output buffer in bytes
+     * @return Number of cloned entities
+     * @throws IOException
+     * @throws InvalidEntityLinkException if a link references entity that does not exist
+     * @throws IllegalArgumentException if the entity does not exist
+     */
+    public long clone(JsonFileParser parser, int entityId, boolean delta, boolean includeIdMap, OutputStream out,
+                      int outputBufferSize) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        directory = Files.createTempDirectory(scratchDirectory.toPath(), "clone").toFile();
+
+        try {
+            return run(parser, entityId, delta, includeIdMap, out, outputBufferSize);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private long run(JsonFileParser parser, int entityId, boolean delta, boolean includeIdMap, OutputStream out,
+                     int outputBufferSize) throws IOException, InvalidJsonFormatException, InvalidEntityLinkException {
+
+        long start = metrics.start();
+
+        Input input = new Input(entityId, delta);
+
+        try {
+            parser.parse(input);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Run entityOrder = input.entityOrder.finish();
+        Run linkOrder = input.linkOrder.finish();
+        Run rootPredecessors = input.rootPredecessors.finish();
+
+        metrics.end(Phase.PARSE, start);
+        metrics.parsed(input.entities.size(), input.links.size());
+
+        if (!input.rootFound) {
+            throw new IllegalArgumentException(String.format("Entity with ID %d not found", entityId));
+        }
+
+        start = metrics.start();
+
+        Run entities = sortTo(input.entities, "entities");
+        Run adjacency = sortTo(input.links, "adjacency");
+
+        validateLinks(entities, adjacency);
+
+        // Clones in order of their IDs, original entity and index of the parent clone
+        RunWriter plan = new RunWriter(newFile("plan"), bufferSize);
+        plan.write(entityId, NONE);
+
+        Run visited = single(entityId, 0);
+        Run frontier = single(entityId, 0);
+        long cloneCount = 1;
+        long traversalSteps = 0;
+
+        while (frontier.size() > 0) {
+
+            Run next;
+
+            try (RecordSorter level = sorter()) {
+
+                // Candidates are released before the level is read
+                try (RecordSorter candidates = sorter()) {
+                    traversalSteps += followLinks(frontier, adjacency, candidates);
+                    firstDiscoveries(candidates, visited, level);
+                }
+
+                try (RecordSorter members = sorter(); RecordReader reader = level.sorted()) {
+                    while (reader.next()) {
+                        plan.write(reader.value(), reader.key() >>> 32);
+                        members.add(reader.value(), cloneCount++);
+                    }
+                    next = sortTo(members, "frontier");
+                }
+            }
+
+            Run merged = mergeTo(visited, next, newFile("visited"));
+            visited.delete();
+            frontier.delete();
+            visited = merged;
+            frontier = next;
+        }
+
+        Run planRun = plan.finish();
+        long linkCount = rootPredecessors.size() + cloneCount - 1;
+
+        // Attributes of the clones in order of clone IDs
+        try (RecordSorter clones = sorter()) {
+
+            try (RecordReader ids = visited.open(bufferSize); RecordReader attributes = entities.open(bufferSize)) {
+
+                boolean hasAttributes = attributes.next();
+
+                while (ids.next()) {
+
+                    while (hasAttributes && attributes.key() < ids.key()) {
+                        hasAttributes = attributes.next();
+                    }
+
+                    if (!hasAttributes || attributes.key() != ids.key()) {
+                        throw new InvalidEntityLinkException(String.format("No entity found with ID %d", ids.key()));
+                    }
+
+                    clones.add(ids.value(), 0, attributes.data());
+                }
+            }
+
+            metrics.cloned(cloneCount, linkCount, traversalSteps);
+            metrics.end(Phase.CLONE, start);
+            start = metrics.start();
+
+            int firstCloneId = input.largestId + 1;
+
+            try (GraphJsonWriter writer = new GraphJsonWriter(metrics.countBytes(out), outputBufferSize)) {
+
+                writer.startGraph();
+
+                if (!delta) {
+                    try (RecordReader reader = entityOrder.open(bufferSize)) {
+                        while (reader.next()) {
+                            writeEntity(writer, (int) reader.key(), reader.data());
+                        }
+                    }
+                }
+
+                try (RecordReader reader = clones.sorted()) {
+                    while (reader.next()) {
+                        writeEntity(writer, (int) (firstCloneId + reader.key()), reader.data());
+                    }
+                }
+
+                writer.startLinks();
+
+                if (!delta) {
+                    try (RecordReader reader = linkOrder.open(bufferSize)) {
+                        while (reader.next()) {
+                            writer.writeLink((int) reader.key(), (int) reader.value());
+                        }
+                    }
+                }
+
+                try (RecordReader reader = rootPredecessors.open(bufferSize)) {
+                    while (reader.next()) {
+                        writer.writeLink((int) reader.key(), firstCloneId);
+                    }
+                }
+
+                try (RecordReader reader = planRun.open(bufferSize)) {
+                    for (int index = 0; reader.next(); index++) {
+                        if (reader.value() != NONE) {
+                            writer.writeLink((int) (firstCloneId + reader.value()), firstCloneId + index);
+                        }
+                    }
+                }
+
+                if (delta && includeIdMap) {
+                    writer.startIdMap();
+                    try (RecordReader reader = planRun.open(bufferSize)) {
+                        for (int index = 0; reader.next(); index++) {
+                            writer.writeIdMapping((int) reader.key(), firstCloneId + index);
+                        }
+                    }
+                }
+
+                writer.endGraph();
+            }
+        }
+
+        metrics.end(Phase.SERIALIZE, start);
+
+        return cloneCount;
+    }
+
+    /**
+     * Checks that every link starts and ends at an existing entity, as loading into any storage does. Sources are
+     * merged with entities in the order of adjacency, targets are sorted first.
+     * @throws InvalidEntityLinkException if a link references entity that does not exist
+     */
+    private void validateLinks(Run entities, Run adjacency) throws IOException, InvalidEntityLinkException {
+
+        try (RecordReader sources = adjacency.open(bufferSize)) {
+            requireEntities(sources, entities);
+        }
+
+        try (RecordSorter targets = sorter()) {
+
+            try (RecordReader links = adjacency.open(bufferSize)) {
+                while (links.next()) {
+                    targets.add(links.value(), 0);
+                }
+            }
+
+            try (RecordReader reader = targets.sorted()) {
+                requireEntities(reader, entities);
+            }
+        }
+    }
+
+    /**
+     * Merges IDs sorted in ascending order with entities, every ID must be an entity
+     */
+    private void requireEntities(RecordReader ids, Run entities) throws IOException, InvalidEntityLinkException {
+
+        try (RecordReader existing = entities.open(bufferSize)) {
+
+            boolean hasEntity = existing.next();
+
+            while (ids.next()) {
+
+                while (hasEntity && existing.key() < ids.key()) {
+                    hasEntity = existing.next();
+                }
+
+                if (!hasEntity || existing.key() != ids.key()) {
+                    throw new InvalidEntityLinkException(String.format("No entity found with ID %d", ids.key()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins the frontier with links sorted by source, adding a candidate for every link from the frontier.
+     * Candidate is keyed by the linked entity, its value is the parent index in the high and link ordinal
+     * in the low half, so the smallest value is the first discovery of breadth first traversal.
+     * @return Number of links followed
+     */
+    private long followLinks(Run frontier, Run adjacency, RecordSorter candidates) throws IOException {
+
+        long steps = 0;
+
+        try (RecordReader parents = frontier.open(bufferSize); RecordReader links = adjacency.open(bufferSize)) {
+
+            boolean hasParent = parents.next();
+            long lastFrom = Long.MIN_VALUE;
+            long ordinal = 0;
+
+            while (hasParent && links.next()) {
+
+                long from = links.key();
+                ordinal = from == lastFrom ? ordinal + 1 : 0;
+                lastFrom = from;
+
+                while (hasParent && parents.key() < from) {
+                    hasParent = parents.next();
+                }
+
+                if (hasParent && parents.key() == from) {
+                    candidates.add(links.value(), parents.value() << 32 | ordinal);
+                    steps++;
+                }
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * Keeps the first discovery of each candidate that was not visited yet, keyed by discovery order
+     */
+    private void firstDiscoveries(RecordSorter candidates, Run visited, RecordSorter level) throws IOException {
+
+        try (RecordReader children = candidates.sorted(); RecordReader seen = visited.open(bufferSize)) {
+
+            boolean hasChild = children.next();
+            boolean hasSeen = seen.next();
+
+            while (hasChild) {
+
+                long child = children.key();
+                long first = children.value();
+
+                while ((hasChild = children.next()) && children.key() == child) {
+                    first = Math.min(first, children.value());
+                }
+
+                while (hasSeen && seen.key() < child) {
+                    hasSeen = seen.next();
+                }
+
+                if (!hasSeen || seen.key() != child) {
+                    level.add(first, child);
+                }
+            }
+        }
+    }
+
+    private Run mergeTo(Run first, Run second, File file) throws IOException {
+        try (RecordReader a = first.open(bufferSize); RecordReader b = second.open(bufferSize);
+             RunWriter writer = new RunWriter(file, bufferSize)) {
+
+            boolean hasA = a.next();
+            boolean hasB = b.next();
+
+            while (hasA || hasB) {
+                if (hasA && (!hasB || a.key() <= b.key())) {
+                    writer.write(a.key(), a.value());
+                    hasA = a.next();
+                } else {
+                    writer.write(b.key(), b.value());
+                    hasB = b.next();
+                }
+            }
+
+            return writer.finish();
+        }
+    }
+
+    private Run single(long key, long value) throws IOException {
+        try (RunWriter writer = new RunWriter(newFile("frontier"), bufferSize)) {
+            writer.write(key, value);
+            return writer.finish();
+        }
+    }
+
+    private Run sortTo(RecordSorter sorter, String name) throws IOException {
+        try {
+            return sorter.sortTo(newFile(name));
+        } finally {
+            sorter.close();
+        }
+    }
+
+    /**
+     * At most two sorters are filled at the same time, each takes half of the budget
+     */
+    private RecordSorter sorter() {
+        return new RecordSorter(directory, memoryBudget / 2, bufferSize);
+    }
+
+    private File newFile(String name) throws IOException {
+        return File.createTempFile(name, ".tmp", directory);
+    }
+
+    private static void writeEntity(GraphJsonWriter writer, int id, byte[] attributes) throws IOException {
+
+        String name = null;
+        String description = null;
+        int position = 1;
+
+        if ((attributes[0] & HAS_NAME) != 0) {
+            int length = readInt(attributes, position);
+            name = new String(attributes, position + 4, length, StandardCharsets.UTF_8);
+            position += 4 + length;
+        }
+
+        if ((attributes[0] & HAS_DESCRIPTION) != 0) {
+            int length = readInt(attributes, position);
+            description = new String(attributes, position + 4, length, StandardCharsets.UTF_8);
+        }
+
+        writer.writeEntity(id, name, description);
+    }
+
+    /**
+     * Encodes name and description as flags followed by length and UTF-8 bytes of each present one
+     */
+    private static byte[] encode(String name, String description) {
+
+        byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        byte[] descriptionBytes = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+
+        int size = 1 + (nameBytes == null ? 0 : 4 + nameBytes.length) + (descriptionBytes == null ? 0 : 4 + descriptionBytes.length);
+        byte[] attributes = new byte[size];
+        int position = 1;
+
+        if (nameBytes != null) {
+            attributes[0] |= HAS_NAME;
+            position = writeBytes(attributes, position, nameBytes);
+        }
+
+        if (descriptionBytes != null) {
+            attributes[0] |= HAS_DESCRIPTION;
+            writeBytes(attributes, position, descriptionBytes);
+        }
+
+        return attributes;
+    }
+
+    private static int writeBytes(byte[] target, int position, byte[] bytes) {
+        target[position] = (byte) (bytes.length >>> 24);
+        target[position + 1] = (byte) (bytes.length >>> 16);
+        target[position + 2] = (byte) (bytes.length >>> 8);
+        target[position + 3] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, target, position + 4, bytes.length);
+        return position + 4 + bytes.length;
+    }
+
+    private static int readInt(byte[] source, int position) {
+        return (source[position] & 0xff) << 24 | (source[position + 1] & 0xff) << 16
+                | (source[position + 2] & 0xff) << 8 | source[position + 3] & 0xff;
+    }
+
+    /**
+     * Spills parsed entities and links to sorted runs and to runs in file order
+     */
+    private class Input implements ParsingSink {
+
+        private final int rootId;
+        private final boolean delta;
+
+        private final RecordSorter entities = sorter();
+        private final RecordSorter links = sorter();
+        private final RunWriter entityOrder;
+        private final RunWriter linkOrder;
+        private final RunWriter rootPredecessors;
+
+        // Clone IDs are positive, as in other stores, even when all input IDs are negative
+        private int largestId = 0;
+        private boolean rootFound;
+
+        Input(int rootId, boolean delta) throws IOException {
+            this.rootId = rootId;
+            this.delta = delta;
+            this.entityOrder = new RunWriter(newFile("entity-order"), bufferSize);
+            this.linkOrder = new RunWriter(newFile("link-order"), bufferSize);
+            this.rootPredecessors = new RunWriter(newFile("predecessors"), bufferSize);
+        }
+
+        @Override
+        public void addEntity(int id, String name, String description) {
+
+            byte[] attributes = encode(name, description);
+
+            try {
+                entities.add(id, 0, attributes);
+                if (!delta) {
+                    entityOrder.write(id, 0, attributes, 0, attributes.length);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            largestId = Math.max(largestId, id);
+            rootFound |= id == rootId;
+        }
+
+        @Override
+        public void addLink(int from, int to) {
+            try {
+                links.add(from, to);
+                if (!delta) {
+                    linkOrder.write(from, to);
+                }
+                if (to == rootId) {
+                    rootPredecessors.write(from, to);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
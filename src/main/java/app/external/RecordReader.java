@@ -0,0 +1,26 @@
+package app.external;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads records of long key, long value and optional bytes one at a time
+ */
+interface RecordReader extends Closeable {
+
+    /**
+     * Moves to the next record
+     * @return false if there are no more records
+     * @throws IOException
+     */
+    boolean next() throws IOException;
+
+    long key();
+
+    long value();
+
+    /**
+     * @return Bytes of the record, empty array if it has none
+     */
+    byte[] data();
+}
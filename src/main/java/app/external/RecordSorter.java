@@ -0,0 +1,381 @@
+package app.external;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts records by key within a memory budget. Records are collected in primitive arrays until the budget is taken,
+ * then sorted and spilled to a run file. Runs are merged while reading, several merge passes are made when there
+ * are more runs than fit the budget with their read buffers.
+ * <p>
+ * Sort is stable, records with equal keys are read in the order they were added.
+ */
+class RecordSorter implements Closeable {
+
+    /**
+     * Key, value, data end, sort order and merge scratch of each record
+     */
+    private static final int RECORD_BYTES = 2 * Long.BYTES + 3 * Integer.BYTES;
+    private static final int MIN_CAPACITY = 256;
+
+    private final File directory;
+    private final long budget;
+    private final int bufferSize;
+
+    private long[] keys = new long[0];
+    private long[] values = new long[0];
+    private int[] dataEnds = new int[0];
+    private byte[] data = new byte[0];
+    private int count;
+    private int dataSize;
+
+    private final List<Run> runs = new ArrayList<>();
+    private long size;
+
+    /**
+     * @param directory Directory of run files
+     * @param budget Bytes records may take in memory
+     * @param bufferSize Size of read and write buffer of each run
+     */
+    RecordSorter(File directory, long budget, int bufferSize) {
+        this.directory = directory;
+        this.budget = budget;
+        this.bufferSize = bufferSize;
+    }
+
+    void add(long key, long value) throws IOException {
+        add(key, value, RunReader.NO_DATA);
+    }
+
+    void add(long key, long value, byte[] bytes) throws IOException {
+
+        ensureRoom(bytes.length);
+
+        keys[count] = key;
+        values[count] = value;
+        System.arraycopy(bytes, 0, data, dataSize, bytes.length);
+        dataSize += bytes.length;
+        dataEnds[count] = dataSize;
+        count++;
+        size++;
+    }
+
+    /**
+     * @return Number of records added
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return Number of runs spilled so far
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Reads records in order of their keys. Records added afterwards are not read.
+     * @return Reader, must be closed
+     * @throws IOException
+     */
+    RecordReader sorted() throws IOException {
+
+        if (runs.isEmpty()) {
+            return new BufferReader(sortOrder());
+        }
+
+        if (count > 0) {
+            spill();
+        }
+
+        // Merge buffers replace the record buffers
+        release();
+
+        int fanIn = (int) Math.max(2, budget / bufferSize);
+
+        while (runs.size() > fanIn) {
+
+            // Consecutive runs are merged in place, so records with equal keys keep their order
+            List<Run> merged = new ArrayList<>();
+
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                List<Run> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                merged.add(group.size() == 1 ? group.get(0) : merge(group));
+            }
+
+            runs.clear();
+            runs.addAll(merged);
+        }
+
+        return open(runs);
+    }
+
+    /**
+     * Writes all records in order of their keys to one run
+     * @param file Run file
+     * @return Run, owned by the caller
+     * @throws IOException
+     */
+    Run sortTo(File file) throws IOException {
+        try (RecordReader reader = sorted(); RunWriter writer = new RunWriter(file, bufferSize)) {
+            copy(reader, writer);
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Deletes run files and frees memory
+     */
+    @Override
+    public void close() {
+
+        for (Run run : runs) {
+            run.delete();
+        }
+
+        runs.clear();
+        release();
+    }
+
+    private void ensureRoom(int length) throws IOException {
+
+        if (count == keys.length) {
+
+            int capacity = (int) Math.min(Math.max(MIN_CAPACITY, 2L * keys.length), (budget - data.length) / RECORD_BYTES);
+
+            if (capacity <= count && count > 0) {
+                spill();
+            } else {
+                capacity = Math.max(capacity, count + 1);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                dataEnds = Arrays.copyOf(dataEnds, capacity);
+            }
+        }
+
+        if (dataSize + length > data.length) {
+
+            long allowed = budget - (long) keys.length * RECORD_BYTES;
+            long needed = Math.max(dataSize + length, Math.min(2L * data.length, allowed));
+
+            if (needed > allowed && count > 0) {
+                spill();
+                needed = length;
+            }
+
+            // Record larger than the budget is kept alone
+            if (needed > data.length) {
+                data = Arrays.copyOf(data, (int) needed);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+
+        File file = File.createTempFile("run", ".tmp", directory);
+
+        try (RunWriter writer = new RunWriter(file, bufferSize)) {
+            copy(new BufferReader(sortOrder()), writer);
+            runs.add(writer.finish());
+        }
+
+        count = 0;
+        dataSize = 0;
+    }
+
+    private Run merge(List<Run> group) throws IOException {
+
+        File file = File.createTempFile("run", ".tmp", directory);
+
+        Run merged;
+
+        try (RecordReader reader = open(group); RunWriter writer = new RunWriter(file, bufferSize)) {
+            copy(reader, writer);
+            merged = writer.finish();
+        }
+
+        for (Run run : group) {
+            run.delete();
+        }
+
+        return merged;
+    }
+
+    private RecordReader open(List<Run> group) throws IOException {
+
+        List<RecordReader> readers = new ArrayList<>(group.size());
+
+        try {
+            for (Run run : group) {
+                readers.add(run.open(bufferSize));
+            }
+        } catch (IOException e) {
+            for (RecordReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+
+        return new MergeReader(readers);
+    }
+
+    private void release() {
+        keys = new long[0];
+        values = new long[0];
+        dataEnds = new int[0];
+        data = new byte[0];
+        count = 0;
+        dataSize = 0;
+    }
+
+    private static void copy(RecordReader reader, RunWriter writer) throws IOException {
+        while (reader.next()) {
+            byte[] bytes = reader.data();
+            writer.write(reader.key(), reader.value(), bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort of record indices by key
+     * @return Record indices in order of their keys
+     */
+    private int[] sortOrder() {
+
+        int[] order = new int[count];
+        int[] scratch = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        for (int width = 1; width < count; width *= 2) {
+
+            for (int from = 0; from < count; from += 2 * width) {
+
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int left = from;
+                int right = middle;
+
+                for (int i = from; i < to; i++) {
+                    if (left < middle && (right >= to || keys[order[left]] <= keys[order[right]])) {
+                        scratch[i] = order[left++];
+                    } else {
+                        scratch[i] = order[right++];
+                    }
+                }
+            }
+
+            int[] sorted = scratch;
+            scratch = order;
+            order = sorted;
+        }
+
+        return order;
+    }
+
+    /**
+     * Reads records kept in memory in the given order
+     */
+    private class BufferReader implements RecordReader {
+
+        private final int[] order;
+        private int position = -1;
+
+        BufferReader(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < order.length;
+        }
+
+        @Override
+        public long key() {
+            return keys[order[position]];
+        }
+
+        @Override
+        public long value() {
+            return values[order[position]];
+        }
+
+        @Override
+        public byte[] data() {
+            int index = order[position];
+            int start = index == 0 ? 0 : dataEnds[index - 1];
+            return start == dataEnds[index] ? RunReader.NO_DATA : Arrays.copyOfRange(data, start, dataEnds[index]);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Merges sorted readers, records with equal keys are read in order of the readers
+     */
+    private static class MergeReader implements RecordReader {
+
+        private final List<RecordReader> readers;
+        private final PriorityQueue<Integer> heads;
+        private int current = -1;
+
+        MergeReader(List<RecordReader> readers) throws IOException {
+
+            this.readers = readers;
+            this.heads = new PriorityQueue<>(Math.max(1, readers.size()), (a, b) -> {
+                int order = Long.compare(readers.get(a).key(), readers.get(b).key());
+                return order != 0 ? order : Integer.compare(a, b);
+            });
+
+            for (int i = 0; i < readers.size(); i++) {
+                if (readers.get(i).next()) {
+                    heads.add(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+
+            if (current >= 0 && readers.get(current).next()) {
+                heads.add(current);
+            }
+
+            Integer head = heads.poll();
+            current = head == null ? -1 : head;
+
+            return current >= 0;
+        }
+
+        @Override
+        public long key() {
+            return readers.get(current).key();
+        }
+
+        @Override
+        public long value() {
+            return readers.get(current).value();
+        }
+
+        @Override
+        public byte[] data() {
+            return readers.get(current).data();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RecordReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
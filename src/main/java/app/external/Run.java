@@ -0,0 +1,33 @@
+package app.external;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records written to a scratch file, in the order they were written
+ */
+class Run {
+
+    private final File file;
+    private final long size;
+
+    Run(File file, long size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * @return Number of records
+     */
+    long size() {
+        return size;
+    }
+
+    RecordReader open(int bufferSize) throws IOException {
+        return new RunReader(file, bufferSize);
+    }
+
+    void delete() {
+        file.delete();
+    }
+}
@@ -0,0 +1,106 @@
+package app.external;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads records of a scratch file. Each record is its key and value as big endian longs,
+ * length of its data as int and the data.
+ */
+class RunReader implements RecordReader {
+
+    static final byte[] NO_DATA = new byte[0];
+    static final int HEADER_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private long key;
+    private long value;
+    private byte[] data = NO_DATA;
+
+    RunReader(File file, int bufferSize) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, HEADER_BYTES));
+        this.buffer.flip();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+
+        if (buffer.remaining() < HEADER_BYTES && !fill(HEADER_BYTES)) {
+            return false;
+        }
+
+        key = buffer.getLong();
+        value = buffer.getLong();
+        int length = buffer.getInt();
+
+        if (length == 0) {
+            data = NO_DATA;
+            return true;
+        }
+
+        data = new byte[length];
+
+        for (int offset = 0; offset < length; ) {
+
+            if (!buffer.hasRemaining() && !fill(1)) {
+                throw new IOException("Truncated run file");
+            }
+
+            int count = Math.min(length - offset, buffer.remaining());
+            buffer.get(data, offset, count);
+            offset += count;
+        }
+
+        return true;
+    }
+
+    @Override
+    public long key() {
+        return key;
+    }
+
+    @Override
+    public long value() {
+        return value;
+    }
+
+    @Override
+    public byte[] data() {
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads more of the file keeping unread bytes
+     * @return false if the file ends before the buffer holds the needed bytes
+     */
+    private boolean fill(int needed) throws IOException {
+
+        buffer.compact();
+
+        try {
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() > 0) {
+                        throw new IOException("Truncated run file");
+                    }
+                    return false;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+
+        return true;
+    }
+}
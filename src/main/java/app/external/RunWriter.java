@@ -0,0 +1,83 @@
+package app.external;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes records to a scratch file, see {@link RunReader} for the format
+ */
+class RunWriter implements Closeable {
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long size;
+
+    RunWriter(File file, int bufferSize) throws IOException {
+        this.file = file;
+        this.channel = new FileOutputStream(file).getChannel();
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, RunReader.HEADER_BYTES));
+    }
+
+    void write(long key, long value) throws IOException {
+        write(key, value, RunReader.NO_DATA, 0, 0);
+    }
+
+    void write(long key, long value, byte[] data, int offset, int length) throws IOException {
+
+        if (buffer.remaining() < RunReader.HEADER_BYTES) {
+            flush();
+        }
+
+        buffer.putLong(key);
+        buffer.putLong(value);
+        buffer.putInt(length);
+
+        while (length > 0) {
+
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, count);
+            offset += count;
+            length -= count;
+        }
+
+        size++;
+    }
+
+    /**
+     * Closes the file
+     * @return Written records
+     * @throws IOException
+     */
+    Run finish() throws IOException {
+        close();
+        return new Run(file, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,105 @@
+package app.generator;
+
+import app.CommandLineOptions;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Command line entry of {@link GraphGenerator}. Messages go to standard error, so the graph
+ * can be written to standard output.
+ */
+public class GeneratorMain {
+
+    private static final int STATUS_ERROR = 1;
+
+    private static final String USAGE = "Usage:\n generator [options] <outputfile>\n\n" +
+            "Writes synthetic graph in the input file format, - writes to standard output.\n\n" +
+            "Options:\n" +
+            " --entities=<n>                       number of entities (default 1000)\n" +
+            " --size=<bytes>                       approximate output size, sets number of entities,\n" +
+            "                                     suffixes k, m and g multiply by 1024\n" +
+            " --topology=random|power-law|chains|clusters\n" +
+            "                                     shape of links (default random)\n" +
+            " --degree=<d>                         average number of links from an entity (default 3)\n" +
+            " --exponent=<e>                       exponent of power-law degrees, larger than 2 (default 2.1)\n" +
+            " --chain-length=<n>                   entities in a chain (default 100)\n" +
+            " --cluster-size=<n>                   entities in a strongly connected cluster (default 100)\n" +
+            " --self-loops=<fraction>              fraction of entities linking to themselves (default 0)\n" +
+            " --name-length=<n>                    name length (default 7)\n" +
+            " --description-length=<n>             description length, 0 for none (default 28)\n" +
+            " --descriptions=<fraction>            fraction of entities with description (default 0.33)\n" +
+            " --seed=<n>                           random seed (default 1)";
+
+    public static void main(String[] args) {
+
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        if (options.getArgumentCount() < 1) {
+            System.err.println(USAGE);
+            return;
+        }
+
+        GraphGenerator generator = new GraphGenerator();
+
+        try {
+            generator.setTopology(Topology.valueOf(options.getOption("topology", Topology.RANDOM.name()).toUpperCase().replace('-', '_')));
+            generator.setDegree(Double.parseDouble(options.getOption("degree", String.valueOf(generator.getDegree()))));
+            generator.setExponent(Double.parseDouble(options.getOption("exponent", String.valueOf(generator.getExponent()))));
+            generator.setChainLength(Integer.parseInt(options.getOption("chain-length", String.valueOf(generator.getChainLength()))));
+            generator.setClusterSize(Integer.parseInt(options.getOption("cluster-size", String.valueOf(generator.getClusterSize()))));
+            generator.setSelfLoopFraction(Double.parseDouble(options.getOption("self-loops", String.valueOf(generator.getSelfLoopFraction()))));
+            generator.setNameLength(Integer.parseInt(options.getOption("name-length", String.valueOf(generator.getNameLength()))));
+            generator.setDescriptionLength(Integer.parseInt(options.getOption("description-length", String.valueOf(generator.getDescriptionLength()))));
+            generator.setDescriptionFraction(Double.parseDouble(options.getOption("descriptions", String.valueOf(generator.getDescriptionFraction()))));
+            generator.setSeed(Long.parseLong(options.getOption("seed", String.valueOf(generator.getSeed()))));
+
+            // Size depends on all other options, so it is applied last
+            if (options.hasOption("size")) {
+                generator.setEntityCount(generator.estimateEntityCount(parseSize(options.getOption("size", ""))));
+            } else {
+                generator.setEntityCount(Integer.parseInt(options.getOption("entities", String.valueOf(generator.getEntityCount()))));
+            }
+        } catch (IllegalArgumentException iae) {
+            // Number format and unknown topology errors are illegal arguments too
+            System.err.println(String.format("Invalid option: %s", iae.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
+
+        String fileName = options.getArgument(0);
+        long start = System.nanoTime();
+
+        try (OutputStream out = fileName.equals("-") ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(fileName)) {
+
+            long linkCount = generator.write(out);
+
+            System.err.println(String.format("Generated %d entities and %d links in %.1f s",
+                    generator.getEntityCount(), linkCount, (System.nanoTime() - start) / 1e9));
+        } catch (IOException e) {
+            System.err.println(String.format("Error writing graph: %s", e.getMessage()));
+            System.exit(STATUS_ERROR);
+        }
+    }
+
+    private static long parseSize(String size) {
+
+        String value = size.toLowerCase();
+        int shift = 0;
+
+        if (value.endsWith("k")) {
+            shift = 10;
+        } else if (value.endsWith("m")) {
+            shift = 20;
+        } else if (value.endsWith("g")) {
+            shift = 30;
+        }
+
+        if (shift > 0) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        return Long.parseLong(value) << shift;
+    }
+}
@@ -0,0 +1,369 @@
+package app.generator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic graphs in the input file format for load and scale testing. Entities and links
+ * are streamed to the output as they are generated, nothing is kept per entity, so memory use does not
+ * depend on the size of the graph.
+ * <p>
+ * Entities have IDs 1 to entity count. Output depends only on the options, the same seed always
+ * gives the same file.
+ */
+public class GraphGenerator {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Names and descriptions are cut from this much random text instead of being generated character by character
+     */
+    private static final int TEXT_POOL_SIZE = 1 << 16;
+
+    private int entityCount = 1000;
+    private Topology topology = Topology.RANDOM;
+    private double degree = 3;
+    private double exponent = 2.1;
+    private int chainLength = 100;
+    private int clusterSize = 100;
+    private double selfLoopFraction;
+    private int nameLength = 7;
+    private int descriptionLength = 28;
+    private double descriptionFraction = 1 / 3.0;
+    private long seed = 1;
+
+    /**
+     * Writes the graph, output stream is flushed but not closed
+     * @param out Output stream
+     * @return Number of links written
+     * @throws IOException
+     */
+    public long write(OutputStream out) throws IOException {
+
+        SplittableRandom random = new SplittableRandom(seed);
+        char[] text = randomText(random.split());
+        BufferedOutputStream buffered = new BufferedOutputStream(out, DEFAULT_BUFFER_SIZE);
+        double powerLawMinimum = topology == Topology.POWER_LAW ? powerLawMinimum() : 0;
+        long linkCount = 0;
+
+        try (JsonGenerator generator = FACTORY.createGenerator(buffered, JsonEncoding.UTF8)) {
+
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+
+            generator.writeArrayFieldStart("entities");
+            for (int id = 1; id <= entityCount; id++) {
+
+                generator.writeStartObject();
+                generator.writeNumberField("entity_id", id);
+
+                generator.writeFieldName("name");
+                generator.writeString(text, random.nextInt(TEXT_POOL_SIZE - nameLength + 1), nameLength);
+
+                if (descriptionLength > 0 && random.nextDouble() < descriptionFraction) {
+                    generator.writeFieldName("description");
+                    generator.writeString(text, random.nextInt(TEXT_POOL_SIZE - descriptionLength + 1), descriptionLength);
+                }
+
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("links");
+            for (int id = 1; id <= entityCount; id++) {
+
+                if (selfLoopFraction > 0 && random.nextDouble() < selfLoopFraction) {
+                    writeLink(generator, id, id);
+                    linkCount++;
+                }
+
+                linkCount += writeLinks(generator, id, random, powerLawMinimum);
+            }
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+
+        buffered.flush();
+
+        return linkCount;
+    }
+
+    /**
+     * Estimates number of entities that makes output of about the given size with current options
+     * @param bytes Size of the output in bytes
+     * @return Number of entities, at least 1
+     */
+    public int estimateEntityCount(long bytes) {
+
+        double linksPerEntity = selfLoopFraction + (topology == Topology.CHAINS ? 1 - 1.0 / chainLength : degree);
+
+        // Sizes of {"entity_id":,"name":""}, {"description":""} and {"from":,"to":} with separators,
+        // IDs are counted with digits of the largest one
+        double entityBytes = 26 + nameLength + (descriptionLength > 0 ? descriptionFraction * (17 + descriptionLength) : 0);
+        double linkBytes = 16;
+
+        int count = 1;
+
+        for (int digits = 1; digits <= 10; digits++) {
+
+            double bytesPerEntity = entityBytes + digits + linksPerEntity * (linkBytes + 2 * digits);
+            long limit = digits == 10 ? Integer.MAX_VALUE : (long) Math.pow(10, digits) - 1;
+
+            count = (int) Math.max(1, Math.min(limit, bytes / bytesPerEntity));
+
+            if (count < limit) {
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    private long writeLinks(JsonGenerator generator, int id, SplittableRandom random, double powerLawMinimum) throws IOException {
+
+        switch (topology) {
+
+            case CHAINS:
+                if (id % chainLength != 0 && id < entityCount) {
+                    writeLink(generator, id, id + 1);
+                    return 1;
+                }
+                return 0;
+
+            case CLUSTERS: {
+                int first = (id - 1) / clusterSize * clusterSize + 1;
+                int size = Math.min(clusterSize, entityCount - first + 1);
+                int count = randomDegree(random) - 1;
+
+                writeLink(generator, id, id + 1 < first + size ? id + 1 : first);
+
+                for (int i = 0; i < count; i++) {
+                    writeLink(generator, id, first + random.nextInt(size));
+                }
+                return 1 + Math.max(count, 0);
+            }
+
+            default: {
+                int count = topology == Topology.POWER_LAW ? powerLawDegree(random, powerLawMinimum) : randomDegree(random);
+
+                for (int i = 0; i < count; i++) {
+                    writeLink(generator, id, 1 + random.nextInt(entityCount));
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Integer part of the average degree, plus one with probability of its fraction
+     */
+    private int randomDegree(SplittableRandom random) {
+        int whole = (int) degree;
+        return whole + (random.nextDouble() < degree - whole ? 1 : 0);
+    }
+
+    /**
+     * Pareto distributed degree limited by number of entities
+     * @param minimum Scale of the distribution, see {@link #powerLawMinimum()}
+     */
+    private int powerLawDegree(SplittableRandom random, double minimum) {
+        double value = minimum * Math.pow(1 - random.nextDouble(), -1 / (exponent - 1));
+        return (int) Math.min(Math.round(value), entityCount);
+    }
+
+    /**
+     * Finds scale of Pareto distribution whose mean, when limited by number of entities, is the average degree.
+     * Limit cuts off the heavy tail, so the scale is larger than the scale of the unlimited distribution.
+     */
+    private double powerLawMinimum() {
+
+        double shape = exponent - 1;
+        double low = 0;
+        double high = degree;
+
+        for (int i = 0; i < 100; i++) {
+
+            double minimum = (low + high) / 2;
+            // Mean of min(X, n) for Pareto X with this scale and shape
+            double mean = minimum + minimum / (shape - 1) * (1 - Math.pow(minimum / entityCount, shape - 1));
+
+            if (mean < degree) {
+                low = minimum;
+            } else {
+                high = minimum;
+            }
+        }
+
+        return low;
+    }
+
+    private static void writeLink(JsonGenerator generator, int from, int to) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("from", from);
+        generator.writeNumberField("to", to);
+        generator.writeEndObject();
+    }
+
+    private static char[] randomText(SplittableRandom random) {
+
+        char[] text = new char[TEXT_POOL_SIZE];
+
+        for (int i = 0; i < text.length; i++) {
+            // Mostly letters with an occasional space, like words
+            text[i] = random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(26));
+        }
+
+        return text;
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    public void setEntityCount(int entityCount) {
+        requirePositive("Entity count", entityCount);
+        this.entityCount = entityCount;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public void setTopology(Topology topology) {
+        if (topology == null) {
+            throw new IllegalArgumentException("Topology must be specified");
+        }
+        this.topology = topology;
+    }
+
+    public double getDegree() {
+        return degree;
+    }
+
+    /**
+     * Average number of links from an entity, for {@link Topology#CLUSTERS} including the link to the next entity
+     * @param degree Average degree
+     */
+    public void setDegree(double degree) {
+        if (!(degree >= 0)) {
+            throw new IllegalArgumentException("Degree must not be negative");
+        }
+        this.degree = degree;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+
+    /**
+     * Exponent of {@link Topology#POWER_LAW} degree distribution, the larger the fewer entities with many links
+     * @param exponent Exponent, larger than 2
+     */
+    public void setExponent(double exponent) {
+        if (!(exponent > 2)) {
+            throw new IllegalArgumentException("Exponent must be larger than 2");
+        }
+        this.exponent = exponent;
+    }
+
+    public int getChainLength() {
+        return chainLength;
+    }
+
+    public void setChainLength(int chainLength) {
+        requirePositive("Chain length", chainLength);
+        this.chainLength = chainLength;
+    }
+
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    public void setClusterSize(int clusterSize) {
+        requirePositive("Cluster size", clusterSize);
+        this.clusterSize = clusterSize;
+    }
+
+    public double getSelfLoopFraction() {
+        return selfLoopFraction;
+    }
+
+    /**
+     * Fraction of entities that link to themselves, in addition to links of the topology
+     * @param selfLoopFraction Fraction between 0 and 1
+     */
+    public void setSelfLoopFraction(double selfLoopFraction) {
+        requireFraction("Self loop fraction", selfLoopFraction);
+        this.selfLoopFraction = selfLoopFraction;
+    }
+
+    public int getNameLength() {
+        return nameLength;
+    }
+
+    public void setNameLength(int nameLength) {
+        requireLength("Name length", nameLength);
+        this.nameLength = nameLength;
+    }
+
+    public int getDescriptionLength() {
+        return descriptionLength;
+    }
+
+    /**
+     * Length of descriptions, 0 generates no descriptions
+     * @param descriptionLength Length in characters
+     */
+    public void setDescriptionLength(int descriptionLength) {
+        requireLength("Description length", descriptionLength);
+        this.descriptionLength = descriptionLength;
+    }
+
+    public double getDescriptionFraction() {
+        return descriptionFraction;
+    }
+
+    /**
+     * Fraction of entities that have description
+     * @param descriptionFraction Fraction between 0 and 1
+     */
+    public void setDescriptionFraction(double descriptionFraction) {
+        requireFraction("Description fraction", descriptionFraction);
+        this.descriptionFraction = descriptionFraction;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    private static void requirePositive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.format("%s must be positive", name));
+        }
+    }
+
+    private static void requireFraction(String name, double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(String.format("%s must be between 0 and 1", name));
+        }
+    }
+
+    private static void requireLength(String name, int value) {
+        if (value < 0 || value > TEXT_POOL_SIZE) {
+            throw new IllegalArgumentException(String.format("%s must be between 0 and %d", name, TEXT_POOL_SIZE));
+        }
+    }
+}
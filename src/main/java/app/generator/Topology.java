@@ -0,0 +1,29 @@
+package app.generator;
+
+/**
+ * Shape of links of a generated graph
+ */
+public enum Topology {
+
+    /**
+     * Every entity links to random entities, number of links is close to the average degree
+     */
+    RANDOM,
+
+    /**
+     * Every entity links to random entities, number of links follows power law, so a few entities
+     * have very many links
+     */
+    POWER_LAW,
+
+    /**
+     * Entities form disjoint chains, each entity links to the next one in its chain
+     */
+    CHAINS,
+
+    /**
+     * Entities form disjoint strongly connected clusters: each entity links to the next one in its cluster,
+     * the last one to the first, and to random entities of its cluster
+     */
+    CLUSTERS
+}
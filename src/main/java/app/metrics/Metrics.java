@@ -0,0 +1,367 @@
+package app.metrics;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Phase timing and counters of hot paths. Counters are updated once per phase, never per entity or link,
+ * and {@link #DISABLED} instance ignores all updates, so instrumentation costs next to nothing.
+ * Counters may be updated from several threads.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Metrics that record nothing
+     */
+    public static final Metrics DISABLED = new Metrics(false);
+
+    public static final String OBJECT_NAME = "app:type=Metrics";
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final boolean enabled;
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder[] phaseCounts = new LongAdder[Phase.values().length];
+
+    private final LongAdder entitiesParsed = new LongAdder();
+    private final LongAdder linksParsed = new LongAdder();
+    private final LongAdder clones = new LongAdder();
+    private final LongAdder clonedEntities = new LongAdder();
+    private final LongAdder clonedLinks = new LongAdder();
+    private final LongAdder traversalSteps = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder stringLookups = new LongAdder();
+    private final LongAdder distinctStrings = new LongAdder();
+    private final LongAdder stringBytesSaved = new LongAdder();
+    private final LongAdder duplicateLinks = new LongAdder();
+    private final LongAccumulator peakHeapBytes = new LongAccumulator(Math::max, 0);
+
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(boolean enabled) {
+
+        this.enabled = enabled;
+
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+            phaseCounts[i] = new LongAdder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get start time of a phase to pass to {@link #end(Phase, long)}
+     * @return Time in nanoseconds, 0 if disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records run of the phase and heap used at its end
+     * @param phase Phase
+     * @param start Time returned by {@link #start()}
+     */
+    public void end(Phase phase, long start) {
+        if (enabled) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+            phaseCounts[phase.ordinal()].increment();
+            peakHeapBytes.accumulate(MEMORY.getHeapMemoryUsage().getUsed());
+        }
+    }
+
+    /**
+     * Records size of loaded graph
+     * @param entities Number of entities
+     * @param links Number of links
+     */
+    public void parsed(long entities, long links) {
+        if (enabled) {
+            entitiesParsed.add(entities);
+            linksParsed.add(links);
+        }
+    }
+
+    /**
+     * Records one clone
+     * @param entities Number of cloned entities
+     * @param links Number of created links
+     * @param steps Number of links followed by the traversal
+     */
+    public void cloned(long entities, long links, long steps) {
+        if (enabled) {
+            clones.increment();
+            clonedEntities.add(entities);
+            clonedLinks.add(links);
+            traversalSteps.add(steps);
+        }
+    }
+
+    /**
+     * Records strings pooled while parsing
+     * @param lookups Number of string occurrences
+     * @param distinct Number of distinct strings kept
+     * @param savedBytes Estimated heap of occurrences that were not kept
+     */
+    public void pooledStrings(long lookups, long distinct, long savedBytes) {
+        if (enabled) {
+            stringLookups.add(lookups);
+            distinctStrings.add(distinct);
+            stringBytesSaved.add(savedBytes);
+        }
+    }
+
+    /**
+     * Records duplicate links dropped while loading or updating
+     * @param links Number of dropped links
+     */
+    public void droppedDuplicateLinks(long links) {
+        if (enabled) {
+            duplicateLinks.add(links);
+        }
+    }
+
+    /**
+     * Records bytes written without going through {@link #countBytes(OutputStream)}, e.g. straight to a channel
+     * @param bytes Number of bytes written
+     */
+    public void wrote(long bytes) {
+        if (enabled) {
+            bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * Wraps output stream to count bytes written to it, stream is returned as is if disabled
+     * @param out Output stream
+     * @return Counting output stream
+     */
+    public OutputStream countBytes(OutputStream out) {
+
+        if (!enabled) {
+            return out;
+        }
+
+        return new FilterOutputStream(out) {
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesWritten.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesWritten.add(len);
+            }
+        };
+    }
+
+    /**
+     * Registers metrics with the platform MBean server as {@link #OBJECT_NAME}, replacing metrics registered before
+     * @throws JMException
+     */
+    public void register() throws JMException {
+
+        ObjectName name = new ObjectName(OBJECT_NAME);
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException e) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+    }
+
+    /**
+     * Writes metrics as one JSON object, output stream is flushed but not closed
+     * @param out Output stream
+     * @throws IOException
+     */
+    public void writeStats(OutputStream out) throws IOException {
+
+        try (JsonGenerator generator = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+
+            generator.writeObjectFieldStart("phases");
+            for (Phase phase : Phase.values()) {
+                long count = phaseCounts[phase.ordinal()].sum();
+                if (count > 0) {
+                    generator.writeObjectFieldStart(phase.name().toLowerCase());
+                    generator.writeNumberField("count", count);
+                    generator.writeNumberField("ms", millis(phaseNanos[phase.ordinal()].sum()));
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndObject();
+
+            double loadSeconds = (phaseNanos[Phase.PARSE.ordinal()].sum() + phaseNanos[Phase.BUILD.ordinal()].sum()
+                    + phaseNanos[Phase.LOAD_SNAPSHOT.ordinal()].sum()) / 1e9;
+
+            generator.writeNumberField("entities_parsed", getEntitiesParsed());
+            generator.writeNumberField("links_parsed", getLinksParsed());
+            generator.writeNumberField("entities_per_second", loadSeconds > 0 ? Math.round(getEntitiesParsed() / loadSeconds) : 0);
+            generator.writeNumberField("links_per_second", loadSeconds > 0 ? Math.round(getLinksParsed() / loadSeconds) : 0);
+            generator.writeNumberField("clones", getClones());
+            generator.writeNumberField("cloned_entities", getClonedEntities());
+            generator.writeNumberField("cloned_links", getClonedLinks());
+            generator.writeNumberField("traversal_steps", getTraversalSteps());
+            generator.writeNumberField("duplicate_links", getDuplicateLinks());
+            generator.writeNumberField("bytes_written", getBytesWritten());
+            generator.writeNumberField("peak_heap_bytes", getPeakHeapBytes());
+
+            if (getStringLookups() > 0) {
+                generator.writeObjectFieldStart("strings");
+                generator.writeNumberField("lookups", getStringLookups());
+                generator.writeNumberField("distinct", getDistinctStrings());
+                generator.writeNumberField("dedup_ratio", Math.round(100.0 * getStringLookups() / getDistinctStrings()) / 100.0);
+                generator.writeNumberField("heap_saved_bytes", getStringBytesSaved());
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+        }
+
+        out.flush();
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMillis() {
+
+        Map<String, Double> millis = new LinkedHashMap<>();
+
+        for (Phase phase : Phase.values()) {
+            if (phaseCounts[phase.ordinal()].sum() > 0) {
+                millis.put(phase.name().toLowerCase(), millis(phaseNanos[phase.ordinal()].sum()));
+            }
+        }
+
+        return millis;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (Phase phase : Phase.values()) {
+            long count = phaseCounts[phase.ordinal()].sum();
+            if (count > 0) {
+                counts.put(phase.name().toLowerCase(), count);
+            }
+        }
+
+        return counts;
+    }
+
+    @Override
+    public long getEntitiesParsed() {
+        return entitiesParsed.sum();
+    }
+
+    @Override
+    public long getLinksParsed() {
+        return linksParsed.sum();
+    }
+
+    @Override
+    public long getClones() {
+        return clones.sum();
+    }
+
+    @Override
+    public long getClonedEntities() {
+        return clonedEntities.sum();
+    }
+
+    @Override
+    public long getClonedLinks() {
+        return clonedLinks.sum();
+    }
+
+    @Override
+    public long getTraversalSteps() {
+        return traversalSteps.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getStringLookups() {
+        return stringLookups.sum();
+    }
+
+    @Override
+    public long getDistinctStrings() {
+        return distinctStrings.sum();
+    }
+
+    @Override
+    public long getStringBytesSaved() {
+        return stringBytesSaved.sum();
+    }
+
+    @Override
+    public long getDuplicateLinks() {
+        return duplicateLinks.sum();
+    }
+
+    @Override
+    public long getPeakHeapBytes() {
+        return peakHeapBytes.get();
+    }
+
+    @Override
+    public void reset() {
+
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i].reset();
+            phaseCounts[i].reset();
+        }
+
+        entitiesParsed.reset();
+        linksParsed.reset();
+        clones.reset();
+        clonedEntities.reset();
+        clonedLinks.reset();
+        traversalSteps.reset();
+        bytesWritten.reset();
+        stringLookups.reset();
+        distinctStrings.reset();
+        stringBytesSaved.reset();
+        duplicateLinks.reset();
+        peakHeapBytes.reset();
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+}
@@ -0,0 +1,71 @@
+package app.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link Metrics}, registered by {@link Metrics#register()}
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Get total time spent in each phase that has run
+     * @return Time in milliseconds by phase name
+     */
+    Map<String, Double> getPhaseMillis();
+
+    /**
+     * Get number of times each phase has run
+     * @return Count by phase name
+     */
+    Map<String, Long> getPhaseCounts();
+
+    long getEntitiesParsed();
+
+    long getLinksParsed();
+
+    long getClones();
+
+    long getClonedEntities();
+
+    long getClonedLinks();
+
+    /**
+     * Get number of links followed by clone traversals
+     * @return Traversal steps
+     */
+    long getTraversalSteps();
+
+    long getBytesWritten();
+
+    /**
+     * Get number of names and descriptions looked up in string pools
+     * @return Lookups, 0 if strings were not pooled
+     */
+    long getStringLookups();
+
+    long getDistinctStrings();
+
+    /**
+     * Get estimated heap of strings not kept because an equal one was pooled
+     * @return Bytes
+     */
+    long getStringBytesSaved();
+
+    /**
+     * Get number of duplicate links dropped with link deduplication
+     * @return Links, 0 if links were not deduplicated
+     */
+    long getDuplicateLinks();
+
+    /**
+     * Get highest heap usage sampled at the end of every phase since start or last reset. Pools peak at different
+     * times, so the sum of their peaks would overstate it, while heap between the ends of phases is not seen.
+     * @return Peak heap in bytes, 0 if no phase ended
+     */
+    long getPeakHeapBytes();
+
+    /**
+     * Resets all counters and peak heap usage
+     */
+    void reset();
+}
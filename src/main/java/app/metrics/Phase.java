@@ -0,0 +1,33 @@
+package app.metrics;
+
+/**
+ * Timed phases of the app
+ */
+public enum Phase {
+
+    /**
+     * Parsing of input file, for compact storage including filling of the graph builder
+     */
+    PARSE,
+
+    /**
+     * Link verification and building of the graph from parsed entities and links
+     */
+    BUILD,
+
+    LOAD_SNAPSHOT,
+
+    CLONE,
+
+    /**
+     * JSON output of the graph or of clones
+     */
+    SERIALIZE,
+
+    WRITE_SNAPSHOT,
+
+    /**
+     * Parsing, validation and applying of a graph update
+     */
+    UPDATE
+}
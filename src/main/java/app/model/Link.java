@@ -3,8 +3,6 @@ package app.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.Objects;
-
 public class Link {
 
     @JsonIgnore
@@ -49,7 +47,7 @@ public class Link {
 
     @Override
     public int hashCode() {
-        return Objects.hash(from, to);
+        return 31 * from + to;
     }
 
     @Override
@@ -0,0 +1,294 @@
+package app.output;
+
+import app.CloneEstimate;
+import app.CloneResult;
+import app.store.EntityCursor;
+import app.store.GraphStore;
+import app.store.LinkCursor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes entities and links as JSON in the input file format. Entities and links are streamed from
+ * the graph store straight to the output through a buffer of fixed size, so memory use does not depend
+ * on the size of the output.
+ * <p>
+ * Output is the same, byte for byte, as serializing the entity map and link list with ObjectMapper.
+ */
+public class GraphJsonWriter implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    private final OutputStream out;
+    private final JsonGenerator generator;
+
+    public GraphJsonWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates writer. Underlying stream is flushed but not closed by {@link #close()}.
+     * @param out Output stream
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     */
+    public GraphJsonWriter(OutputStream out, int bufferSize) throws IOException {
+        this.out = new BufferedOutputStream(out, bufferSize);
+        this.generator = FACTORY.createGenerator(this.out, JsonEncoding.UTF8);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Creates writer over channel. Channel is not closed by {@link #close()}.
+     * @param channel Output channel
+     * @param bufferSize Size of the output buffer in bytes
+     * @throws IOException
+     */
+    public GraphJsonWriter(WritableByteChannel channel, int bufferSize) throws IOException {
+        this(Channels.newOutputStream(channel), bufferSize);
+    }
+
+    /**
+     * Writes all entities and links of the store
+     * @param store Graph store
+     * @throws IOException
+     */
+    public void writeGraph(GraphStore store) throws IOException {
+        startGraph();
+        writeEntities(store, 0);
+        endGraph(store);
+    }
+
+    /**
+     * Starts graph document, entities are written next with {@link #writeEntity} or {@link #writeEntities}
+     * and the document is finished with {@link #endGraph(GraphStore)} or {@link #startLinks()}
+     * @throws IOException
+     */
+    public void startGraph() throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("entities");
+    }
+
+    /**
+     * Writes entities of the store in order of its entity cursor
+     * @param store Graph store
+     * @param skip Number of entities to skip, e.g. already written ones
+     * @throws IOException
+     */
+    public void writeEntities(GraphStore store, int skip) throws IOException {
+
+        EntityCursor entities = store.entityCursor();
+
+        for (int i = 0; entities.next(); i++) {
+            if (i >= skip) {
+                writeEntity(entities.id(), entities.name(), entities.description());
+            }
+        }
+    }
+
+    /**
+     * Ends entities of graph document and writes all links of the store
+     * @param store Graph store
+     * @throws IOException
+     */
+    public void endGraph(GraphStore store) throws IOException {
+
+        startLinks();
+
+        LinkCursor links = store.linkCursor(0);
+        while (links.next()) {
+            writeLink(links.from(), links.to());
+        }
+
+        endGraph();
+    }
+
+    /**
+     * Ends entities of graph document, links are written next with {@link #writeLink}
+     * @throws IOException
+     */
+    public void startLinks() throws IOException {
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("links");
+    }
+
+    /**
+     * Ends links of graph document, ID pairs are written next with {@link #writeIdMapping}
+     * @throws IOException
+     */
+    public void startIdMap() throws IOException {
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("id_map");
+    }
+
+    /**
+     * Ends the last array and the graph document
+     * @throws IOException
+     */
+    public void endGraph() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes only entities and links created by cloning, in the same format as the whole graph.
+     * Cost is proportional to the size of the clone, not of the graph.
+     * @param store Graph store the clone was made in
+     * @param result Clone result
+     * @param includeIdMap Whether to add "id_map" field with original and clone ID pairs
+     * @throws IOException
+     */
+    public void writeDelta(GraphStore store, CloneResult result, boolean includeIdMap) throws IOException {
+        writeDelta(store, Collections.singletonList(result), includeIdMap);
+    }
+
+    /**
+     * Writes entities and links created by several clones as one document
+     * @param store Graph store the clones were made in
+     * @param results Clone results
+     * @param includeIdMap Whether to add "id_map" field with original and clone ID pairs
+     * @throws IOException
+     */
+    public void writeDelta(GraphStore store, List<CloneResult> results, boolean includeIdMap) throws IOException {
+
+        startGraph();
+        for (CloneResult result : results) {
+            for (int id : result.getCloneIds()) {
+                writeEntity(id, store.getName(id), store.getDescription(id));
+            }
+        }
+
+        startLinks();
+        for (CloneResult result : results) {
+            LinkCursor links = store.linkCursor(result.getFirstLinkIndex());
+            for (int i = 0; i < result.getLinkCount() && links.next(); i++) {
+                writeLink(links.from(), links.to());
+            }
+        }
+
+        if (includeIdMap) {
+            startIdMap();
+            for (CloneResult result : results) {
+
+                int[] originalIds = result.getOriginalIds();
+                int[] cloneIds = result.getCloneIds();
+
+                for (int i = 0; i < cloneIds.length; i++) {
+                    writeIdMapping(originalIds[i], cloneIds[i]);
+                }
+            }
+        }
+
+        endGraph();
+    }
+
+    /**
+     * Writes number of entities and links cloning would create for each entity
+     * @param estimates Clone estimates
+     * @throws IOException
+     */
+    public void writeEstimates(List<CloneEstimate> estimates) throws IOException {
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("estimates");
+
+        for (CloneEstimate estimate : estimates) {
+            generator.writeStartObject();
+            generator.writeNumberField("entity_id", estimate.getEntityId());
+            generator.writeNumberField("entities", estimate.getEntityCount());
+            generator.writeNumberField("links", estimate.getLinkCount());
+            generator.writeEndObject();
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes raw text, e.g. line separator after the document
+     * @param text Text to write
+     * @throws IOException
+     */
+    public void writeRaw(String text) throws IOException {
+        generator.writeRaw(text);
+    }
+
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+        out.flush();
+    }
+
+    /**
+     * Writes one entity of graph document started with {@link #startGraph()}
+     * @param id Entity ID
+     * @param name Entity name, may be null
+     * @param description Entity description, may be null
+     * @throws IOException
+     */
+    public void writeEntity(int id, String name, String description) throws IOException {
+        writeEntity(generator, id, name, description);
+    }
+
+    /**
+     * Writes one link of graph document after {@link #startLinks()}
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     * @throws IOException
+     */
+    public void writeLink(int from, int to) throws IOException {
+        writeLink(generator, from, to);
+    }
+
+    /**
+     * Writes one original and clone ID pair after {@link #startIdMap()}
+     * @param originalId ID of the original entity
+     * @param cloneId ID of its clone
+     * @throws IOException
+     */
+    public void writeIdMapping(int originalId, int cloneId) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("original_id", originalId);
+        generator.writeNumberField("clone_id", cloneId);
+        generator.writeEndObject();
+    }
+
+    static void writeEntity(JsonGenerator generator, int id, String name, String description) throws IOException {
+
+        generator.writeStartObject();
+
+        if (name != null) {
+            generator.writeStringField("name", name);
+        }
+
+        if (description != null) {
+            generator.writeStringField("description", description);
+        }
+
+        generator.writeNumberField("entity_id", id);
+        generator.writeEndObject();
+    }
+
+    static void writeLink(JsonGenerator generator, int from, int to) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("from", from);
+        generator.writeNumberField("to", to);
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,402 @@
+package app.output;
+
+import app.store.EntityCursor;
+import app.store.GraphStore;
+import app.store.LinkCursor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Writes all entities and links of the store as JSON, serializing chunks of them concurrently on a fork-join pool.
+ * The calling thread reads the store cursors into chunks, workers serialize chunks into buffers, and serialized
+ * chunks are written in order with gathering writes. Chunks, their buffers and generators are reused, so once
+ * buffers have grown to fit a chunk, output allocates nothing.
+ * <p>
+ * Output is the same, byte for byte, as of {@link GraphJsonWriter#writeGraph(GraphStore)}.
+ */
+public class ParallelGraphJsonWriter implements Closeable {
+
+    /**
+     * Number of entities or links serialized by one task
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Chunks in flight per thread of the pool, so threads have work while serialized chunks are written
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int bufferSize;
+    private final int maxChunks;
+
+    private final Chunk start = new Chunk("{\"entities\":[");
+    private final Chunk middle = new Chunk("],\"links\":[");
+    private final Chunk end = new Chunk("]}");
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final ArrayDeque<Chunk> free = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+
+    private final ByteBuffer[] gathered;
+    private final Chunk[] gatheredChunks;
+    private int gatheredCount;
+
+    private GatheringByteChannel channel;
+    private long written;
+
+    /**
+     * @param pool Pool serializing chunks
+     * @param chunkSize Number of entities or links serialized by one task
+     * @param bufferSize Initial size of the buffer of each chunk, buffers grow to fit their chunks
+     */
+    public ParallelGraphJsonWriter(ForkJoinPool pool, int chunkSize, int bufferSize) {
+        this.pool = pool;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.bufferSize = Math.max(16, bufferSize);
+        this.maxChunks = CHUNKS_PER_THREAD * pool.getParallelism();
+        this.gathered = new ByteBuffer[maxChunks + 3];
+        this.gatheredChunks = new Chunk[gathered.length];
+    }
+
+    /**
+     * Writes all entities and links of the store. Channel is not closed.
+     * @param store Graph store, must not be modified until the method returns
+     * @param channel Output channel
+     * @return Number of bytes written
+     * @throws IOException
+     */
+    public long writeGraph(GraphStore store, GatheringByteChannel channel) throws IOException {
+
+        this.channel = channel;
+        this.written = 0;
+
+        try {
+            queue(start);
+
+            EntityCursor entities = store.entityCursor();
+            Chunk chunk = null;
+            boolean first = true;
+
+            while (entities.next()) {
+
+                if (chunk == null) {
+                    chunk = take(false, first);
+                    first = false;
+                }
+
+                chunk.first[chunk.count] = entities.id();
+                chunk.names[chunk.count] = entities.name();
+                chunk.descriptions[chunk.count++] = entities.description();
+
+                if (chunk.count == chunkSize) {
+                    submit(chunk);
+                    chunk = null;
+                }
+            }
+
+            if (chunk != null) {
+                submit(chunk);
+            }
+
+            queue(middle);
+
+            LinkCursor links = store.linkCursor(0);
+            chunk = null;
+            first = true;
+
+            while (links.next()) {
+
+                if (chunk == null) {
+                    chunk = take(true, first);
+                    first = false;
+                }
+
+                chunk.first[chunk.count] = links.from();
+                chunk.second[chunk.count++] = links.to();
+
+                if (chunk.count == chunkSize) {
+                    submit(chunk);
+                    chunk = null;
+                }
+            }
+
+            if (chunk != null) {
+                submit(chunk);
+            }
+
+            queue(end);
+
+            while (!pending.isEmpty()) {
+                gather(pending.poll());
+            }
+
+            writeGathered();
+
+        } finally {
+            // Chunks of a failed write are waited for, so none is still serializing when the writer is used again
+            for (Chunk chunk : pending) {
+                if (chunk.constant == null) {
+                    chunk.quietlyJoin();
+                }
+            }
+
+            pending.clear();
+            Arrays.fill(gathered, null);
+            Arrays.fill(gatheredChunks, null);
+            gatheredCount = 0;
+
+            // Strings are not kept after the write
+            free.clear();
+            for (Chunk chunk : chunks) {
+                Arrays.fill(chunk.names, null);
+                Arrays.fill(chunk.descriptions, null);
+                free.add(chunk);
+            }
+
+            this.channel = null;
+        }
+
+        return written;
+    }
+
+    /**
+     * Closes generators of all chunks
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        for (Chunk chunk : chunks) {
+            chunk.generator.close();
+        }
+
+        chunks.clear();
+        free.clear();
+    }
+
+    /**
+     * Takes an unused chunk, writing serialized chunks when all of them are in use
+     */
+    private Chunk take(boolean links, boolean first) throws IOException {
+
+        if (free.isEmpty() && chunks.size() >= maxChunks) {
+
+            // Oldest chunk is waited for, the ones after it are gathered into the same write if already serialized
+            gather(pending.poll());
+            while (!pending.isEmpty() && pending.peek().isSerialized()) {
+                gather(pending.poll());
+            }
+
+            writeGathered();
+        }
+
+        Chunk chunk = free.isEmpty() ? newChunk() : free.poll();
+
+        chunk.links = links;
+        chunk.continuation = !first;
+        chunk.count = 0;
+
+        return chunk;
+    }
+
+    private Chunk newChunk() throws IOException {
+        Chunk chunk = new Chunk(chunkSize, bufferSize);
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    private void submit(Chunk chunk) {
+        chunk.reinitialize();
+        pool.execute(chunk);
+        pending.add(chunk);
+    }
+
+    /**
+     * Queues chunk of constant bytes, it is written in order with serialized chunks
+     */
+    private void queue(Chunk constant) {
+        pending.add(constant);
+    }
+
+    /**
+     * Waits for the chunk to be serialized and adds its bytes to the next write
+     */
+    private void gather(Chunk chunk) throws IOException {
+
+        if (gatheredCount == gathered.length) {
+            writeGathered();
+        }
+
+        if (chunk.constant == null) {
+            try {
+                chunk.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            chunk.buffer.rewind();
+        }
+
+        gathered[gatheredCount] = chunk.buffer;
+        gatheredChunks[gatheredCount] = chunk;
+        gatheredCount++;
+    }
+
+    private void writeGathered() throws IOException {
+
+        if (gatheredCount == 0) {
+            return;
+        }
+
+        // Gathering write may write only some of the buffers, the rest is written from the first one with bytes left
+        int offset = 0;
+
+        while (offset < gatheredCount) {
+            written += channel.write(gathered, offset, gatheredCount - offset);
+            while (offset < gatheredCount && !gathered[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+
+        for (int i = 0; i < gatheredCount; i++) {
+            release(gatheredChunks[i]);
+            gatheredChunks[i] = null;
+            gathered[i] = null;
+        }
+
+        gatheredCount = 0;
+    }
+
+    private void release(Chunk chunk) {
+        if (chunk.constant == null) {
+            free.add(chunk);
+        }
+    }
+
+    /**
+     * Entities or links serialized by one task, or constant bytes between them. Serialized chunk is an array of
+     * objects without its brackets, preceded by a comma unless it is the first chunk of the array.
+     */
+    private static class Chunk extends RecursiveAction {
+
+        private final int[] first;
+        private final int[] second;
+        private final String[] names;
+        private final String[] descriptions;
+        private final byte[] constant;
+        private final BufferOutputStream out;
+        private final JsonGenerator generator;
+
+        private ByteBuffer buffer;
+        private boolean links;
+        private boolean continuation;
+        private int count;
+
+        Chunk(int size, int bufferSize) throws IOException {
+            this.first = new int[size];
+            this.second = new int[size];
+            this.names = new String[size];
+            this.descriptions = new String[size];
+            this.constant = null;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            this.out = new BufferOutputStream();
+            this.generator = GraphJsonWriter.FACTORY.createGenerator(out, JsonEncoding.UTF8);
+
+            // Generator writes one array per chunk and is reused, arrays are not separated
+            this.generator.setRootValueSeparator(null);
+        }
+
+        Chunk(String constant) {
+            this.first = null;
+            this.second = null;
+            this.names = null;
+            this.descriptions = null;
+            this.constant = constant.getBytes(StandardCharsets.UTF_8);
+            this.buffer = ByteBuffer.wrap(this.constant).asReadOnlyBuffer();
+            this.out = null;
+            this.generator = null;
+        }
+
+        boolean isSerialized() {
+            return constant != null || isDone();
+        }
+
+        @Override
+        protected void compute() {
+
+            buffer.clear();
+
+            try {
+                generator.writeStartArray();
+
+                for (int i = 0; i < count; i++) {
+                    if (links) {
+                        GraphJsonWriter.writeLink(generator, first[i], second[i]);
+                    } else {
+                        GraphJsonWriter.writeEntity(generator, first[i], names[i], descriptions[i]);
+                    }
+                }
+
+                generator.writeEndArray();
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // Opening bracket is replaced by the comma separating the chunk from the previous one, or skipped
+            buffer.flip();
+            buffer.limit(buffer.limit() - 1);
+
+            if (continuation) {
+                buffer.put(0, (byte) ',');
+            } else {
+                buffer.position(1);
+            }
+        }
+
+        /**
+         * Writes to the chunk buffer, replacing it with a larger one when it is full
+         */
+        private class BufferOutputStream extends OutputStream {
+
+            @Override
+            public void write(int b) {
+                ensureRemaining(1);
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureRemaining(len);
+                buffer.put(b, off, len);
+            }
+
+            private void ensureRemaining(int length) {
+
+                if (buffer.remaining() < length) {
+
+                    ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(2 * buffer.capacity(), buffer.position() + length));
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        }
+    }
+}
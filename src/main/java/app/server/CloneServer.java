@@ -0,0 +1,266 @@
+package app.server;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.output.GraphJsonWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HTTP service that keeps the graph of {@link App} resident and serves clone requests, so parsing,
+ * JVM startup and JIT warm-up are paid once instead of per clone.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code GET /clone?id=<entityID>[&delta][&id-map]} clones the entity, clones stay in the graph,
+ *     responds with the whole graph or with the delta only</li>
+ *     <li>{@code GET /graph} responds with the whole graph</li>
+ *     <li>{@code POST /update} applies graph update in the request body, see {@link parser.UpdateParser},
+ *     responds with number of entities and links of the updated graph</li>
+ * </ul>
+ * Clones and updates modify the graph, so they are serialized with the write lock. Responses are written under the read lock,
+ * clone lock is downgraded to it, so any number of responses are written concurrently between clones.
+ */
+public class CloneServer {
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
+    static {
+        // Server flushes headers before the body, without TCP_NODELAY every response waits for delayed ACK.
+        // Setting is read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final App app;
+    private final int bufferSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates server, it does not accept requests until started
+     * @param app App with loaded graph, must not be used by other code while the server runs
+     * @param address Address to listen on, port 0 selects a free port
+     * @param threads Number of threads serving requests
+     * @param bufferSize Size of the response buffer in bytes
+     * @throws IOException
+     */
+    public CloneServer(App app, InetSocketAddress address, int threads, int bufferSize) throws IOException {
+        this.app = app;
+        this.bufferSize = bufferSize;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+
+        server.createContext("/clone", new CloneHandler());
+        server.createContext("/graph", new GraphHandler());
+        server.createContext("/update", new UpdateHandler());
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to given time for running requests to finish
+     * @param delaySeconds Maximum time to wait
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Get port the server listens on
+     * @return Port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private class CloneHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try {
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                int entityId;
+
+                try {
+                    entityId = Integer.parseInt(parameters.get("id"));
+                } catch (NumberFormatException nfe) {
+                    sendText(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "Entity ID must be integer number");
+                    return;
+                }
+
+                lock.writeLock().lock();
+
+                CloneResult result;
+
+                try {
+                    if (app.findEntity(entityId) == null) {
+                        sendText(exchange, HttpURLConnection.HTTP_NOT_FOUND, String.format("Entity with ID %d not found", entityId));
+                        return;
+                    }
+
+                    result = app.clone(entityId);
+
+                    // Downgrade, so other responses can be written while this one is
+                    lock.readLock().lock();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                try {
+                    if (parameters.containsKey("delta")) {
+
+                        // Delta is as large as the clone, sending it with known length in one write avoids
+                        // delays of chunked encoding on small responses
+                        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+                        app.writeClonedElementsAndLinks(result, parameters.containsKey("id-map"), delta, bufferSize);
+
+                        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, delta.size());
+
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            delta.writeTo(out);
+                        }
+                    } else {
+                        sendGraph(exchange);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private class GraphHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            lock.readLock().lock();
+
+            try {
+                sendGraph(exchange);
+            } finally {
+                lock.readLock().unlock();
+                exchange.close();
+            }
+        }
+    }
+
+    private class UpdateHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    sendText(exchange, HttpURLConnection.HTTP_BAD_METHOD, "Update must be posted");
+                    return;
+                }
+
+                String counts;
+                lock.writeLock().lock();
+
+                try {
+                    app.applyUpdate(exchange.getRequestBody());
+                    counts = String.format("{\"entities\":%d,\"links\":%d}",
+                            app.getStore().getEntityCount(), app.getStore().getLinkCount());
+                } catch (InvalidJsonFormatException | InvalidEntityLinkException e) {
+                    sendText(exchange, HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                    return;
+                } catch (JsonProcessingException e) {
+                    // Malformed or truncated body, the update is parsed before anything is applied
+                    sendText(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "Invalid JSON: " + e.getOriginalMessage());
+                    return;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                byte[] bytes = counts.getBytes(StandardCharsets.UTF_8);
+
+                exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Streams the whole graph with chunked encoding, caller holds the read lock
+     */
+    private void sendGraph(HttpExchange exchange) throws IOException {
+
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            app.writeElementsAndLinks(out, bufferSize);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Parses query parameters, parameters without value map to empty string
+     */
+    private static Map<String, String> parseQuery(String query) {
+
+        Map<String, String> parameters = new HashMap<>();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator < 0) {
+                parameters.put(parameter, "");
+            } else {
+                parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+            }
+        }
+
+        return parameters;
+    }
+}
@@ -0,0 +1,186 @@
+package app.store;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.util.IntArray;
+import app.util.IntIntMap;
+import parser.ParsingSink;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Collects parsed entities and links into primitive columns and builds {@link CompactGraphStore} from them
+ */
+public class CompactGraphBuilder implements ParsingSink {
+
+    private static final int NONE = -1;
+
+    private final GraphMemory memory;
+    private final IntIntMap indexById;
+    private final IntArray ids;
+    private final IntArray nameRefs;
+    private final IntArray descriptionRefs;
+    private final StringTable strings;
+
+    /**
+     * References of strings already in the table by string instance, null if strings are not shared
+     */
+    private final Map<String, Integer> stringRefs;
+    private final IntArray linkFrom;
+    private final IntArray linkTo;
+    private int largestId;
+
+    public CompactGraphBuilder() {
+        this(new HeapMemory());
+    }
+
+    /**
+     * Creates builder that keeps the graph in given memory
+     * @param memory Memory for columns, adjacency and strings
+     */
+    public CompactGraphBuilder(GraphMemory memory) {
+        this(memory, false);
+    }
+
+    /**
+     * Creates builder that keeps the graph in given memory
+     * @param memory Memory for columns, adjacency and strings
+     * @param shareStrings Add every string instance to the string table once, for pooled strings
+     *                     that repeat as the same instance
+     */
+    public CompactGraphBuilder(GraphMemory memory, boolean shareStrings) {
+        this.memory = memory;
+        this.stringRefs = shareStrings ? new IdentityHashMap<>() : null;
+        this.indexById = new IntIntMap(16, memory);
+        this.ids = memory.allocate(16);
+        this.nameRefs = memory.allocate(16);
+        this.descriptionRefs = memory.allocate(16);
+        this.strings = memory.newStringTable();
+        this.linkFrom = memory.allocate(16);
+        this.linkTo = memory.allocate(16);
+    }
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        int index = indexById.get(id, NONE);
+
+        // Entity with the same ID replaces the previous one, as it does in the entity map
+        if (index != NONE) {
+            nameRefs.set(index, addString(name));
+            descriptionRefs.set(index, addString(description));
+            return;
+        }
+
+        indexById.put(id, ids.size());
+        ids.add(id);
+        nameRefs.add(addString(name));
+        descriptionRefs.add(addString(description));
+
+        if (id > largestId) {
+            largestId = id;
+        }
+    }
+
+    private int addString(String value) {
+
+        if (stringRefs == null || value == null) {
+            return strings.add(value);
+        }
+
+        Integer ref = stringRefs.get(value);
+
+        if (ref == null) {
+            ref = strings.add(value);
+            stringRefs.put(value, ref);
+        }
+
+        return ref;
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+        linkFrom.add(from);
+        linkTo.add(to);
+    }
+
+    /**
+     * Verifies links and builds CSR adjacency
+     * @return Graph store
+     * @throws InvalidEntityLinkException if a link references missing entity
+     */
+    public CompactGraphStore build() throws InvalidEntityLinkException {
+
+        int entityCount = ids.size();
+        int linkCount = linkFrom.size();
+
+        // Link endpoints are replaced by entity indices in place
+        for (int i = 0; i < linkCount; i++) {
+
+            int fromIndex = indexById.get(linkFrom.get(i), NONE);
+            int toIndex = indexById.get(linkTo.get(i), NONE);
+
+            if (fromIndex == NONE) {
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", linkFrom.get(i)));
+            }
+
+            if (toIndex == NONE) {
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", linkFrom.get(i)));
+            }
+
+            linkFrom.set(i, fromIndex);
+            linkTo.set(i, toIndex);
+        }
+
+        IntArray outOffsets = newArray(entityCount + 1);
+        IntArray inOffsets = newArray(entityCount + 1);
+        IntArray outTargets = newArray(linkCount);
+        IntArray inTargets = newArray(linkCount);
+
+        fill(linkFrom, linkTo, outOffsets, outTargets);
+        fill(linkTo, linkFrom, inOffsets, inTargets);
+
+        linkFrom.clear();
+        linkTo.clear();
+
+        return new CompactGraphStore(memory, indexById, ids, nameRefs, descriptionRefs, strings,
+                outOffsets, outTargets, inOffsets, inTargets, largestId);
+    }
+
+    private IntArray newArray(int size) {
+        IntArray array = memory.allocate(size);
+        array.resize(size);
+        return array;
+    }
+
+    /**
+     * Counting sort of links by source, keeps original link order within each source
+     */
+    private void fill(IntArray sources, IntArray targets, IntArray offsets, IntArray sorted) {
+
+        int linkCount = sources.size();
+        int entityCount = offsets.size() - 1;
+
+        for (int i = 0; i < linkCount; i++) {
+            int source = sources.get(i);
+            offsets.set(source + 1, offsets.get(source + 1) + 1);
+        }
+
+        for (int i = 1; i <= entityCount; i++) {
+            offsets.set(i, offsets.get(i) + offsets.get(i - 1));
+        }
+
+        IntArray position = newArray(entityCount);
+
+        for (int i = 0; i < entityCount; i++) {
+            position.set(i, offsets.get(i));
+        }
+
+        for (int i = 0; i < linkCount; i++) {
+            int source = sources.get(i);
+            int slot = position.get(source);
+            sorted.set(slot, targets.get(i));
+            position.set(source, slot + 1);
+        }
+    }
+}
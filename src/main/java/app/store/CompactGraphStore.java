@@ -0,0 +1,571 @@
+package app.store;
+
+import app.util.IntArray;
+import app.util.IntIntMap;
+import app.util.IntList;
+
+import java.util.BitSet;
+
+/**
+ * Graph store that keeps entities in dense primitive columns and adjacency of loaded links in
+ * compressed sparse row (CSR) arrays. Entity IDs are mapped to dense indices, names and descriptions
+ * are kept in a string table and referenced from columns indexed the same way.
+ * <p>
+ * All columns are allocated from {@link GraphMemory}, so the whole graph can live on or off heap.
+ * <p>
+ * Entities and links added after loading, e.g. by cloning, are appended to growable segments.
+ * Appended links form per-entity linked lists, so adding a link is O(1) and keeps the CSR arrays intact.
+ * <p>
+ * Loaded links are enumerated grouped by source entity, appended links follow in order in which they were added.
+ * <p>
+ * Removed entities and links are marked in bit sets and skipped, their slots are not reused.
+ */
+public class CompactGraphStore implements GraphStore {
+
+    private static final int NONE = -1;
+
+    private final GraphMemory memory;
+    private final IntIntMap indexById;
+    private final IntArray ids;
+    private final IntArray nameRefs;
+    private final IntArray descriptionRefs;
+    private final StringTable strings;
+
+    /**
+     * Adjacency of loaded links, entity at index i links to outTargets[outOffsets[i]..outOffsets[i + 1])
+     */
+    private final IntArray outOffsets;
+    private final IntArray outTargets;
+    private final IntArray inOffsets;
+    private final IntArray inTargets;
+    private final int baseEntityCount;
+    private final int baseLinkCount;
+
+    /**
+     * Appended links, indices of entities
+     */
+    private final IntArray extraFrom;
+    private final IntArray extraTo;
+    private final IntArray extraOutNext;
+    private final IntArray extraInNext;
+
+    /**
+     * First and last appended link per entity, allocated when first link is appended
+     */
+    private IntArray outHead;
+    private IntArray outTail;
+    private IntArray inHead;
+    private IntArray inTail;
+
+    /**
+     * Removed entities by index and removed links by position, loaded links take the first positions.
+     * Allocated on first removal.
+     */
+    private BitSet removedEntities;
+    private BitSet removedLinks;
+
+    /**
+     * Removed slots of loaded incoming adjacency, which is ordered differently from link positions
+     */
+    private BitSet removedInSlots;
+    private int removedEntityCount;
+    private int removedLinkCount;
+
+    private int largestId;
+
+    /**
+     * Largest ID has to be found again, entity with it was removed
+     */
+    private boolean largestIdRemoved;
+
+    /**
+     * Creates empty graph
+     */
+    public CompactGraphStore() {
+        this(new HeapMemory());
+    }
+
+    /**
+     * Creates empty graph in given memory
+     * @param memory Memory for columns, adjacency and strings
+     */
+    public CompactGraphStore(GraphMemory memory) {
+        this(memory, new IntIntMap(16, memory), memory.allocate(16), memory.allocate(16), memory.allocate(16),
+                memory.newStringTable(), sized(memory, 1), sized(memory, 0), sized(memory, 1), sized(memory, 0), 0);
+    }
+
+    CompactGraphStore(GraphMemory memory, IntIntMap indexById, IntArray ids, IntArray nameRefs,
+                      IntArray descriptionRefs, StringTable strings, IntArray outOffsets, IntArray outTargets,
+                      IntArray inOffsets, IntArray inTargets, int largestId) {
+        this.memory = memory;
+        this.indexById = indexById;
+        this.ids = ids;
+        this.nameRefs = nameRefs;
+        this.descriptionRefs = descriptionRefs;
+        this.strings = strings;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+        this.baseEntityCount = outOffsets.size() - 1;
+        this.baseLinkCount = outTargets.size();
+        this.extraFrom = memory.allocate(16);
+        this.extraTo = memory.allocate(16);
+        this.extraOutNext = memory.allocate(16);
+        this.extraInNext = memory.allocate(16);
+        this.largestId = largestId;
+    }
+
+    @Override
+    public int getLargestId() {
+
+        if (largestIdRemoved) {
+            throw new IllegalStateException("Removals are not applied");
+        }
+
+        return largestId;
+    }
+
+    @Override
+    public int getEntityCount() {
+        return ids.size() - removedEntityCount;
+    }
+
+    @Override
+    public int getLinkCount() {
+        return baseLinkCount + extraFrom.size() - removedLinkCount;
+    }
+
+    @Override
+    public boolean containsEntity(int id) {
+        int index = indexById.get(id, NONE);
+        return index != NONE && !isRemoved(index);
+    }
+
+    /**
+     * Check whether entity cursor positions are the same as entity indices, i.e. no entity was removed
+     * @return true if no entity was removed
+     */
+    boolean isDense() {
+        return removedEntityCount == 0;
+    }
+
+    @Override
+    public String getName(int id) {
+        return strings.get(nameRefs.get(indexOf(id)));
+    }
+
+    @Override
+    public String getDescription(int id) {
+        return strings.get(descriptionRefs.get(indexOf(id)));
+    }
+
+    @Override
+    public void copyOutgoing(int id, IntList target) {
+
+        int start = target.size();
+        copyOutgoingIndices(indexOf(id), target);
+
+        for (int i = start; i < target.size(); i++) {
+            target.set(i, ids.get(target.get(i)));
+        }
+    }
+
+    @Override
+    public void copyIncoming(int id, IntList target) {
+
+        int start = target.size();
+        copyIncomingIndices(indexOf(id), target);
+
+        for (int i = start; i < target.size(); i++) {
+            target.set(i, ids.get(target.get(i)));
+        }
+    }
+
+    /**
+     * Copies indices of entities linked from entity at given index, in the same order as {@link #copyOutgoing}
+     */
+    void copyOutgoingIndices(int index, IntList target) {
+
+        if (index < baseEntityCount) {
+            for (int i = outOffsets.get(index), end = outOffsets.get(index + 1); i < end; i++) {
+                if (removedLinks == null || !removedLinks.get(i)) {
+                    target.add(outTargets.get(i));
+                }
+            }
+        }
+
+        if (outHead != null) {
+            for (int link = outHead.get(index); link != NONE; link = extraOutNext.get(link)) {
+                if (removedLinks == null || !removedLinks.get(baseLinkCount + link)) {
+                    target.add(extraTo.get(link));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies indices of entities linking to entity at given index, in the same order as {@link #copyIncoming}
+     */
+    void copyIncomingIndices(int index, IntList target) {
+
+        if (index < baseEntityCount) {
+            for (int i = inOffsets.get(index), end = inOffsets.get(index + 1); i < end; i++) {
+                if (removedInSlots == null || !removedInSlots.get(i)) {
+                    target.add(inTargets.get(i));
+                }
+            }
+        }
+
+        if (inHead != null) {
+            for (int link = inHead.get(index); link != NONE; link = extraInNext.get(link)) {
+                if (removedLinks == null || !removedLinks.get(baseLinkCount + link)) {
+                    target.add(extraFrom.get(link));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        int index = indexById.get(id, NONE);
+
+        if (index != NONE && !isRemoved(index)) {
+            nameRefs.set(index, strings.add(name));
+            descriptionRefs.set(index, strings.add(description));
+            return;
+        }
+
+        append(id, strings.add(name), strings.add(description));
+    }
+
+    @Override
+    public void addEntityCopy(int id, int sourceId) {
+
+        int source = indexOf(sourceId);
+
+        // Copy shares strings of the source entity
+        append(id, nameRefs.get(source), descriptionRefs.get(source));
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+
+        int fromIndex = indexOf(from);
+        int toIndex = indexOf(to);
+
+        if (outHead == null) {
+            allocateHeads();
+        }
+
+        int link = extraFrom.size();
+
+        extraFrom.add(fromIndex);
+        extraTo.add(toIndex);
+        extraOutNext.add(NONE);
+        extraInNext.add(NONE);
+
+        if (outTail.get(fromIndex) == NONE) {
+            outHead.set(fromIndex, link);
+        } else {
+            extraOutNext.set(outTail.get(fromIndex), link);
+        }
+        outTail.set(fromIndex, link);
+
+        if (inTail.get(toIndex) == NONE) {
+            inHead.set(toIndex, link);
+        } else {
+            extraInNext.set(inTail.get(toIndex), link);
+        }
+        inTail.set(toIndex, link);
+    }
+
+    @Override
+    public boolean removeLink(int from, int to) {
+
+        int fromIndex = indexOf(from);
+        int toIndex = indexOf(to);
+
+        if (fromIndex < baseEntityCount) {
+            for (int i = outOffsets.get(fromIndex), end = outOffsets.get(fromIndex + 1); i < end; i++) {
+                if (outTargets.get(i) == toIndex && (removedLinks == null || !removedLinks.get(i))) {
+                    removeLoadedLink(i, fromIndex, toIndex);
+                    return true;
+                }
+            }
+        }
+
+        if (outHead != null) {
+            for (int link = outHead.get(fromIndex); link != NONE; link = extraOutNext.get(link)) {
+                if (extraTo.get(link) == toIndex && (removedLinks == null || !removedLinks.get(baseLinkCount + link))) {
+                    markRemoved(baseLinkCount + link);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void applyRemovals() {
+
+        // Removed links are only marked and skipped while reading
+        if (largestIdRemoved) {
+            largestId = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                if (!isRemoved(i)) {
+                    largestId = Math.max(largestId, ids.get(i));
+                }
+            }
+            largestIdRemoved = false;
+        }
+    }
+
+    @Override
+    public boolean removeEntity(int id) {
+
+        int index = indexById.get(id, NONE);
+
+        if (index == NONE || isRemoved(index)) {
+            return false;
+        }
+
+        IntList neighbours = new IntList();
+        copyOutgoingIndices(index, neighbours);
+
+        for (int i = 0; i < neighbours.size(); i++) {
+            removeLink(id, ids.get(neighbours.get(i)));
+        }
+
+        neighbours.clear();
+        copyIncomingIndices(index, neighbours);
+
+        for (int i = 0; i < neighbours.size(); i++) {
+            removeLink(ids.get(neighbours.get(i)), id);
+        }
+
+        if (removedEntities == null) {
+            removedEntities = new BitSet();
+        }
+
+        removedEntities.set(index);
+        removedEntityCount++;
+        largestIdRemoved |= id == largestId;
+
+        return true;
+    }
+
+    @Override
+    public EntityCursor entityCursor() {
+
+        return new EntityCursor() {
+
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                do {
+                    index++;
+                } while (index < ids.size() && isRemoved(index));
+                return index < ids.size();
+            }
+
+            @Override
+            public int id() {
+                return ids.get(index);
+            }
+
+            @Override
+            public String name() {
+                return strings.get(nameRefs.get(index));
+            }
+
+            @Override
+            public String description() {
+                return strings.get(descriptionRefs.get(index));
+            }
+        };
+    }
+
+    @Override
+    public LinkCursor linkCursor(int fromIndex) {
+
+        int start = positionOf(fromIndex);
+        int end = baseLinkCount + extraFrom.size();
+
+        return new LinkCursor() {
+
+            private int link = start - 1;
+            private int source = sourceOf(start);
+
+            @Override
+            public boolean next() {
+
+                do {
+                    link++;
+                } while (removedLinks != null && link < end && removedLinks.get(link));
+
+                if (link < baseLinkCount) {
+                    while (outOffsets.get(source + 1) <= link) {
+                        source++;
+                    }
+                }
+
+                return link < end;
+            }
+
+            @Override
+            public int from() {
+                return link < baseLinkCount ? ids.get(source) : ids.get(extraFrom.get(link - baseLinkCount));
+            }
+
+            @Override
+            public int to() {
+                return link < baseLinkCount ? ids.get(outTargets.get(link)) : ids.get(extraTo.get(link - baseLinkCount));
+            }
+        };
+    }
+
+    /**
+     * Find position of the link with given index among links that were not removed
+     */
+    private int positionOf(int linkIndex) {
+
+        int position = linkIndex;
+
+        if (removedLinks != null) {
+            // Every removed position up to the current one shifts it by one
+            for (int removed = removedLinks.nextSetBit(0); removed >= 0 && removed <= position;
+                 removed = removedLinks.nextSetBit(removed + 1)) {
+                position++;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Marks loaded link at given CSR position and its slot in the incoming adjacency of the target removed
+     */
+    private void removeLoadedLink(int position, int fromIndex, int toIndex) {
+
+        markRemoved(position);
+
+        if (removedInSlots == null) {
+            removedInSlots = new BitSet();
+        }
+
+        for (int i = inOffsets.get(toIndex), end = inOffsets.get(toIndex + 1); i < end; i++) {
+            if (inTargets.get(i) == fromIndex && !removedInSlots.get(i)) {
+                removedInSlots.set(i);
+                return;
+            }
+        }
+    }
+
+    private void markRemoved(int position) {
+
+        if (removedLinks == null) {
+            removedLinks = new BitSet();
+        }
+
+        removedLinks.set(position);
+        removedLinkCount++;
+    }
+
+    private boolean isRemoved(int index) {
+        return removedEntities != null && removedEntities.get(index);
+    }
+
+    /**
+     * Find entity owning loaded link at given CSR position
+     */
+    private int sourceOf(int link) {
+
+        int low = 0;
+        int high = baseEntityCount - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (outOffsets.get(mid) <= link) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return Math.max(low, 0);
+    }
+
+    private void append(int id, int nameRef, int descriptionRef) {
+
+        int index = indexById.get(id, NONE);
+
+        if (index != NONE) {
+
+            if (!isRemoved(index)) {
+                throw new IllegalArgumentException(String.format("Entity with ID %d already exists", id));
+            }
+
+            // Removed entity is added again in its old slot, its links were removed with it
+            nameRefs.set(index, nameRef);
+            descriptionRefs.set(index, descriptionRef);
+            removedEntities.clear(index);
+            removedEntityCount--;
+            largestId = Math.max(getLargestId(), id);
+            return;
+        }
+
+        indexById.put(id, ids.size());
+        ids.add(id);
+        nameRefs.add(nameRef);
+        descriptionRefs.add(descriptionRef);
+
+        if (outHead != null) {
+            outHead.add(NONE);
+            outTail.add(NONE);
+            inHead.add(NONE);
+            inTail.add(NONE);
+        }
+
+        if (id > largestId) {
+            largestId = id;
+        }
+    }
+
+    private int indexOf(int id) {
+
+        int index = indexById.get(id, NONE);
+
+        if (index == NONE || isRemoved(index)) {
+            throw new IllegalArgumentException(String.format("No entity found with ID %d", id));
+        }
+
+        return index;
+    }
+
+    private void allocateHeads() {
+
+        int count = ids.size();
+
+        outHead = memory.allocate(count);
+        outTail = memory.allocate(count);
+        inHead = memory.allocate(count);
+        inTail = memory.allocate(count);
+
+        for (int i = 0; i < count; i++) {
+            outHead.add(NONE);
+            outTail.add(NONE);
+            inHead.add(NONE);
+            inTail.add(NONE);
+        }
+    }
+
+    private static IntArray sized(GraphMemory memory, int size) {
+        IntArray array = memory.allocate(size);
+        array.resize(size);
+        return array;
+    }
+}
@@ -0,0 +1,19 @@
+package app.store;
+
+/**
+ * Forward only cursor over entities of {@link GraphStore}
+ */
+public interface EntityCursor {
+
+    /**
+     * Moves to the next entity
+     * @return false if there are no more entities
+     */
+    boolean next();
+
+    int id();
+
+    String name();
+
+    String description();
+}
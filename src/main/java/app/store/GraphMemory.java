@@ -0,0 +1,11 @@
+package app.store;
+
+import app.util.IntArrayAllocator;
+
+/**
+ * Memory used by {@link CompactGraphStore} for its columns, adjacency and strings
+ */
+public interface GraphMemory extends IntArrayAllocator {
+
+    StringTable newStringTable();
+}
@@ -0,0 +1,389 @@
+package app.store;
+
+import app.util.IntArray;
+import app.util.IntIntMap;
+import app.util.IntList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of a graph that is loaded by memory mapping instead of parsing.
+ * <p>
+ * Layout, all numbers big endian:
+ * <pre>
+ * header          magic, version, largest ID, entity count n, link count m, string count s (ints), string bytes (long)
+ * ids             n ints
+ * name refs       n ints, index of the string or -1 for null
+ * description refs n ints
+ * out offsets     n + 1 ints, CSR of outgoing links by entity index
+ * out targets     m ints
+ * in offsets      n + 1 ints, CSR of incoming links by entity index
+ * in targets      m ints
+ * string bytes    UTF-8 bytes of all strings
+ * string offsets  s + 1 longs, start of each string in string bytes followed by their end
+ * </pre>
+ * Loaded graph uses adjacency and strings directly from the mapped file, only entity columns and the
+ * ID index are built in memory, so loading cost is proportional to the number of entities, not links or text.
+ */
+public class GraphSnapshot {
+
+    private static final int MAGIC = 0x47534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long STRING_WINDOW_BYTES = 1L << 30;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Checks whether the file starts with snapshot header
+     * @param file File to check
+     * @return True if the file is a snapshot
+     * @throws IOException
+     */
+    public static boolean isSnapshot(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the buffer is full or the file ends
+            }
+
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes snapshot of the graph
+     * @param store Graph to write
+     * @param file Target file, overwritten if it exists
+     * @throws IOException
+     */
+    public static void write(GraphStore store, File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            Output out = new Output(channel);
+
+            // Header is written last, when string sizes are known
+            out.write(new byte[HEADER_BYTES]);
+
+            IntList ids = new IntList(store.getEntityCount());
+            IntIntMap indexById = isDense(store) ? null : new IntIntMap(store.getEntityCount());
+            int stringCount = 0;
+
+            EntityCursor entities = store.entityCursor();
+
+            while (entities.next()) {
+                if (indexById != null) {
+                    indexById.put(entities.id(), ids.size());
+                }
+                ids.add(entities.id());
+            }
+
+            writeInts(out, ids);
+
+            for (boolean names : new boolean[]{true, false}) {
+                entities = store.entityCursor();
+                while (entities.next()) {
+                    String value = names ? entities.name() : entities.description();
+                    out.writeInt(value == null ? StringTable.NULL_REF : stringCount++);
+                }
+            }
+
+            int linkCount = writeAdjacency(out, store, ids, indexById, true);
+            writeAdjacency(out, store, ids, indexById, false);
+
+            long[] stringOffsets = new long[stringCount + 1];
+            long stringBytes = 0;
+            int ref = 0;
+
+            for (boolean names : new boolean[]{true, false}) {
+                entities = store.entityCursor();
+                while (entities.next()) {
+
+                    String value = names ? entities.name() : entities.description();
+
+                    if (value != null) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        out.write(bytes);
+                        stringOffsets[ref++] = stringBytes;
+                        stringBytes += bytes.length;
+                    }
+                }
+            }
+            stringOffsets[stringCount] = stringBytes;
+
+            for (long offset : stringOffsets) {
+                out.writeLong(offset);
+            }
+
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(store.getLargestId()).putInt(ids.size())
+                    .putInt(linkCount).putInt(stringCount).putLong(stringBytes).flip();
+
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * Loads snapshot as compact graph
+     * @param file Snapshot file
+     * @param memory Memory for entity columns and for entities, links and strings added after loading
+     * @return Graph store
+     * @throws IOException if the file is not a valid snapshot
+     */
+    public static CompactGraphStore load(File file, GraphMemory memory) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a graph snapshot");
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot");
+            }
+
+            int version = header.getInt();
+
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported snapshot version %d", version));
+            }
+
+            int largestId = header.getInt();
+            int entityCount = header.getInt();
+            int linkCount = header.getInt();
+            int stringCount = header.getInt();
+            long stringBytes = header.getLong();
+
+            long expectedSize = HEADER_BYTES + Integer.BYTES * (5L * entityCount + 2 + 2L * linkCount)
+                    + stringBytes + Long.BYTES * (stringCount + 1L);
+
+            if (channel.size() != expectedSize) {
+                throw new IOException(String.format("Snapshot size %d does not match expected size %d",
+                        channel.size(), expectedSize));
+            }
+
+            Sections sections = new Sections(channel);
+
+            IntBuffer idColumn = sections.ints(entityCount);
+            IntBuffer nameColumn = sections.ints(entityCount);
+            IntBuffer descriptionColumn = sections.ints(entityCount);
+
+            // Entity columns grow when entities are added, so they are copied to memory
+            IntIntMap indexById = new IntIntMap(entityCount, memory);
+            IntArray ids = memory.allocate(entityCount);
+            IntArray nameRefs = memory.allocate(entityCount);
+            IntArray descriptionRefs = memory.allocate(entityCount);
+
+            for (int i = 0; i < entityCount; i++) {
+                indexById.put(idColumn.get(i), i);
+                ids.add(idColumn.get(i));
+                nameRefs.add(nameColumn.get(i));
+                descriptionRefs.add(descriptionColumn.get(i));
+            }
+
+            IntArray outOffsets = new MappedIntArray(sections.ints(entityCount + 1));
+            IntArray outTargets = new MappedIntArray(sections.ints(linkCount));
+            IntArray inOffsets = new MappedIntArray(sections.ints(entityCount + 1));
+            IntArray inTargets = new MappedIntArray(sections.ints(linkCount));
+
+            List<ByteBuffer> windows = sections.windows(stringBytes);
+            LongBuffer stringOffsets = sections.map(Long.BYTES * (stringCount + 1L)).asLongBuffer();
+
+            StringTable strings = new SnapshotStringTable(windows, STRING_WINDOW_BYTES, stringOffsets, memory.newStringTable());
+
+            return new CompactGraphStore(memory, indexById, ids, nameRefs, descriptionRefs, strings,
+                    outOffsets, outTargets, inOffsets, inTargets, largestId);
+        }
+    }
+
+    /**
+     * Writes CSR adjacency of outgoing or incoming links, neighbours are written as entity indices
+     * @return Number of links
+     */
+    private static int writeAdjacency(Output out, GraphStore store, IntList ids, IntIntMap indexById,
+                                      boolean outgoing) throws IOException {
+
+        IntList neighbours = new IntList();
+        int offset = 0;
+
+        out.writeInt(offset);
+
+        for (int i = 0; i < ids.size(); i++) {
+            neighbours.clear();
+            copyNeighbourIndices(store, i, ids, indexById, neighbours, outgoing);
+            offset += neighbours.size();
+            out.writeInt(offset);
+        }
+
+        for (int i = 0; i < ids.size(); i++) {
+
+            neighbours.clear();
+            copyNeighbourIndices(store, i, ids, indexById, neighbours, outgoing);
+
+            for (int j = 0; j < neighbours.size(); j++) {
+                out.writeInt(neighbours.get(j));
+            }
+        }
+
+        return offset;
+    }
+
+    private static void copyNeighbourIndices(GraphStore store, int index, IntList ids, IntIntMap indexById,
+                                             IntList target, boolean outgoing) {
+
+        // Entity cursor of compact store follows its indices, so they are written as they are
+        if (indexById == null) {
+
+            CompactGraphStore compactStore = (CompactGraphStore) store;
+
+            if (outgoing) {
+                compactStore.copyOutgoingIndices(index, target);
+            } else {
+                compactStore.copyIncomingIndices(index, target);
+            }
+            return;
+        }
+
+        int start = target.size();
+
+        if (outgoing) {
+            store.copyOutgoing(ids.get(index), target);
+        } else {
+            store.copyIncoming(ids.get(index), target);
+        }
+
+        for (int i = start; i < target.size(); i++) {
+            target.set(i, indexById.get(target.get(i), -1));
+        }
+    }
+
+    /**
+     * Check whether entity indices of the store can be written as they are
+     */
+    private static boolean isDense(GraphStore store) {
+        return store instanceof CompactGraphStore && ((CompactGraphStore) store).isDense();
+    }
+
+    private static void writeInts(Output out, IntList values) throws IOException {
+
+        for (int i = 0; i < values.size(); i++) {
+            out.writeInt(values.get(i));
+        }
+    }
+
+    /**
+     * Buffered big endian output to the snapshot channel
+     */
+    private static class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void write(byte[] bytes) throws IOException {
+
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRemaining(1);
+                int count = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        void flush() throws IOException {
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Maps consecutive sections of the snapshot
+     */
+    private static class Sections {
+
+        private final FileChannel channel;
+        private long position = HEADER_BYTES;
+
+        Sections(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        IntBuffer ints(int count) throws IOException {
+            return map(Integer.BYTES * (long) count).asIntBuffer();
+        }
+
+        ByteBuffer map(long size) throws IOException {
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot section larger than 2 GB is not supported");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+
+            return buffer;
+        }
+
+        /**
+         * Maps section of any size in windows of {@link #STRING_WINDOW_BYTES}
+         */
+        List<ByteBuffer> windows(long size) throws IOException {
+
+            List<ByteBuffer> windows = new ArrayList<>();
+
+            for (long start = 0; start < size; start += STRING_WINDOW_BYTES) {
+                windows.add(map(Math.min(STRING_WINDOW_BYTES, size - start)));
+            }
+
+            return windows;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package app.store;
+
+import app.util.IntList;
+
+/**
+ * Storage of the entity graph. Entities are addressed by their IDs, links by their position
+ * in the order they were added.
+ * <p>
+ * Stores are not synchronized. Several threads may read a store as long as nothing is added to it meanwhile.
+ */
+public interface GraphStore {
+
+    /**
+     * Get largest entity ID in the graph
+     * @return Largest ID
+     */
+    int getLargestId();
+
+    int getEntityCount();
+
+    int getLinkCount();
+
+    boolean containsEntity(int id);
+
+    /**
+     * Get entity name
+     * @param id Entity ID
+     * @return Name or null if entity has no name
+     */
+    String getName(int id);
+
+    /**
+     * Get entity description
+     * @param id Entity ID
+     * @return Description or null if entity has no description
+     */
+    String getDescription(int id);
+
+    /**
+     * Appends IDs of entities this entity links to, in order in which links were added
+     * @param id Entity ID
+     * @param target List to append IDs to
+     */
+    void copyOutgoing(int id, IntList target);
+
+    /**
+     * Appends IDs of entities that link to this entity, in order in which links were added
+     * @param id Entity ID
+     * @param target List to append IDs to
+     */
+    void copyIncoming(int id, IntList target);
+
+    /**
+     * Adds entity, updating largest ID if needed. If entity with the ID exists, only its name and
+     * description are replaced, its links are kept.
+     * @param id Entity ID
+     * @param name Entity name, may be null
+     * @param description Entity description, may be null
+     */
+    void addEntity(int id, String name, String description);
+
+    /**
+     * Adds entity with name and description of another entity, updating largest ID if needed.
+     * The new entity references the same strings as the source instead of copies, so a clone costs little more
+     * than its links. Replacing name or description of either entity with {@link #addEntity} does not change the other.
+     * @param id ID of the new entity
+     * @param sourceId ID of existing entity to copy name and description from
+     */
+    void addEntityCopy(int id, int sourceId);
+
+    /**
+     * Adds link between two existing entities
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     */
+    void addLink(int from, int to);
+
+    /**
+     * Removes one link between the entities, positions of links after it move back by one
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     * @return true if link was found
+     * @throws IllegalArgumentException if any of the entities does not exist
+     */
+    boolean removeLink(int from, int to);
+
+    /**
+     * Removes entity and all links from and to it. If it had the largest ID, largest ID is
+     * the largest of the remaining entities.
+     * @param id Entity ID
+     * @return true if entity was found
+     */
+    boolean removeEntity(int id);
+
+    /**
+     * Finishes removals made since the last call, e.g. drops removed links from link list and finds the largest ID
+     * again. Must be called after removals, before the store is read. Reads do not modify the store.
+     */
+    void applyRemovals();
+
+    /**
+     * Get cursor over all entities
+     * @return Entity cursor
+     */
+    EntityCursor entityCursor();
+
+    /**
+     * Get cursor over links starting from link at given position. Links added after the store was
+     * loaded are always positioned after the loaded ones, in order in which they were added.
+     * @param fromIndex Position of the first link
+     * @return Link cursor
+     */
+    LinkCursor linkCursor(int fromIndex);
+}
@@ -0,0 +1,20 @@
+package app.store;
+
+import app.util.IntArray;
+import app.util.IntList;
+
+/**
+ * Graph memory on the Java heap
+ */
+public class HeapMemory implements GraphMemory {
+
+    @Override
+    public IntArray allocate(int initialCapacity) {
+        return new IntList(initialCapacity);
+    }
+
+    @Override
+    public StringTable newStringTable() {
+        return new HeapStringTable();
+    }
+}
@@ -0,0 +1,29 @@
+package app.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * String table that keeps strings on heap, reference is position in the table
+ */
+public class HeapStringTable implements StringTable {
+
+    private final List<String> strings = new ArrayList<>();
+
+    @Override
+    public int add(String value) {
+
+        if (value == null) {
+            return NULL_REF;
+        }
+
+        strings.add(value);
+
+        return strings.size() - 1;
+    }
+
+    @Override
+    public String get(int ref) {
+        return ref == NULL_REF ? null : strings.get(ref);
+    }
+}
@@ -0,0 +1,17 @@
+package app.store;
+
+/**
+ * Forward only cursor over links of {@link GraphStore}
+ */
+public interface LinkCursor {
+
+    /**
+     * Moves to the next link
+     * @return false if there are no more links
+     */
+    boolean next();
+
+    int from();
+
+    int to();
+}
@@ -0,0 +1,138 @@
+package app.store;
+
+import app.util.IntList;
+import app.util.LongHashSet;
+import parser.ParsingSink;
+
+/**
+ * Set of links of a graph without duplicates, each link is packed into a long in a primitive hash set,
+ * so whether a link exists is known in O(1) without looking at adjacency.
+ */
+public class LinkIndex {
+
+    private final LongHashSet links;
+    private long droppedLinks;
+
+    public LinkIndex() {
+        this(16);
+    }
+
+    public LinkIndex(int expectedSize) {
+        this.links = new LongHashSet(expectedSize);
+    }
+
+    /**
+     * Indexes links of the store and removes duplicate links from it, one link of each pair of entities is kept
+     * @param store Graph store
+     * @return Index
+     */
+    public static LinkIndex build(GraphStore store) {
+
+        LinkIndex index = new LinkIndex(store.getLinkCount());
+        IntList duplicates = new IntList();
+
+        LinkCursor cursor = store.linkCursor(0);
+        while (cursor.next()) {
+            if (!index.add(cursor.from(), cursor.to())) {
+                duplicates.add(cursor.from());
+                duplicates.add(cursor.to());
+            }
+        }
+
+        for (int i = 0; i < duplicates.size(); i += 2) {
+            store.removeLink(duplicates.get(i), duplicates.get(i + 1));
+        }
+
+        store.applyRemovals();
+
+        return index;
+    }
+
+    /**
+     * Adds the link
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     * @return false if the link was already indexed
+     */
+    public boolean add(int from, int to) {
+        return links.add(pack(from, to));
+    }
+
+    public boolean contains(int from, int to) {
+        return links.contains(pack(from, to));
+    }
+
+    /**
+     * Removes the link
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     * @return false if the link was not indexed
+     */
+    public boolean remove(int from, int to) {
+        return links.remove(pack(from, to));
+    }
+
+    /**
+     * Removes all links from and to the entity, call before the entity is removed from the store
+     * @param store Graph store
+     * @param id Entity ID
+     */
+    public void removeEntity(GraphStore store, int id) {
+
+        IntList neighbours = new IntList();
+
+        store.copyOutgoing(id, neighbours);
+        for (int i = 0; i < neighbours.size(); i++) {
+            remove(id, neighbours.get(i));
+        }
+
+        neighbours.clear();
+        store.copyIncoming(id, neighbours);
+        for (int i = 0; i < neighbours.size(); i++) {
+            remove(neighbours.get(i), id);
+        }
+    }
+
+    /**
+     * @return Number of indexed links
+     */
+    public int size() {
+        return links.size();
+    }
+
+    /**
+     * Wraps the sink so that only the first occurrence of each link reaches it, links passed to it are indexed
+     * @param sink Sink receiving entities and distinct links
+     * @return Deduplicating sink
+     */
+    public ParsingSink deduplicate(ParsingSink sink) {
+
+        return new ParsingSink() {
+
+            @Override
+            public void addEntity(int id, String name, String description) {
+                sink.addEntity(id, name, description);
+            }
+
+            @Override
+            public void addLink(int from, int to) {
+                if (add(from, to)) {
+                    sink.addLink(from, to);
+                } else {
+                    droppedLinks++;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return Number of duplicate links dropped by sinks of {@link #deduplicate(ParsingSink)}
+     */
+    public long getDroppedLinks() {
+        return droppedLinks;
+    }
+
+    static long pack(int from, int to) {
+        return (long) from << 32 | to & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,47 @@
+package app.store;
+
+import app.util.IntArray;
+
+import java.nio.IntBuffer;
+
+/**
+ * Read only int array over a region of a memory mapped file
+ */
+class MappedIntArray implements IntArray {
+
+    private final IntBuffer buffer;
+
+    MappedIntArray(IntBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int get(int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        throw new UnsupportedOperationException("Mapped array is read only");
+    }
+
+    @Override
+    public void add(int value) {
+        throw new UnsupportedOperationException("Mapped array is read only");
+    }
+
+    @Override
+    public int size() {
+        return buffer.limit();
+    }
+
+    @Override
+    public void resize(int newSize) {
+        throw new UnsupportedOperationException("Mapped array is read only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Mapped array is read only");
+    }
+}
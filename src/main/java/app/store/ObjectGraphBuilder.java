@@ -0,0 +1,114 @@
+package app.store;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.model.Entity;
+import app.model.Link;
+import parser.ParsingSink;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link ObjectGraphStore} while entities and links are parsed. Links are resolved to entities in batches
+ * as they come, so no pass over all links is left after parsing when entities come first in the file. Link to
+ * an entity not parsed yet, and every link after it, is resolved by {@link #build()}, so links of each entity
+ * keep file order wherever the links array is.
+ */
+public class ObjectGraphBuilder implements ParsingSink {
+
+    /**
+     * Lookups of a tight loop overlap their cache misses, lookups between parsed links do not
+     */
+    private static final int RESOLVE_BATCH = 4096;
+
+    private final Map<Integer, Entity> entityMap = new HashMap<>();
+    private final List<Link> links = new ArrayList<>();
+    private int largestId;
+
+    /**
+     * Number of links resolved while parsing
+     */
+    private int resolvedLinks;
+
+    /**
+     * Whether a link was found to an entity not parsed yet
+     */
+    private boolean deferred;
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        Entity entity = entityMap.get(id);
+
+        // Entity with the same ID replaces attributes of the previous one, links resolved to it stay
+        if (entity == null) {
+            entity = new Entity();
+            entity.setId(id);
+            entityMap.put(id, entity);
+        }
+
+        entity.setName(name);
+        entity.setDescription(description);
+
+        if (id > largestId) {
+            largestId = id;
+        }
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+
+        links.add(new Link(from, to));
+
+        if (!deferred && links.size() - resolvedLinks >= RESOLVE_BATCH) {
+
+            for (int i = resolvedLinks; i < links.size(); i++) {
+
+                Link link = links.get(i);
+                Entity fromEntity = entityMap.get(link.getFrom());
+                Entity toEntity = entityMap.get(link.getTo());
+
+                if (fromEntity == null || toEntity == null) {
+                    deferred = true;
+                    return;
+                }
+
+                fromEntity.getToEntities().add(toEntity);
+                toEntity.getFromEntities().add(fromEntity);
+                resolvedLinks = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Resolves links not resolved while parsing and builds the graph
+     * @return Graph store
+     * @throws InvalidEntityLinkException if a link references missing entity
+     */
+    public ObjectGraphStore build() throws InvalidEntityLinkException {
+
+        for (int i = resolvedLinks; i < links.size(); i++) {
+
+            Link link = links.get(i);
+            Entity fromEntity = entityMap.get(link.getFrom());
+            Entity toEntity = entityMap.get(link.getTo());
+
+            if (fromEntity == null) {
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+            }
+
+            if (toEntity == null) {
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+            }
+
+            fromEntity.getToEntities().add(toEntity);
+            toEntity.getFromEntities().add(fromEntity);
+        }
+
+        resolvedLinks = links.size();
+
+        return new ObjectGraphStore(entityMap, links, largestId);
+    }
+}
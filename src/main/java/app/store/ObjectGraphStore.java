@@ -0,0 +1,349 @@
+package app.store;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.model.Entity;
+import app.model.Link;
+import app.util.IntList;
+import parser.ParsingResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graph store backed by {@link Entity} objects that reference each other directly.
+ * <p>
+ * Removed links are dropped from entities at once and from the link list in one pass when the list is next read,
+ * so removing many links costs one pass over the list.
+ */
+public class ObjectGraphStore implements GraphStore {
+
+    private final Map<Integer, Entity> entityMap;
+    private final List<Link> links;
+
+    /**
+     * Number of removed links not yet dropped from the link list, by link
+     */
+    private final Map<Link, Integer> removedLinks = new HashMap<>();
+    private int removedLinkCount;
+    private int largestId;
+
+    /**
+     * Largest ID has to be found again, entity with it was removed
+     */
+    private boolean largestIdRemoved;
+
+    /**
+     * Creates empty graph
+     */
+    public ObjectGraphStore() {
+        entityMap = new HashMap<>();
+        links = new ArrayList<>();
+    }
+
+    /**
+     * Builds graph from parsed entities and links
+     * @param result Parsing result
+     * @throws InvalidEntityLinkException if a link references missing entity
+     */
+    public ObjectGraphStore(ParsingResult result) throws InvalidEntityLinkException {
+
+        entityMap = result.getEntities();
+        links = result.getLinks();
+        largestId = result.getLargestId();
+
+        verifyAndBuildGraph();
+    }
+
+    /**
+     * Creates graph of entities that already reference each other, see {@link ObjectGraphBuilder}
+     */
+    ObjectGraphStore(Map<Integer, Entity> entityMap, List<Link> links, int largestId) {
+        this.entityMap = entityMap;
+        this.links = links;
+        this.largestId = largestId;
+    }
+
+    /**
+     * Find entity by its ID
+     * @param id ID of the entity
+     * @return Entity or null if not found
+     */
+    public Entity findEntity(int id) {
+        return entityMap.get(id);
+    }
+
+    public Map<Integer, Entity> getEntityMap() {
+        return entityMap;
+    }
+
+    public List<Link> getLinks() {
+        requireRemovalsApplied();
+        return links;
+    }
+
+    @Override
+    public int getLargestId() {
+        requireRemovalsApplied();
+        return largestId;
+    }
+
+    @Override
+    public int getEntityCount() {
+        return entityMap.size();
+    }
+
+    @Override
+    public int getLinkCount() {
+        return links.size() - removedLinkCount;
+    }
+
+    @Override
+    public boolean containsEntity(int id) {
+        return entityMap.containsKey(id);
+    }
+
+    @Override
+    public String getName(int id) {
+        return entityMap.get(id).getName();
+    }
+
+    @Override
+    public String getDescription(int id) {
+        return entityMap.get(id).getDescription();
+    }
+
+    @Override
+    public void copyOutgoing(int id, IntList target) {
+        for (Entity e : entityMap.get(id).getToEntities()) {
+            target.add(e.getId());
+        }
+    }
+
+    @Override
+    public void copyIncoming(int id, IntList target) {
+        for (Entity e : entityMap.get(id).getFromEntities()) {
+            target.add(e.getId());
+        }
+    }
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        Entity entity = entityMap.get(id);
+
+        if (entity == null) {
+            entity = new Entity();
+            entity.setId(id);
+            entityMap.put(id, entity);
+        }
+
+        entity.setName(name);
+        entity.setDescription(description);
+
+        if (id > largestId) {
+            largestId = id;
+        }
+    }
+
+    @Override
+    public boolean removeLink(int from, int to) {
+
+        Entity fromEntity = entity(from);
+        Entity toEntity = entity(to);
+
+        if (!fromEntity.getToEntities().remove(toEntity)) {
+            return false;
+        }
+
+        toEntity.getFromEntities().remove(fromEntity);
+        markRemoved(from, to);
+
+        return true;
+    }
+
+    @Override
+    public boolean removeEntity(int id) {
+
+        Entity entity = entityMap.remove(id);
+
+        if (entity == null) {
+            return false;
+        }
+
+        // Links to itself are in both lists, they are counted once, from the outgoing side
+        for (Entity to : entity.getToEntities()) {
+            if (to != entity) {
+                to.getFromEntities().remove(entity);
+            }
+            markRemoved(id, to.getId());
+        }
+
+        for (Entity from : entity.getFromEntities()) {
+            if (from != entity) {
+                from.getToEntities().remove(entity);
+                markRemoved(from.getId(), id);
+            }
+        }
+
+        largestIdRemoved |= id == largestId;
+
+        return true;
+    }
+
+    /**
+     * Drops removed links from the link list, first occurrences of duplicate links are dropped, and finds
+     * the largest ID again if the entity with it was removed
+     */
+    @Override
+    public void applyRemovals() {
+
+        if (largestIdRemoved) {
+            largestId = 0;
+            for (int id : entityMap.keySet()) {
+                largestId = Math.max(largestId, id);
+            }
+            largestIdRemoved = false;
+        }
+
+        if (removedLinkCount == 0) {
+            return;
+        }
+
+        links.removeIf(link -> {
+            Integer count = removedLinks.get(link);
+            if (count == null) {
+                return false;
+            }
+            if (count == 1) {
+                removedLinks.remove(link);
+            } else {
+                removedLinks.put(link, count - 1);
+            }
+            return true;
+        });
+
+        removedLinkCount = 0;
+    }
+
+    @Override
+    public void addEntityCopy(int id, int sourceId) {
+        Entity source = entityMap.get(sourceId);
+        addEntity(id, source.getName(), source.getDescription());
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+
+        Entity fromEntity = entityMap.get(from);
+        Entity toEntity = entityMap.get(to);
+
+        fromEntity.getToEntities().add(toEntity);
+        toEntity.getFromEntities().add(fromEntity);
+
+        links.add(new Link(from, to));
+    }
+
+    @Override
+    public EntityCursor entityCursor() {
+
+        Iterator<Entity> iterator = entityMap.values().iterator();
+
+        return new EntityCursor() {
+
+            private Entity current;
+
+            @Override
+            public boolean next() {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return current != null;
+            }
+
+            @Override
+            public int id() {
+                return current.getId();
+            }
+
+            @Override
+            public String name() {
+                return current.getName();
+            }
+
+            @Override
+            public String description() {
+                return current.getDescription();
+            }
+        };
+    }
+
+    @Override
+    public LinkCursor linkCursor(int fromIndex) {
+
+        requireRemovalsApplied();
+
+        return new LinkCursor() {
+
+            private int index = fromIndex - 1;
+
+            @Override
+            public boolean next() {
+                return ++index < links.size();
+            }
+
+            @Override
+            public int from() {
+                return links.get(index).getFrom();
+            }
+
+            @Override
+            public int to() {
+                return links.get(index).getTo();
+            }
+        };
+    }
+
+    private Entity entity(int id) {
+
+        Entity entity = entityMap.get(id);
+
+        if (entity == null) {
+            throw new IllegalArgumentException(String.format("No entity found with ID %d", id));
+        }
+
+        return entity;
+    }
+
+    private void markRemoved(int from, int to) {
+        removedLinks.merge(new Link(from, to), 1, Integer::sum);
+        removedLinkCount++;
+    }
+
+    private void requireRemovalsApplied() {
+        if (removedLinkCount > 0 || largestIdRemoved) {
+            throw new IllegalStateException("Removals are not applied");
+        }
+    }
+
+    /**
+     * Verify that links correspond to existing entities
+     * @throws InvalidEntityLinkException
+     */
+    private void verifyAndBuildGraph() throws InvalidEntityLinkException {
+
+        for(Link link : links) {
+
+            if(!entityMap.containsKey(link.getFrom())){
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+            }
+
+            if(!entityMap.containsKey(link.getTo())){
+                throw new InvalidEntityLinkException(String.format("No entity found with ID %d", link.getFrom()));
+            }
+
+            entityMap.get(link.getFrom()).getToEntities().add(entityMap.get(link.getTo()));
+            entityMap.get(link.getTo()).getFromEntities().add(entityMap.get(link.getFrom()));
+        }
+    }
+}
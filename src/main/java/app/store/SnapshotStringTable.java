@@ -0,0 +1,70 @@
+package app.store;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * String table of a loaded snapshot. Strings of the snapshot are decoded from the mapped file on access,
+ * strings added later go to an overlay table and get references following the snapshot strings.
+ */
+class SnapshotStringTable implements StringTable {
+
+    private final List<ByteBuffer> windows;
+    private final long windowBytes;
+    private final LongBuffer offsets;
+    private final int snapshotCount;
+    private final StringTable overlay;
+
+    /**
+     * @param windows Mapped windows of the string bytes, each except the last one windowBytes long
+     * @param windowBytes Size of a window
+     * @param offsets Start of each string in string bytes followed by the end of the last string
+     * @param overlay Table for strings added after loading
+     */
+    SnapshotStringTable(List<ByteBuffer> windows, long windowBytes, LongBuffer offsets, StringTable overlay) {
+        this.windows = windows;
+        this.windowBytes = windowBytes;
+        this.offsets = offsets;
+        this.snapshotCount = offsets.limit() - 1;
+        this.overlay = overlay;
+    }
+
+    @Override
+    public int add(String value) {
+
+        int ref = overlay.add(value);
+
+        return ref == NULL_REF ? NULL_REF : snapshotCount + ref;
+    }
+
+    @Override
+    public String get(int ref) {
+
+        if (ref == NULL_REF) {
+            return null;
+        }
+
+        if (ref >= snapshotCount) {
+            return overlay.get(ref - snapshotCount);
+        }
+
+        long start = offsets.get(ref);
+        byte[] bytes = new byte[(int) (offsets.get(ref + 1) - start)];
+
+        // String may continue in the next window
+        for (int copied = 0; copied < bytes.length; ) {
+
+            long position = start + copied;
+            ByteBuffer window = windows.get((int) (position / windowBytes)).duplicate();
+            window.position((int) (position % windowBytes));
+
+            int count = Math.min(bytes.length - copied, window.remaining());
+            window.get(bytes, copied, count);
+            copied += count;
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
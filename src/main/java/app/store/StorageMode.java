@@ -0,0 +1,23 @@
+package app.store;
+
+/**
+ * Graph representation used by {@link app.App}
+ */
+public enum StorageMode {
+
+    /**
+     * Graph of {@link app.model.Entity} and {@link app.model.Link} objects
+     */
+    OBJECT,
+
+    /**
+     * Primitive arrays with CSR adjacency, see {@link CompactGraphStore}
+     */
+    COMPACT,
+
+    /**
+     * Same layout as {@link #COMPACT}, kept in memory mapped scratch files outside of the Java heap,
+     * see {@link app.store.offheap.OffHeapMemory}
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,26 @@
+package app.store;
+
+/**
+ * Append only table of strings referenced by int handles
+ */
+public interface StringTable {
+
+    /**
+     * Reference of null string
+     */
+    int NULL_REF = -1;
+
+    /**
+     * Adds string to the table
+     * @param value String, may be null
+     * @return Reference to the string, {@link #NULL_REF} for null
+     */
+    int add(String value);
+
+    /**
+     * Get string by reference
+     * @param ref Reference returned by {@link #add(String)}
+     * @return String or null for {@link #NULL_REF}
+     */
+    String get(int ref);
+}
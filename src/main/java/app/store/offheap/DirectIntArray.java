@@ -0,0 +1,87 @@
+package app.store.offheap;
+
+import app.util.IntArray;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Int array split into off heap chunks, growing never copies existing elements
+ */
+class DirectIntArray implements IntArray {
+
+    private final OffHeapMemory memory;
+    private final int shift;
+    private final int mask;
+
+    private IntBuffer[] chunks = new IntBuffer[0];
+    private int size;
+
+    DirectIntArray(OffHeapMemory memory) {
+        int chunkInts = memory.getChunkBytes() / Integer.BYTES;
+        this.memory = memory;
+        this.shift = Integer.numberOfTrailingZeros(chunkInts);
+        this.mask = chunkInts - 1;
+    }
+
+    @Override
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        return chunks[index >>> shift].get(index & mask);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        chunks[index >>> shift].put(index & mask, value);
+    }
+
+    @Override
+    public void add(int value) {
+        ensureCapacity(size + 1);
+        chunks[size >>> shift].put(size & mask, value);
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void resize(int newSize) {
+
+        ensureCapacity(newSize);
+
+        // Chunks are zero when allocated, elements dropped by shrinking must be cleared for later growth
+        for (int i = newSize; i < size; i++) {
+            chunks[i >>> shift].put(i & mask, 0);
+        }
+
+        size = newSize;
+    }
+
+    @Override
+    public void clear() {
+        resize(0);
+    }
+
+    private void ensureCapacity(int capacity) {
+
+        int needed = capacity == 0 ? 0 : ((capacity - 1) >>> shift) + 1;
+
+        if (needed > chunks.length) {
+
+            int oldLength = chunks.length;
+            chunks = Arrays.copyOf(chunks, needed);
+
+            for (int i = oldLength; i < needed; i++) {
+                chunks[i] = memory.allocateChunk().asIntBuffer();
+            }
+        }
+    }
+}
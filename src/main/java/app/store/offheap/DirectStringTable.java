@@ -0,0 +1,77 @@
+package app.store.offheap;
+
+import app.store.StringTable;
+import app.util.IntArray;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * String table that keeps UTF-8 encoded strings in off heap chunks. Each string is stored as its
+ * length followed by its bytes and never spans two chunks, strings larger than a chunk get their own chunk.
+ */
+class DirectStringTable implements StringTable {
+
+    private final OffHeapMemory memory;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Chunk and offset of each string, two ints per string
+     */
+    private final IntArray positions;
+
+    private ByteBuffer current;
+
+    DirectStringTable(OffHeapMemory memory) {
+        this.memory = memory;
+        this.positions = new DirectIntArray(memory);
+    }
+
+    @Override
+    public int add(String value) {
+
+        if (value == null) {
+            return NULL_REF;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int recordSize = Integer.BYTES + bytes.length;
+
+        if (current == null || current.remaining() < recordSize) {
+            current = memory.allocateChunk(Math.max(memory.getChunkBytes(), recordSize));
+            chunks.add(current);
+        }
+
+        int ref = positions.size() / 2;
+
+        positions.add(chunks.size() - 1);
+        positions.add(current.position());
+
+        current.putInt(bytes.length);
+        current.put(bytes);
+
+        return ref;
+    }
+
+    @Override
+    public String get(int ref) {
+
+        if (ref == NULL_REF) {
+            return null;
+        }
+
+        ByteBuffer chunk = chunks.get(positions.get(ref * 2));
+        int offset = positions.get(ref * 2 + 1);
+        int length = chunk.getInt(offset);
+
+        byte[] bytes = new byte[length];
+
+        ByteBuffer view = chunk.duplicate();
+        view.position(offset + Integer.BYTES);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,112 @@
+package app.store.offheap;
+
+import app.store.GraphMemory;
+import app.store.StringTable;
+import app.util.IntArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Graph memory outside of the Java heap. Memory is handed out in fixed size chunks that are either
+ * direct byte buffers or regions of a memory mapped scratch file.
+ * <p>
+ * Direct buffers count against -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * Mapped scratch files are limited only by disk space and address space, so they allow running
+ * with a small heap on inputs larger than physical memory. Scratch file is unlinked right after
+ * it is created where the operating system allows it, otherwise it is deleted on exit.
+ */
+public class OffHeapMemory implements GraphMemory {
+
+    private static final int DIRECT_CHUNK_BYTES = 1 << 18;
+    private static final int MAPPED_CHUNK_BYTES = 1 << 22;
+
+    private final FileChannel scratch;
+    private final int chunkBytes;
+    private long scratchSize;
+
+    private OffHeapMemory(FileChannel scratch, int chunkBytes) {
+        this.scratch = scratch;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Creates memory backed by direct byte buffers
+     * @return Off heap memory
+     */
+    public static OffHeapMemory direct() {
+        return new OffHeapMemory(null, DIRECT_CHUNK_BYTES);
+    }
+
+    /**
+     * Creates memory backed by memory mapped scratch file
+     * @param directory Directory for the scratch file
+     * @return Off heap memory
+     * @throws IOException if scratch file cannot be created
+     */
+    public static OffHeapMemory mapped(File directory) throws IOException {
+
+        File file = File.createTempFile("graph", ".scratch", directory);
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+
+        return new OffHeapMemory(channel, MAPPED_CHUNK_BYTES);
+    }
+
+    @Override
+    public IntArray allocate(int initialCapacity) {
+        return new DirectIntArray(this);
+    }
+
+    @Override
+    public StringTable newStringTable() {
+        return new DirectStringTable(this);
+    }
+
+    /**
+     * Get size of chunks returned by {@link #allocateChunk()}
+     * @return Chunk size in bytes, power of two
+     */
+    int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Allocates chunk of default size
+     * @return Zero filled buffer in native byte order
+     */
+    ByteBuffer allocateChunk() {
+        return allocateChunk(chunkBytes);
+    }
+
+    /**
+     * Allocates chunk of given size
+     * @param bytes Size in bytes
+     * @return Zero filled buffer in native byte order
+     */
+    synchronized ByteBuffer allocateChunk(int bytes) {
+
+        ByteBuffer buffer;
+
+        if (scratch == null) {
+            buffer = ByteBuffer.allocateDirect(bytes);
+        } else {
+            try {
+                buffer = scratch.map(FileChannel.MapMode.READ_WRITE, scratchSize, bytes);
+                scratchSize += bytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not extend scratch file", e);
+            }
+        }
+
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+}
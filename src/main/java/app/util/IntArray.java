@@ -0,0 +1,23 @@
+package app.util;
+
+/**
+ * Growable sequence of ints addressed by index, implementations may keep elements on or off heap
+ */
+public interface IntArray {
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    void add(int value);
+
+    int size();
+
+    /**
+     * Changes size of the array, new elements are zero
+     * @param newSize New size
+     */
+    void resize(int newSize);
+
+    void clear();
+}
@@ -0,0 +1,19 @@
+package app.util;
+
+/**
+ * Creates empty int arrays
+ */
+public interface IntArrayAllocator {
+
+    /**
+     * Allocator of on heap {@link IntList}
+     */
+    IntArrayAllocator HEAP = IntList::new;
+
+    /**
+     * Creates empty array
+     * @param initialCapacity Expected number of elements
+     * @return Empty array
+     */
+    IntArray allocate(int initialCapacity);
+}
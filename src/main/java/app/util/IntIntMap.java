@@ -0,0 +1,172 @@
+package app.util;
+
+/**
+ * Open addressing hash map with primitive int keys and values.
+ * Avoids boxing and per-entry objects of {@link java.util.HashMap}, lookups are O(1) on average.
+ * Tables are created by {@link IntArrayAllocator}, so the map can be kept off heap.
+ */
+public class IntIntMap {
+
+    private static final int FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final IntArrayAllocator allocator;
+
+    private IntArray keys;
+    private IntArray values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    /**
+     * Key 0 marks free slots, so its value is kept aside
+     */
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        this(expectedSize, IntArrayAllocator.HEAP);
+    }
+
+    public IntIntMap(int expectedSize, IntArrayAllocator allocator) {
+        this.allocator = allocator;
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Get value mapped to the key
+     * @param key Key
+     * @param defaultValue Value to return if key is not present
+     * @return Mapped value or defaultValue
+     */
+    public int get(int key, int defaultValue) {
+
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+
+        int slot = slot(key);
+
+        int current;
+
+        while ((current = keys.get(slot)) != FREE_KEY) {
+            if (current == key) {
+                return values.get(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        int slot = slot(key);
+
+        int current;
+
+        while ((current = keys.get(slot)) != FREE_KEY) {
+            if (current == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Maps key to the value, replacing previous mapping
+     * @param key Key
+     * @param value Value
+     */
+    public void put(int key, int value) {
+
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return;
+        }
+
+        int slot = slot(key);
+
+        int current;
+
+        while ((current = keys.get(slot)) != FREE_KEY) {
+            if (current == key) {
+                values.set(slot, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys.set(slot, key);
+        values.set(slot, value);
+
+        if (++size > threshold) {
+            rehash(keys.size() * 2);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(keys.size());
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void rehash(int capacity) {
+
+        IntArray oldKeys = keys;
+        IntArray oldValues = values;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.size(); i++) {
+
+            int key = oldKeys.get(i);
+
+            if (key != FREE_KEY) {
+                int slot = slot(key);
+                while (keys.get(slot) != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.set(slot, key);
+                values.set(slot, oldValues.get(i));
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = allocator.allocate(capacity);
+        keys.resize(capacity);
+        values = allocator.allocate(capacity);
+        values.resize(capacity);
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSize(int expectedSize) {
+        long needed = Math.max(4, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+}
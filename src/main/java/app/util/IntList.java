@@ -0,0 +1,96 @@
+package app.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints
+ */
+public class IntList implements IntArray {
+
+    private int[] elements;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        elements = new int[Math.max(1, initialCapacity)];
+    }
+
+    @Override
+    public void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[size++] = value;
+    }
+
+    @Override
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        return elements[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        elements[index] = value;
+    }
+
+    /**
+     * Removes and returns the last element
+     * @return Last element
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        return elements[--size];
+    }
+
+    /**
+     * Drops elements at and above given size
+     * @param newSize New size, must not be larger than current size
+     */
+    public void truncate(int newSize) {
+        if (newSize > size) {
+            throw new IndexOutOfBoundsException(String.format("Size %d, new size %d", size, newSize));
+        }
+        size = newSize;
+    }
+
+    @Override
+    public void resize(int newSize) {
+
+        if (newSize > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(newSize, elements.length * 2));
+        } else if (newSize > size) {
+            Arrays.fill(elements, size, newSize, 0);
+        }
+
+        size = newSize;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,171 @@
+package app.util;
+
+/**
+ * Open addressing hash set of primitive longs with linear probing.
+ * Avoids boxing and per-entry objects of {@link java.util.HashSet}, operations are O(1) on average.
+ */
+public class LongHashSet {
+
+    private static final long FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    /**
+     * Key 0 marks free slots, so its presence is kept aside
+     */
+    private boolean hasFreeKey;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Adds the key
+     * @param key Key
+     * @return true if the key was not in the set
+     */
+    public boolean add(long key) {
+
+        if (key == FREE_KEY) {
+            if (hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = true;
+            size++;
+            return true;
+        }
+
+        int slot = slot(key);
+        long current;
+
+        while ((current = keys[slot]) != FREE_KEY) {
+            if (current == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+
+        if (++size > threshold) {
+            rehash(keys.length * 2);
+        }
+
+        return true;
+    }
+
+    public boolean contains(long key) {
+
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        int slot = slot(key);
+        long current;
+
+        while ((current = keys[slot]) != FREE_KEY) {
+            if (current == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes the key, keys after it in its probe sequence are shifted back, so no tombstones are left
+     * @param key Key
+     * @return true if the key was in the set
+     */
+    public boolean remove(long key) {
+
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+
+        int slot = slot(key);
+        long current;
+
+        while ((current = keys[slot]) != key) {
+            if (current == FREE_KEY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int free = slot;
+
+        for (int next = (free + 1) & mask; (current = keys[next]) != FREE_KEY; next = (next + 1) & mask) {
+
+            int home = slot(current);
+
+            // Key moves to the free slot unless its home lies cyclically in (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = current;
+                free = next;
+            }
+        }
+
+        keys[free] = FREE_KEY;
+        size--;
+
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(keys.length);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+
+        long[] oldKeys = keys;
+
+        allocate(capacity);
+
+        for (long key : oldKeys) {
+            if (key != FREE_KEY) {
+                int slot = slot(key);
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSize(int expectedSize) {
+        long needed = Math.max(4, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+}
@@ -17,9 +17,37 @@ import java.io.IOException;
 public class FileParser implements JsonFileParser {
 
     private String filePath;
+    private boolean mapped;
+    private StringPool stringPool;
 
     public FileParser(String filePath){
+        this(filePath, false);
+    }
+
+    /**
+     * @param filePath Path of the file
+     * @param mapped Read the file through memory mapping instead of read calls
+     */
+    public FileParser(String filePath, boolean mapped){
+        this(filePath, mapped, null);
+    }
+
+    /**
+     * @param filePath Path of the file
+     * @param mapped Read the file through memory mapping instead of read calls
+     * @param stringPool Pool for names and descriptions, null to create a string for every occurrence
+     */
+    public FileParser(String filePath, boolean mapped, StringPool stringPool){
         this.filePath = filePath;
+        this.mapped = mapped;
+        this.stringPool = stringPool;
+    }
+
+    /**
+     * @return Whether the file is read through memory mapping
+     */
+    boolean isMapped() {
+        return mapped;
     }
 
     /**
@@ -32,47 +60,71 @@ public class FileParser implements JsonFileParser {
     public ParsingResult parse() throws IOException, InvalidJsonFormatException {
 
         ParsingResult result = new ParsingResult();
+        parse(result);
+
+        return result;
+    }
+
+    /**
+     * Parses supplied file passing entities and links to the sink as they are parsed
+     * @param sink Receiver of parsed entities and links
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Override
+    public void parse(ParsingSink sink) throws IOException, InvalidJsonFormatException {
 
         JsonFactory factory = new JsonFactory();
-        JsonParser parser = factory.createParser(new File(filePath));
 
-        while (parser.nextToken() != JsonToken.END_OBJECT) {
+        // Parser closes the input, also when parsing fails
+        try (JsonParser parser = mapped
+                ? factory.createParser(new MappedFileInputStream(filePath))
+                : factory.createParser(new File(filePath))) {
 
-            String fieldName = parser.getCurrentName();
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
 
-            if(fieldName == null) {
-                continue;
-            }
+                String fieldName = parser.getCurrentName();
 
-            if(!fieldName.equals("entities") && !fieldName.equals("links")){
-                throw new InvalidJsonFormatException("entities or links fields not found");
-            }
+                if(fieldName == null) {
+                    continue;
+                }
+
+                if(!fieldName.equals("entities") && !fieldName.equals("links")){
+                    throw new InvalidJsonFormatException("entities or links fields not found");
+                }
 
-            if (fieldName.equals("entities")) {
-                parseEntities(parser, result);
-            } else {
-                parseLinks(parser, result);
+                if (fieldName.equals("entities")) {
+                    parseEntities(parser, sink::addEntity, stringPool);
+                } else {
+                    parseLinks(parser, sink::addLink);
+                }
             }
         }
-
-        parser.close();
-
-        return result;
     }
 
-    private void parseEntities(JsonParser parser, ParsingResult parsingResult) throws IOException, InvalidJsonFormatException {
+    /**
+     * Parses array of entities, parser must be positioned before the start of the array
+     * @param stringPool Pool for names and descriptions, may be null
+     */
+    static void parseEntities(JsonParser parser, EntityHandler handler, StringPool stringPool) throws IOException, InvalidJsonFormatException {
 
         parser.nextToken();
 
-        Entity entity = null;
+        boolean inEntity = false;
+        int id = Entity.INVALID_ID;
+        String name = null;
+        String description = null;
 
         while (parser.nextToken() != JsonToken.END_ARRAY) {
 
             if(parser.getCurrentToken() == JsonToken.START_OBJECT){
-                entity = new Entity();
+                inEntity = true;
+                id = Entity.INVALID_ID;
+                name = null;
+                description = null;
             }
 
-            if(entity == null) {
+            if(!inEntity) {
                 throw new InvalidJsonFormatException("Missing START_OBJECT token");
             }
 
@@ -83,47 +135,50 @@ public class FileParser implements JsonFileParser {
                 switch (entityField) {
                     case "entity_id":
                         parser.nextToken();
-                        entity.setId(parser.getIntValue());
+                        id = parser.getIntValue();
                         break;
                     case "name":
                         parser.nextToken();
-                        entity.setName(parser.getText());
+                        name = stringPool == null ? parser.getText() : stringPool.intern(parser);
                         break;
                     case "description":
                         parser.nextToken();
-                        entity.setDescription(parser.getText());
+                        description = stringPool == null ? parser.getText() : stringPool.intern(parser);
                         break;
                 }
             }
 
             if(parser.getCurrentToken() == JsonToken.END_OBJECT){
 
-                if(entity.getId() == Entity.INVALID_ID) {
+                if(id == Entity.INVALID_ID) {
                     throw new InvalidJsonFormatException("entity_id property not found");
                 }
 
-                parsingResult.getEntities().put(entity.getId(), entity);
-
-                if(entity.getId() > parsingResult.getLargestId()) {
-                    parsingResult.setLargestId(entity.getId());
-                }
+                handler.entity(id, name, description);
             }
         }
     }
 
-    private void parseLinks(JsonParser parser, ParsingResult parsingResult) throws IOException, InvalidJsonFormatException {
+    /**
+     * Parses array of links, parser must be positioned before the start of the array
+     */
+    static void parseLinks(JsonParser parser, LinkHandler handler) throws IOException, InvalidJsonFormatException {
 
         parser.nextToken();
 
-        Link link = null;
+        boolean inLink = false;
+        int from = Link.INVALID_REF;
+        int to = Link.INVALID_REF;
 
         while (parser.nextToken() != JsonToken.END_ARRAY) {
 
             if(parser.getCurrentToken() == JsonToken.START_OBJECT){
-                link = new Link();
+                inLink = true;
+                from = Link.INVALID_REF;
+                to = Link.INVALID_REF;
             }
 
-            if(link == null) {
+            if(!inLink) {
                 throw new InvalidJsonFormatException("Missing START_OBJECT token");
             }
 
@@ -134,23 +189,37 @@ public class FileParser implements JsonFileParser {
                 switch (field) {
                     case "from":
                         parser.nextToken();
-                        link.setFrom(parser.getIntValue());
+                        from = parser.getIntValue();
                         break;
                     case "to":
                         parser.nextToken();
-                        link.setTo(parser.getIntValue());
+                        to = parser.getIntValue();
                         break;
                 }
             }
 
             if(parser.getCurrentToken() == JsonToken.END_OBJECT){
 
-                if(link.getFrom() == Link.INVALID_REF || link.getTo() == Link.INVALID_REF){
+                if(from == Link.INVALID_REF || to == Link.INVALID_REF){
                     throw new InvalidJsonFormatException("Link fields from or to not found");
                 }
 
-                parsingResult.getLinks().add(link);
+                handler.link(from, to);
             }
         }
     }
+
+    /**
+     * Receives entities of a parsed array
+     */
+    interface EntityHandler {
+        void entity(int id, String name, String description);
+    }
+
+    /**
+     * Receives links of a parsed array
+     */
+    interface LinkHandler {
+        void link(int from, int to);
+    }
 }
@@ -0,0 +1,69 @@
+package parser;
+
+import app.model.Entity;
+import app.model.Link;
+import app.util.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to a loaded graph: entities and links to remove and entities and links to add. Entities that already
+ * exist are replaced, keeping their links. Removals are applied before additions.
+ */
+public class GraphUpdate implements ParsingSink {
+
+    private final List<Entity> entities = new ArrayList<>();
+    private final List<Link> links = new ArrayList<>();
+    private final IntList removedEntityIds = new IntList();
+    private final List<Link> removedLinks = new ArrayList<>();
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        Entity entity = new Entity();
+        entity.setId(id);
+        entity.setName(name);
+        entity.setDescription(description);
+
+        entities.add(entity);
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+        links.add(new Link(from, to));
+    }
+
+    /**
+     * Removes entity and all its links
+     * @param id Entity ID
+     */
+    public void removeEntity(int id) {
+        removedEntityIds.add(id);
+    }
+
+    /**
+     * Removes one link between the entities
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     */
+    public void removeLink(int from, int to) {
+        removedLinks.add(new Link(from, to));
+    }
+
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    public IntList getRemovedEntityIds() {
+        return removedEntityIds;
+    }
+
+    public List<Link> getRemovedLinks() {
+        return removedLinks;
+    }
+}
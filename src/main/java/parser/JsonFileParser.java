@@ -4,4 +4,6 @@ import java.io.IOException;
 
 public interface JsonFileParser {
     ParsingResult parse() throws IOException, InvalidJsonFormatException;
+
+    void parse(ParsingSink sink) throws IOException, InvalidJsonFormatException;
 }
@@ -0,0 +1,88 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream that reads a file through memory mapped windows instead of read calls.
+ * Single mapping is limited to 2 GB, so larger files are read through consecutive windows.
+ */
+class MappedFileInputStream extends InputStream {
+
+    static final long DEFAULT_WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowEnd;
+
+    MappedFileInputStream(String filePath) throws IOException {
+        this(filePath, DEFAULT_WINDOW_BYTES);
+    }
+
+    MappedFileInputStream(String filePath, long windowBytes) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextWindow() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!nextWindow()) {
+            return -1;
+        }
+
+        int count = Math.min(length, window.remaining());
+        window.get(bytes, offset, count);
+
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return window == null ? 0 : window.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Maps the next window if the current one is exhausted
+     * @return false at the end of the file
+     */
+    private boolean nextWindow() throws IOException {
+
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+
+        if (windowEnd >= size) {
+            return false;
+        }
+
+        long start = windowEnd;
+        windowEnd = Math.min(size, start + windowBytes);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowEnd - start);
+
+        return true;
+    }
+}
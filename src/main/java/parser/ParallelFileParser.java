@@ -0,0 +1,194 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * JSON parser that parses the file on several threads. {@link StructureScanner} splits entities and links
+ * arrays of the memory mapped file into chunks of complete objects, chunks are parsed with Jackson on a worker pool
+ * and passed to the sink in file order, so the sink receives exactly what {@link FileParser} would give it.
+ * <p>
+ * Files the scanner does not recognize are parsed by {@link FileParser}, so invalid files fail with the same errors.
+ */
+public class ParallelFileParser implements JsonFileParser {
+
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final String filePath;
+    private final int threads;
+    private final int chunkBytes;
+    private final StringPool stringPool;
+    private final boolean mapped;
+
+    public ParallelFileParser(String filePath, int threads) {
+        this(filePath, threads, DEFAULT_CHUNK_BYTES);
+    }
+
+    public ParallelFileParser(String filePath, int threads, int chunkBytes) {
+        this(filePath, threads, chunkBytes, null);
+    }
+
+    /**
+     * @param filePath Path of the file
+     * @param threads Number of worker threads
+     * @param chunkBytes Size of chunks parsed by one task
+     * @param stringPool Pool for names and descriptions, null to create a string for every occurrence.
+     *                   Workers pool strings in pools of their own, which are merged into this one in file order.
+     */
+    public ParallelFileParser(String filePath, int threads, int chunkBytes, StringPool stringPool) {
+        this(filePath, threads, chunkBytes, stringPool, false);
+    }
+
+    /**
+     * @param filePath Path of the file
+     * @param threads Number of worker threads
+     * @param chunkBytes Size of chunks parsed by one task
+     * @param stringPool Pool for names and descriptions, null to create a string for every occurrence.
+     *                   Workers pool strings in pools of their own, which are merged into this one in file order.
+     * @param mapped Whether files parsed by {@link FileParser}, which the scanner does not split, are read
+     *               through memory mapping
+     */
+    public ParallelFileParser(String filePath, int threads, int chunkBytes, StringPool stringPool, boolean mapped) {
+        this.filePath = filePath;
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+        this.stringPool = stringPool;
+        this.mapped = mapped;
+    }
+
+    @Override
+    public ParsingResult parse() throws IOException, InvalidJsonFormatException {
+
+        ParsingResult result = new ParsingResult();
+        parse(result);
+
+        return result;
+    }
+
+    /**
+     * Parses supplied file passing entities and links to the sink in file order
+     * @param sink Receiver of parsed entities and links, called from the calling thread only
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Override
+    public void parse(ParsingSink sink) throws IOException, InvalidJsonFormatException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+            List<StructureScanner.Chunk> chunks = new StructureScanner(channel).scan(chunkBytes);
+
+            if (chunks == null) {
+                sequentialParser().parse(sink);
+                return;
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+                parseChunks(channel, chunks, pool, sink);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return Parser of files the scanner does not split
+     */
+    FileParser sequentialParser() {
+        return new FileParser(filePath, mapped, stringPool);
+    }
+
+    /**
+     * Keeps a bounded number of chunks in flight and drains them in order
+     */
+    private void parseChunks(FileChannel channel, List<StructureScanner.Chunk> chunks, ExecutorService pool,
+                             ParsingSink sink) throws IOException, InvalidJsonFormatException {
+
+        Deque<Future<ParsingBuffer>> inFlight = new ArrayDeque<>();
+        int next = 0;
+
+        // Pool of a worker is only used by its thread
+        ThreadLocal<StringPool> workerPools = ThreadLocal.withInitial(() -> stringPool == null ? null : new StringPool());
+
+        while (next < chunks.size() || !inFlight.isEmpty()) {
+
+            while (next < chunks.size() && inFlight.size() < threads * 2) {
+                StructureScanner.Chunk chunk = chunks.get(next++);
+                inFlight.add(pool.submit(() -> parseChunk(channel, chunk, workerPools.get())));
+            }
+
+            await(inFlight.poll()).drainTo(sink, stringPool);
+        }
+    }
+
+    private static ParsingBuffer parseChunk(FileChannel channel, StructureScanner.Chunk chunk, StringPool stringPool)
+            throws IOException, InvalidJsonFormatException {
+
+        ParsingBuffer buffer = new ParsingBuffer();
+
+        // Chunk holds comma separated objects, enclosing them in brackets makes it a JSON array
+        InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(new byte[]{'['}),
+                new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start)),
+                new ByteArrayInputStream(new byte[]{']'}))));
+
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            if (chunk.entities) {
+                FileParser.parseEntities(parser, buffer::addEntity, stringPool);
+            } else {
+                FileParser.parseLinks(parser, buffer::addLink);
+            }
+        }
+
+        return buffer;
+    }
+
+    private static ParsingBuffer await(Future<ParsingBuffer> future) throws IOException, InvalidJsonFormatException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrupted", e);
+        } catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+
+            if (cause instanceof InvalidJsonFormatException) {
+                throw (InvalidJsonFormatException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package parser;
+
+/**
+ * Options that select how input file is parsed
+ */
+public class ParserOptions {
+
+    private int threads = 1;
+    private boolean mapped;
+    private boolean internStrings;
+    private boolean deduplicateLinks;
+
+    /**
+     * Creates parser for the file
+     * @param filePath Path of the file
+     * @return Parser
+     */
+    public JsonFileParser createParser(String filePath) {
+        return createParser(filePath, null);
+    }
+
+    /**
+     * Creates parser for the file
+     * @param filePath Path of the file
+     * @param stringPool Pool for names and descriptions, null to create a string for every occurrence
+     * @return Parser
+     */
+    public JsonFileParser createParser(String filePath, StringPool stringPool) {
+        return threads > 1
+                ? new ParallelFileParser(filePath, threads, ParallelFileParser.DEFAULT_CHUNK_BYTES, stringPool, mapped)
+                : new FileParser(filePath, mapped, stringPool);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of threads to parse with, more than one selects {@link ParallelFileParser}
+     * @param threads Number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Read input through memory mapping, applies to sequential parsing
+     * @param mapped True to map the input file
+     */
+    public void setMapped(boolean mapped) {
+        this.mapped = mapped;
+    }
+
+    public boolean isInternStrings() {
+        return internStrings;
+    }
+
+    /**
+     * Keep every distinct name and description once, see {@link StringPool}
+     * @param internStrings True to pool strings
+     */
+    public void setInternStrings(boolean internStrings) {
+        this.internStrings = internStrings;
+    }
+
+    public boolean isDeduplicateLinks() {
+        return deduplicateLinks;
+    }
+
+    /**
+     * Keep only the first occurrence of each link and index links, so duplicates are not added later either
+     * @param deduplicateLinks True to drop duplicate links
+     */
+    public void setDeduplicateLinks(boolean deduplicateLinks) {
+        this.deduplicateLinks = deduplicateLinks;
+    }
+}
@@ -0,0 +1,51 @@
+package parser;
+
+import app.util.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps parsed entities and links until they are passed on to another sink
+ */
+class ParsingBuffer implements ParsingSink {
+
+    private final IntList entityIds = new IntList();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final IntList linkFrom = new IntList();
+    private final IntList linkTo = new IntList();
+
+    @Override
+    public void addEntity(int id, String name, String description) {
+        entityIds.add(id);
+        names.add(name);
+        descriptions.add(description);
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+        linkFrom.add(from);
+        linkTo.add(to);
+    }
+
+    /**
+     * Passes buffered entities and then buffered links to the sink
+     * @param sink Sink
+     * @param stringPool Pool to replace names and descriptions with pooled ones, may be null
+     */
+    void drainTo(ParsingSink sink, StringPool stringPool) {
+
+        for (int i = 0; i < entityIds.size(); i++) {
+            if (stringPool == null) {
+                sink.addEntity(entityIds.get(i), names.get(i), descriptions.get(i));
+            } else {
+                sink.addEntity(entityIds.get(i), stringPool.intern(names.get(i)), stringPool.intern(descriptions.get(i)));
+            }
+        }
+
+        for (int i = 0; i < linkFrom.size(); i++) {
+            sink.addLink(linkFrom.get(i), linkTo.get(i));
+        }
+    }
+}
@@ -11,7 +11,7 @@ import java.util.Map;
 /**
  * Class that holds results of JSON parsing
  */
-public class ParsingResult {
+public class ParsingResult implements ParsingSink {
     private Map<Integer, Entity> entities;
     private List<Link> links;
     private int largestId;
@@ -21,6 +21,26 @@ public class ParsingResult {
         this.links = new ArrayList<>();
     }
 
+    @Override
+    public void addEntity(int id, String name, String description) {
+
+        Entity entity = new Entity();
+        entity.setId(id);
+        entity.setName(name);
+        entity.setDescription(description);
+
+        entities.put(id, entity);
+
+        if(id > largestId) {
+            largestId = id;
+        }
+    }
+
+    @Override
+    public void addLink(int from, int to) {
+        links.add(new Link(from, to));
+    }
+
     public Map<Integer, Entity> getEntities() {
         return entities;
     }
@@ -0,0 +1,22 @@
+package parser;
+
+/**
+ * Receives entities and links as they are parsed, in the order they appear in the file
+ */
+public interface ParsingSink {
+
+    /**
+     * Called for every parsed entity
+     * @param id Entity ID
+     * @param name Entity name, may be null
+     * @param description Entity description, may be null
+     */
+    void addEntity(int id, String name, String description);
+
+    /**
+     * Called for every parsed link
+     * @param from ID of the entity link starts from
+     * @param to ID of the entity link points to
+     */
+    void addLink(int from, int to);
+}
@@ -0,0 +1,194 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Pool of distinct string values. Strings are looked up by the characters in the parser's buffer,
+ * so a value seen before is returned without allocating a new string, and every distinct value is kept once.
+ * Pool is not thread safe.
+ * <p>
+ * Hash is the same as {@link String#hashCode()}, so strings created elsewhere are looked up with their cached hash.
+ */
+public class StringPool {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /**
+     * Header of String and of its char array with compressed references
+     */
+    private static final int STRING_OVERHEAD_BYTES = 24 + 16;
+
+    private String[] values = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+    private long lookups;
+    private long savedBytes;
+
+    /**
+     * Get pooled text of the current token, the same text as {@link JsonParser#getText()} gives
+     * @param parser Parser
+     * @return Pooled string
+     * @throws IOException
+     */
+    public String intern(JsonParser parser) throws IOException {
+
+        // Other tokens are rare in string fields, they are not worth reading from the buffer
+        if (parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return intern(parser.getText());
+        }
+
+        return intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Get pooled string with given characters
+     * @param chars Buffer
+     * @param offset Offset of the first character
+     * @param length Number of characters
+     * @return Pooled string
+     */
+    public String intern(char[] chars, int offset, int length) {
+
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        lookups++;
+
+        int mask = values.length - 1;
+
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+
+            String value = values[slot];
+
+            if (value == null) {
+                return add(slot, new String(chars, offset, length), hash);
+            }
+
+            if (hashes[slot] == hash && equals(value, chars, offset, length)) {
+                savedBytes += sizeOf(length);
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Get pooled string equal to the value
+     * @param value String, may be null
+     * @return Pooled string or null
+     */
+    public String intern(String value) {
+
+        if (value == null) {
+            return null;
+        }
+
+        int hash = value.hashCode();
+
+        lookups++;
+
+        int mask = values.length - 1;
+
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+
+            String pooled = values[slot];
+
+            if (pooled == null) {
+                return add(slot, value, hash);
+            }
+
+            if (pooled == value || (hashes[slot] == hash && pooled.equals(value))) {
+                savedBytes += sizeOf(value.length());
+                return pooled;
+            }
+        }
+    }
+
+    /**
+     * Get number of lookups, one per string occurrence
+     * @return Lookups
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Get number of distinct strings kept
+     * @return Distinct strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get estimated heap of strings that were not kept because an equal string was already pooled,
+     * counted with two bytes per character
+     * @return Bytes
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    private String add(int slot, String value, int hash) {
+
+        values[slot] = value;
+        hashes[slot] = hash;
+        size++;
+
+        if (size > values.length * LOAD_FACTOR) {
+            rehash(values.length * 2);
+        }
+
+        return value;
+    }
+
+    private void rehash(int capacity) {
+
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+
+        values = new String[capacity];
+        hashes = new int[capacity];
+
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static boolean equals(String value, char[] chars, int offset, int length) {
+
+        if (value.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long sizeOf(int length) {
+        return STRING_OVERHEAD_BYTES + ((2L * length + 7) & ~7L);
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,299 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fast structural pre-scan of the input file. Finds "entities" and "links" arrays of the root object and
+ * splits their elements into chunks of complete objects, without parsing the objects themselves.
+ * <p>
+ * Scan is a single pass over blocks of raw bytes that tracks only strings and nesting depth.
+ * UTF-8 continuation bytes never match quotes, backslashes or brackets, so multi-byte characters need no decoding.
+ * Scanner keeps the state of one scan and is not reusable.
+ */
+class StructureScanner {
+
+    private static final int BLOCK_BYTES = 1 << 20;
+    private static final int MAX_KEY_BYTES = 16;
+
+    private static final byte[] ENTITIES = "entities".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINKS = "links".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * What is expected next inside the root object
+     */
+    private static final int EXPECT_KEY = 0;
+    private static final int EXPECT_COLON = 1;
+    private static final int EXPECT_ARRAY = 2;
+    private static final int EXPECT_COMMA = 3;
+
+    /**
+     * Depth of objects inside entities and links arrays
+     */
+    private static final int ELEMENT_DEPTH = 3;
+
+    /**
+     * Range [start, end) of the file holding comma separated objects of one array
+     */
+    static class Chunk {
+
+        final boolean entities;
+        final long start;
+        final long end;
+
+        Chunk(boolean entities, long start, long end) {
+            this.entities = entities;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private long chunkBytes;
+
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private boolean rootClosed;
+
+    private int rootState = EXPECT_KEY;
+    private final byte[] key = new byte[MAX_KEY_BYTES];
+    private int keyLength;
+    private boolean entities;
+
+    private long chunkStart = -1;
+    private long elementEnd = -1;
+    private boolean expectElement;
+
+    StructureScanner(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Scans the file
+     * @param chunkBytes Chunks are closed at the first object boundary after reaching this size
+     * @return Chunks in file order, or null if the file does not have expected structure
+     * @throws IOException
+     */
+    List<Chunk> scan(long chunkBytes) throws IOException {
+
+        this.chunkBytes = chunkBytes;
+
+        long size = channel.size();
+        byte[] block = new byte[BLOCK_BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+
+        for (long blockStart = 0; blockStart < size; blockStart += BLOCK_BYTES) {
+
+            buffer.clear();
+            int length = (int) Math.min(BLOCK_BYTES, size - blockStart);
+            buffer.limit(length);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                    return null;
+                }
+            }
+
+            if (!scanBlock(block, length, blockStart)) {
+                return null;
+            }
+        }
+
+        return rootClosed ? chunks : null;
+    }
+
+    /**
+     * @return false if the block breaks expected structure
+     */
+    private boolean scanBlock(byte[] block, int length, long blockStart) {
+
+        int i = 0;
+
+        while (i < length) {
+
+            if (depth >= ELEMENT_DEPTH) {
+                i = scanElement(block, i, length, blockStart);
+                continue;
+            }
+
+            byte b = block[i++];
+
+            if (inString) {
+                if (!scanKeyByte(b)) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                continue;
+            }
+
+            if (rootClosed) {
+                return false;
+            }
+
+            if (depth == 0) {
+                if (b != '{') {
+                    return false;
+                }
+                depth = 1;
+            } else if (!(depth == 1 ? scanRoot(b) : scanArray(b, blockStart + i - 1))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Skips the inside of an element object, stops when the element is closed or at the end of the block
+     * @return Index of the next byte to scan
+     */
+    private int scanElement(byte[] block, int i, int length, long blockStart) {
+
+        // Hot loop, state is kept in locals and stored back on exit
+        int depth = this.depth;
+        boolean inString = this.inString;
+
+        if (escape && i < length) {
+            escape = false;
+            i++;
+        }
+
+        while (i < length) {
+
+            byte b = block[i];
+
+            if (inString) {
+                while (b != '"' && b != '\\' && ++i < length) {
+                    b = block[i];
+                }
+                if (i == length) {
+                    break;
+                }
+                if (b == '\\') {
+                    if (i + 1 == length) {
+                        escape = true;
+                        i = length;
+                        break;
+                    }
+                    i += 2;
+                    continue;
+                }
+                inString = false;
+                i++;
+                continue;
+            }
+
+            i++;
+
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth < ELEMENT_DEPTH) {
+                closeElement(blockStart + i);
+                break;
+            }
+        }
+
+        this.depth = depth;
+        this.inString = inString;
+
+        return i;
+    }
+
+    /**
+     * Collects key of the root object, escaped keys are not expected
+     */
+    private boolean scanKeyByte(byte b) {
+
+        if (b == '\\') {
+            return false;
+        }
+
+        if (b != '"') {
+            if (keyLength == MAX_KEY_BYTES) {
+                return false;
+            }
+            key[keyLength++] = b;
+            return true;
+        }
+
+        inString = false;
+        entities = matches(ENTITIES);
+        rootState = EXPECT_COLON;
+
+        return entities || matches(LINKS);
+    }
+
+    private boolean scanRoot(byte b) {
+
+        if (b == '"' && rootState == EXPECT_KEY) {
+            inString = true;
+            keyLength = 0;
+        } else if (b == ':' && rootState == EXPECT_COLON) {
+            rootState = EXPECT_ARRAY;
+        } else if (b == '[' && rootState == EXPECT_ARRAY) {
+            depth = 2;
+            expectElement = true;
+        } else if (b == ',' && rootState == EXPECT_COMMA) {
+            rootState = EXPECT_KEY;
+        } else if (b == '}' && (rootState == EXPECT_COMMA || rootState == EXPECT_KEY && keyLength == 0)) {
+            depth = 0;
+            rootClosed = true;
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean scanArray(byte b, long pos) {
+
+        if (b == '{' && expectElement) {
+            if (chunkStart < 0) {
+                chunkStart = pos;
+            }
+            depth = ELEMENT_DEPTH;
+        } else if (b == ',' && !expectElement) {
+            expectElement = true;
+        } else if (b == ']' && (!expectElement || chunkStart < 0 && elementEnd < 0)) {
+            if (chunkStart >= 0) {
+                chunks.add(new Chunk(entities, chunkStart, elementEnd));
+            }
+            chunkStart = -1;
+            elementEnd = -1;
+            depth = 1;
+            rootState = EXPECT_COMMA;
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private void closeElement(long end) {
+
+        elementEnd = end;
+        expectElement = false;
+
+        if (elementEnd - chunkStart >= chunkBytes) {
+            chunks.add(new Chunk(entities, chunkStart, elementEnd));
+            chunkStart = -1;
+        }
+    }
+
+    private boolean matches(byte[] expected) {
+        return keyLength == expected.length && Arrays.equals(Arrays.copyOf(key, keyLength), expected);
+    }
+}
@@ -0,0 +1,78 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses graph update in the input file format extended with arrays of removed entities and links, e.g.
+ * <pre>
+ * {
+ *   "removed_links": [ {"from": 3, "to": 5} ],
+ *   "removed_entities": [ {"entity_id": 11} ],
+ *   "entities": [ {"entity_id": 13, "name": "EntityF"} ],
+ *   "links": [ {"from": 13, "to": 3} ]
+ * }
+ * </pre>
+ * All fields are optional.
+ */
+public class UpdateParser {
+
+    private final InputStream in;
+
+    /**
+     * @param in Input, closed when parsing ends
+     */
+    public UpdateParser(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Parses the update
+     * @return Update
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    public GraphUpdate parse() throws IOException, InvalidJsonFormatException {
+
+        GraphUpdate update = new GraphUpdate();
+
+        try (JsonParser parser = new JsonFactory().createParser(in)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidJsonFormatException("Missing START_OBJECT token");
+            }
+
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+
+                String fieldName = parser.getCurrentName();
+
+                if(fieldName == null) {
+                    continue;
+                }
+
+                switch (fieldName) {
+                    case "entities":
+                        FileParser.parseEntities(parser, update::addEntity, null);
+                        break;
+                    case "links":
+                        FileParser.parseLinks(parser, update::addLink);
+                        break;
+                    case "removed_entities":
+                        FileParser.parseEntities(parser, (id, name, description) -> update.removeEntity(id), null);
+                        break;
+                    case "removed_links":
+                        FileParser.parseLinks(parser, update::removeLink);
+                        break;
+                    default:
+                        throw new InvalidJsonFormatException("entities, links, removed_entities or removed_links fields not found");
+                }
+            }
+        }
+
+        return update;
+    }
+}
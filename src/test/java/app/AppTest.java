@@ -3,15 +3,29 @@ package app;
 import app.exceptions.InvalidEntityLinkException;
 import app.model.Entity;
 import app.model.Link;
+import app.output.GraphJsonWriter;
+import app.store.CompactGraphBuilder;
+import app.store.EntityCursor;
+import app.store.GraphStore;
+import app.store.LinkCursor;
+import app.store.StorageMode;
+import app.util.IntList;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import parser.InvalidJsonFormatException;
+import parser.ParserOptions;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class AppTest {
 
@@ -213,6 +227,249 @@ public class AppTest {
         Assert.assertTrue(app.getLinks().containsAll(links));
     }
 
+    /**
+     * Test that clone result maps original entities to their clones and covers new links
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneResult() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_CYCLIC_JSON_FILE);
+
+        CloneResult result = app.clone(app.findEntity(5));
+
+        Assert.assertEquals(13, result.getRootCloneId());
+        Assert.assertEquals(5, result.size());
+        Assert.assertEquals(13, result.getCloneId(5));
+        Assert.assertEquals(17, result.getCloneId(3));
+        Assert.assertEquals(Entity.INVALID_ID, result.getCloneId(13));
+        Assert.assertArrayEquals(new int[]{13, 14, 15, 16, 17}, result.getCloneIds());
+
+        List<Link> newLinks = app.getLinks().subList(result.getFirstLinkIndex(), app.getLinks().size());
+
+        Assert.assertEquals(5, result.getLinkCount());
+        Assert.assertEquals(result.getLinkCount(), newLinks.size());
+        Assert.assertEquals(new Link(3, 13), newLinks.get(0));
+    }
+
+    /**
+     * Test that in sequential batch each clone sees clones of entities before it
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneAll_sequential() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_JSON_FILE);
+
+        List<CloneResult> results = app.cloneAll(new int[]{5, 3}, BatchMode.SEQUENTIAL);
+
+        Assert.assertArrayEquals(new int[]{12, 13, 14}, results.get(0).getCloneIds());
+
+        // Entity 3 links to clone 12 made by the first clone, so clones of 5, 7 and 11 are cloned again
+        Assert.assertArrayEquals(new int[]{3, 5, 7, 11, 12, 13, 14}, results.get(1).getOriginalIds());
+        Assert.assertArrayEquals(new int[]{15, 16, 17, 18, 19, 20, 21}, results.get(1).getCloneIds());
+        Assert.assertEquals(14, app.getEntityMap().size());
+    }
+
+    /**
+     * Test that in snapshot batch every clone is made against the original graph and IDs follow order of entities
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneAll_snapshot() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_JSON_FILE);
+
+        List<CloneResult> results = app.cloneAll(new int[]{5, 3}, BatchMode.SNAPSHOT);
+
+        Assert.assertArrayEquals(new int[]{12, 13, 14}, results.get(0).getCloneIds());
+        Assert.assertArrayEquals(new int[]{3, 5, 7, 11}, results.get(1).getOriginalIds());
+        Assert.assertArrayEquals(new int[]{15, 16, 17, 18}, results.get(1).getCloneIds());
+
+        // Link from 3 to the first root clone is not cloned, 3 had no predecessors
+        Assert.assertEquals(1, app.findEntity(12).getFromEntities().size());
+        Assert.assertEquals(0, app.findEntity(15).getFromEntities().size());
+        Assert.assertEquals(3, app.getLinks().size() - results.get(0).getFirstLinkIndex() - results.get(1).getLinkCount());
+        Assert.assertEquals(11, app.getEntityMap().size());
+    }
+
+    /**
+     * Test that parallel batch clones random graphs the same way as snapshot batch, whatever the number of threads
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneAll_parallel() throws InvalidEntityLinkException, IOException {
+
+        Random random = new Random(7);
+
+        for (int round = 0; round < 10; round++) {
+
+            long seed = random.nextLong();
+            int[] roots = new int[1 + random.nextInt(100)];
+
+            for (int i = 0; i < roots.length; i++) {
+                roots[i] = random.nextInt(300);
+            }
+
+            App expected = new App(randomStore(seed));
+            String expectedDelta = delta(expected, expected.cloneAll(roots, BatchMode.SNAPSHOT));
+
+            for (int threads = 1; threads <= 4; threads++) {
+
+                App app = new App(randomStore(seed));
+                ForkJoinPool pool = new ForkJoinPool(threads);
+
+                try {
+                    Assert.assertEquals(expectedDelta, delta(app, app.cloneAll(roots, BatchMode.PARALLEL, pool)));
+                } finally {
+                    pool.shutdown();
+                }
+
+                Assert.assertEquals(expected.printElementsAndLinks(), app.printElementsAndLinks());
+            }
+        }
+    }
+
+    /**
+     * Test that parallel traversal clones the same entities with the same number of links as sequential
+     * traversal, but as the tree of sequential breadth first traversal whatever the number of threads:
+     * clones in breadth first order, each linked from the clone of the entity that first reached it
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testClone_parallel() throws InvalidEntityLinkException, IOException {
+
+        Random random = new Random(11);
+
+        for (int round = 0; round < 10; round++) {
+
+            long seed = random.nextLong();
+            int entityCount = 1 + random.nextInt(5000);
+            int linkCount = random.nextInt(entityCount * 3);
+            int root = random.nextInt(entityCount);
+
+            App sequential = new App(randomStore(seed, entityCount, linkCount));
+            CloneResult expected = sequential.clone(root);
+
+            IntList parents = new IntList();
+            int[] breadthFirst = breadthFirst(randomStore(seed, entityCount, linkCount), root, parents);
+
+            for (int threads = 1; threads <= 4; threads++) {
+
+                App app = new App(randomStore(seed, entityCount, linkCount));
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                CloneResult result;
+
+                try {
+                    result = app.clone(root, pool);
+                } finally {
+                    pool.shutdown();
+                }
+
+                int[] originalIds = result.getOriginalIds();
+                Assert.assertArrayEquals(breadthFirst, originalIds);
+
+                int[] sorted = originalIds.clone();
+                int[] expectedSorted = expected.getOriginalIds();
+                Arrays.sort(sorted);
+                Arrays.sort(expectedSorted);
+                Assert.assertArrayEquals(expectedSorted, sorted);
+
+                Assert.assertEquals(expected.getLinkCount(), result.getLinkCount());
+                Assert.assertEquals(sequential.getStore().getLinkCount(), app.getStore().getLinkCount());
+
+                // Links between clones are exactly the tree of the reference traversal
+                int rootClone = result.getRootCloneId();
+                int[] cloneParents = new int[originalIds.length];
+                Arrays.fill(cloneParents, -1);
+                LinkCursor links = app.getStore().linkCursor(result.getFirstLinkIndex());
+
+                while (links.next()) {
+                    if (links.from() >= rootClone) {
+                        Assert.assertEquals(-1, cloneParents[links.to() - rootClone]);
+                        cloneParents[links.to() - rootClone] = links.from() - rootClone;
+                    }
+                }
+
+                Assert.assertArrayEquals(parents.toArray(), cloneParents);
+            }
+        }
+    }
+
+    /**
+     * Test that scoped loading writes the same graph and delta as compact storage loading the whole file
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneScoped() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        ParserOptions parallel = new ParserOptions();
+        parallel.setThreads(2);
+
+        for (String file : new String[]{VALID_JSON_FILE, VALID_CYCLIC_JSON_FILE, VALID_NULL_JSON_FILE}) {
+            for (ParserOptions options : new ParserOptions[]{new ParserOptions(), parallel}) {
+
+                App expected = new App(StorageMode.COMPACT);
+                expected.parseFile(file);
+                EntityCursor first = expected.getStore().entityCursor();
+                Assert.assertTrue(first.next());
+                int root = first.id();
+                CloneResult result = expected.clone(root);
+
+                App app = new App(StorageMode.COMPACT);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                app.cloneScoped(file, options, root, false, false, out, 16);
+                Assert.assertEquals(expected.printElementsAndLinks(), out.toString("UTF-8"));
+
+                app = new App(StorageMode.COMPACT);
+                out = new ByteArrayOutputStream();
+                app.cloneScoped(file, options, root, true, true, out, 16);
+                Assert.assertEquals(delta(expected, Collections.singletonList(result)), out.toString("UTF-8"));
+            }
+        }
+
+        // Only entities reachable from the root keep their names
+        App app = new App(StorageMode.COMPACT);
+        app.cloneScoped(VALID_JSON_FILE, new ParserOptions(), 5, true, false, new ByteArrayOutputStream(), 16);
+        Assert.assertEquals("EntityC", app.getStore().getName(7));
+        Assert.assertNull(app.getStore().getName(3));
+    }
+
+    /**
+     * Test that batch with unknown entity is rejected before anything is cloned
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneAll_unknownEntity() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_JSON_FILE);
+
+        try {
+            app.cloneAll(new int[]{5, 4}, BatchMode.SNAPSHOT);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Entity with ID 4 not found", e.getMessage());
+        }
+
+        Assert.assertEquals(4, app.getEntityMap().size());
+    }
+
     /**
      * Test that invalid entity-link structure is handled correctly
      * @throws InvalidJsonFormatException
@@ -226,4 +483,63 @@ public class AppTest {
         App app = new App();
         app.parseFile(INVALID_LINKS_JSON_FILE);
     }
+
+    private static GraphStore randomStore(long seed) throws InvalidEntityLinkException {
+        return randomStore(seed, 300, 450);
+    }
+
+    private static GraphStore randomStore(long seed, int entityCount, int linkCount) throws InvalidEntityLinkException {
+
+        Random random = new Random(seed);
+        CompactGraphBuilder builder = new CompactGraphBuilder();
+
+        for (int id = 0; id < entityCount; id++) {
+            builder.addEntity(id, "Entity" + id, id % 3 == 0 ? "Description" + id : null);
+        }
+
+        for (int i = 0; i < linkCount; i++) {
+            builder.addLink(random.nextInt(entityCount), random.nextInt(entityCount));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Sequential breadth first order of entities reachable from the root
+     */
+    /**
+     * Entities in sequential breadth first order, parents gets the order index of the entity that first
+     * reached each entity, -1 for the root
+     */
+    private static int[] breadthFirst(GraphStore store, int root, IntList parents) {
+
+        IntList order = new IntList();
+        Set<Integer> visited = new HashSet<>();
+        IntList neighbours = new IntList();
+
+        order.add(root);
+        parents.add(-1);
+        visited.add(root);
+
+        for (int i = 0; i < order.size(); i++) {
+            neighbours.clear();
+            store.copyOutgoing(order.get(i), neighbours);
+            for (int j = 0; j < neighbours.size(); j++) {
+                if (visited.add(neighbours.get(j))) {
+                    order.add(neighbours.get(j));
+                    parents.add(i);
+                }
+            }
+        }
+
+        return order.toArray();
+    }
+
+    private static String delta(App app, List<CloneResult> results) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        app.writeClonedElementsAndLinks(results, true, out, GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+        return out.toString("UTF-8");
+    }
 }
@@ -0,0 +1,111 @@
+package app;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.model.Entity;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parser.InvalidJsonFormatException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class CloneStressTest {
+
+    private static final int CHAIN_LENGTH = 2_000_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that very long chain is cloned without running out of stack
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testLongChain() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(writeChain(CHAIN_LENGTH, false).getPath());
+
+        app.clone(app.findEntity(1));
+
+        Assert.assertEquals(2 * CHAIN_LENGTH, app.getEntityMap().size());
+        Assert.assertEquals(2 * (CHAIN_LENGTH - 1), app.getLinks().size());
+
+        Entity last = app.findEntity(2 * CHAIN_LENGTH);
+        Assert.assertNotNull(last);
+        Assert.assertEquals("Entity" + CHAIN_LENGTH, last.getName());
+        Assert.assertEquals(0, last.getToEntities().size());
+        Assert.assertEquals(2 * CHAIN_LENGTH - 1, last.getFromEntities().get(0).getId());
+    }
+
+    /**
+     * Test that very long cycle is cloned without running out of stack and that the cycle is not cloned twice
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testLongCycle() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(writeChain(CHAIN_LENGTH, true).getPath());
+
+        app.clone(app.findEntity(1));
+
+        Assert.assertEquals(2 * CHAIN_LENGTH, app.getEntityMap().size());
+        Assert.assertEquals(2 * CHAIN_LENGTH, app.getLinks().size());
+
+        Entity rootClone = app.findEntity(CHAIN_LENGTH + 1);
+        Assert.assertEquals("Entity1", rootClone.getName());
+        Assert.assertEquals(1, rootClone.getFromEntities().size());
+        Assert.assertEquals(CHAIN_LENGTH, rootClone.getFromEntities().get(0).getId());
+
+        Entity last = app.findEntity(2 * CHAIN_LENGTH);
+        Assert.assertEquals("Entity" + CHAIN_LENGTH, last.getName());
+        Assert.assertEquals(0, last.getToEntities().size());
+    }
+
+    /**
+     * Writes chain 1 -> 2 -> ... -> length, optionally closed back to the first entity
+     */
+    private File writeChain(int length, boolean cyclic) throws IOException {
+
+        File file = folder.newFile(cyclic ? "cycle.json" : "chain.json");
+
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+
+            writer.write("{\"entities\":[");
+
+            for (int id = 1; id <= length; id++) {
+                if (id > 1) {
+                    writer.write(',');
+                }
+                writer.write("{\"entity_id\":" + id + ",\"name\":\"Entity" + id + "\"}");
+            }
+
+            writer.write("],\"links\":[");
+
+            for (int id = 1; id < length; id++) {
+                if (id > 1) {
+                    writer.write(',');
+                }
+                writer.write("{\"from\":" + id + ",\"to\":" + (id + 1) + "}");
+            }
+
+            if (cyclic) {
+                writer.write(",{\"from\":" + length + ",\"to\":1}");
+            }
+
+            writer.write("]}");
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,372 @@
+package app;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.model.Link;
+import app.store.CompactGraphBuilder;
+import app.store.EntityCursor;
+import app.store.GraphSnapshot;
+import app.store.GraphStore;
+import app.store.HeapMemory;
+import app.store.LinkCursor;
+import app.store.ObjectGraphStore;
+import app.store.StorageMode;
+import app.util.IntList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import parser.GraphUpdate;
+import parser.InvalidJsonFormatException;
+import parser.ParsingResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class GraphUpdateTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+
+    private static final String UPDATE = "{\"removed_links\": [{\"from\": 5, \"to\": 7}],\n" +
+            "\"removed_entities\": [{\"entity_id\": 11}],\n" +
+            "\"entities\": [{\"entity_id\": 13, \"name\": \"EntityF\"}, {\"entity_id\": 5, \"name\": \"EntityB2\"}],\n" +
+            "\"links\": [{\"from\": 13, \"to\": 3}, {\"from\": 7, \"to\": 13}]}";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that update in JSON format is applied to both storage modes
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testApplyUpdate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (StorageMode mode : new StorageMode[]{StorageMode.OBJECT, StorageMode.COMPACT}) {
+
+            App app = new App(mode);
+            app.parseFile(VALID_JSON_FILE);
+            app.applyUpdate(new ByteArrayInputStream(UPDATE.getBytes(StandardCharsets.UTF_8)));
+
+            GraphStore store = app.getStore();
+
+            Assert.assertEquals("[3:EntityA:null, 5:EntityB2:null, 7:EntityC:More details about entity C, 13:EntityF:null]",
+                    entities(store).toString());
+            Assert.assertEquals("[13->3, 3->5, 3->7, 7->13]", links(store).toString());
+            Assert.assertEquals(13, store.getLargestId());
+            Assert.assertFalse(store.containsEntity(11));
+
+            // Cycle 3 -> 7 -> 13 -> 3 is cloned with new IDs after the largest one
+            CloneResult result = app.clone(3);
+            Assert.assertEquals(14, result.getRootCloneId());
+            Assert.assertEquals(4, result.size());
+        }
+    }
+
+    /**
+     * Test that random updates give the same graph in both storage modes as building the updated graph from scratch,
+     * also after the updated compact graph is written to snapshot and loaded
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testSameAsRebuild() throws InvalidEntityLinkException, IOException {
+
+        Random random = new Random(23);
+
+        for (int round = 0; round < 20; round++) {
+
+            int entityCount = 1 + random.nextInt(100);
+            List<Integer> ids = new ArrayList<>();
+            List<Link> links = new ArrayList<>();
+
+            for (int id = 0; id < entityCount; id++) {
+                ids.add(id);
+            }
+
+            for (int i = random.nextInt(entityCount * 3); i > 0; i--) {
+                links.add(new Link(random.nextInt(entityCount), random.nextInt(entityCount)));
+            }
+
+            App objectApp = new App(build(ids, links, false));
+            App compactApp = new App(build(ids, links, true));
+
+            for (int step = 0; step < 5; step++) {
+
+                GraphUpdate update = new GraphUpdate();
+
+                for (int i = random.nextInt(4); i > 0 && !links.isEmpty(); i--) {
+                    Link link = links.remove(random.nextInt(links.size()));
+                    update.removeLink(link.getFrom(), link.getTo());
+                }
+
+                for (int i = random.nextInt(3); i > 0 && ids.size() > 1; i--) {
+                    int id = ids.remove(random.nextInt(ids.size()));
+                    links.removeIf(link -> link.getFrom() == id || link.getTo() == id);
+                    update.removeEntity(id);
+                }
+
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    int id = random.nextInt(entityCount * 2);
+                    if (!ids.contains(id)) {
+                        ids.add(id);
+                    }
+                    update.addEntity(id, "Entity" + id, null);
+                }
+
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    Link link = new Link(ids.get(random.nextInt(ids.size())), ids.get(random.nextInt(ids.size())));
+                    links.add(link);
+                    update.addLink(link.getFrom(), link.getTo());
+                }
+
+                objectApp.applyUpdate(update);
+                compactApp.applyUpdate(update);
+
+                GraphStore expected = build(ids, links, false);
+
+                for (GraphStore store : new GraphStore[]{objectApp.getStore(), compactApp.getStore()}) {
+                    assertSameGraph(expected, store);
+                }
+            }
+
+            File snapshot = folder.newFile();
+            GraphSnapshot.write(compactApp.getStore(), snapshot);
+            assertSameGraph(build(ids, links, false), GraphSnapshot.load(snapshot, new HeapMemory()));
+
+            int root = ids.get(random.nextInt(ids.size()));
+            Assert.assertEquals(objectApp.clone(root).size(), compactApp.clone(root).size());
+            assertSameGraph(objectApp.getStore(), compactApp.getStore());
+        }
+    }
+
+    /**
+     * Test that clone estimates follow update that removes one link and adds another, keeping number of links
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testEstimateAfterUpdate() throws InvalidEntityLinkException {
+
+        for (boolean compact : new boolean[]{false, true}) {
+
+            App app = new App(build(Arrays.asList(1, 2, 3), Collections.singletonList(new Link(1, 2)), compact));
+
+            Assert.assertEquals(1, app.getReachabilityIndex().getReachableCount(2));
+            Assert.assertEquals(1, app.estimateClone(2).getEntityCount());
+
+            GraphUpdate update = new GraphUpdate();
+            update.removeLink(1, 2);
+            update.addLink(2, 3);
+            app.applyUpdate(update);
+
+            Assert.assertEquals(2, app.getReachabilityIndex().getReachableCount(2));
+            Assert.assertEquals(2, app.estimateClone(2).getEntityCount());
+            Assert.assertEquals(1, app.estimateClone(1).getEntityCount());
+        }
+    }
+
+    /**
+     * Test that removals are applied by the update, so the graph can be read by several threads at once,
+     * and that reading a store with removals not applied is rejected
+     * @throws InvalidEntityLinkException
+     * @throws InterruptedException
+     */
+    @Test
+    public void testReadsAfterUpdate() throws InvalidEntityLinkException, InterruptedException {
+
+        List<Integer> ids = Arrays.asList(1, 2, 3, 4);
+        List<Link> links = Arrays.asList(new Link(1, 2), new Link(2, 3), new Link(3, 4), new Link(4, 1));
+
+        for (boolean compact : new boolean[]{false, true}) {
+
+            GraphStore direct = build(ids, links, compact);
+            direct.removeEntity(4);
+
+            try {
+                direct.getLargestId();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("Removals are not applied", e.getMessage());
+            }
+
+            direct.applyRemovals();
+            Assert.assertEquals(3, direct.getLargestId());
+            Assert.assertEquals("[1->2, 2->3]", links(direct).toString());
+
+            App app = new App(build(ids, links, compact));
+            GraphUpdate update = new GraphUpdate();
+            update.removeLink(1, 2);
+            update.removeEntity(4);
+            app.applyUpdate(update);
+
+            GraphStore store = app.getStore();
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> readers = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                Thread reader = new Thread(() -> {
+                    try {
+                        for (int round = 0; round < 1000; round++) {
+                            Assert.assertEquals("[2->3]", links(store).toString());
+                            Assert.assertEquals(3, store.getLargestId());
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            Assert.assertEquals(Collections.emptyList(), errors);
+        }
+    }
+
+    /**
+     * Test that update removing missing link is rejected without changing the graph
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidUpdate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_JSON_FILE);
+
+        GraphUpdate update = new GraphUpdate();
+        update.addEntity(13, "EntityF", null);
+        update.removeLink(3, 5);
+        update.removeLink(3, 5);
+
+        try {
+            app.applyUpdate(update);
+            Assert.fail();
+        } catch (InvalidEntityLinkException e) {
+            Assert.assertEquals("No link found from 3 to 5", e.getMessage());
+        }
+
+        Assert.assertEquals(4, app.getStore().getEntityCount());
+        Assert.assertEquals(4, app.getStore().getLinkCount());
+
+        update = new GraphUpdate();
+        update.removeEntity(11);
+        update.addLink(7, 11);
+
+        thrown.expect(InvalidEntityLinkException.class);
+        thrown.expectMessage("No entity found with ID 11");
+
+        app.applyUpdate(update);
+    }
+
+    /**
+     * Test that unknown fields of update are rejected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidJson() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+        thrown.expect(InvalidJsonFormatException.class);
+
+        App app = new App();
+        app.parseFile(VALID_JSON_FILE);
+        app.applyUpdate(new ByteArrayInputStream("{\"changed\": []}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static GraphStore build(List<Integer> ids, List<Link> links, boolean compact) throws InvalidEntityLinkException {
+
+        if (compact) {
+            CompactGraphBuilder builder = new CompactGraphBuilder();
+            ids.forEach(id -> builder.addEntity(id, "Entity" + id, null));
+            links.forEach(link -> builder.addLink(link.getFrom(), link.getTo()));
+            return builder.build();
+        }
+
+        ParsingResult result = new ParsingResult();
+        ids.forEach(id -> result.addEntity(id, "Entity" + id, null));
+        links.forEach(link -> result.addLink(link.getFrom(), link.getTo()));
+        return new ObjectGraphStore(result);
+    }
+
+    private static void assertSameGraph(GraphStore expected, GraphStore actual) {
+
+        Assert.assertEquals(entities(expected), entities(actual));
+        Assert.assertEquals(links(expected), links(actual));
+        Assert.assertEquals(expected.getEntityCount(), actual.getEntityCount());
+        Assert.assertEquals(expected.getLinkCount(), actual.getLinkCount());
+        Assert.assertEquals(expected.getLargestId(), actual.getLargestId());
+
+        EntityCursor entities = expected.entityCursor();
+
+        while (entities.next()) {
+            Assert.assertEquals(neighbours(expected, entities.id(), true), neighbours(actual, entities.id(), true));
+            Assert.assertEquals(neighbours(expected, entities.id(), false), neighbours(actual, entities.id(), false));
+        }
+    }
+
+    private static List<String> entities(GraphStore store) {
+
+        List<Integer> ids = new ArrayList<>();
+        EntityCursor cursor = store.entityCursor();
+
+        while (cursor.next()) {
+            ids.add(cursor.id());
+        }
+
+        Collections.sort(ids);
+
+        List<String> entities = new ArrayList<>();
+        for (int id : ids) {
+            entities.add(id + ":" + store.getName(id) + ":" + store.getDescription(id));
+        }
+
+        return entities;
+    }
+
+    private static List<String> links(GraphStore store) {
+
+        List<String> links = new ArrayList<>();
+        LinkCursor cursor = store.linkCursor(0);
+
+        while (cursor.next()) {
+            links.add(cursor.from() + "->" + cursor.to());
+        }
+
+        Collections.sort(links);
+
+        return links;
+    }
+
+    private static String neighbours(GraphStore store, int id, boolean incoming) {
+
+        IntList list = new IntList();
+
+        if (incoming) {
+            store.copyIncoming(id, list);
+        } else {
+            store.copyOutgoing(id, list);
+        }
+
+        int[] sorted = list.toArray();
+        Arrays.sort(sorted);
+
+        return Arrays.toString(sorted);
+    }
+}
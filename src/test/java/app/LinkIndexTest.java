@@ -0,0 +1,271 @@
+package app;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.metrics.Metrics;
+import app.model.Link;
+import app.store.LinkCursor;
+import app.store.StorageMode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parser.GraphUpdate;
+import parser.InvalidJsonFormatException;
+import parser.ParserOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+public class LinkIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that duplicate links are dropped while loading JSON in every storage mode keeping the first occurrence,
+     * and while loading snapshot keeping one of each, and that dropped links are counted
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testDeduplicate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        Random random = new Random(23);
+        List<Link> links = randomLinks(random, 30, 200);
+        File file = writeGraph(30, links);
+
+        List<String> expected = new ArrayList<>();
+        for (Link link : new LinkedHashSet<>(links)) {
+            expected.add(link.getFrom() + "->" + link.getTo());
+        }
+
+        for (StorageMode mode : StorageMode.values()) {
+
+            App app = new App(mode);
+            app.setMetrics(new Metrics());
+            app.parseFile(file.getPath(), deduplicating());
+
+            // Object graph lists links grouped by source entity, order of links of each entity is compared
+            Assert.assertEquals(bySource(expected), bySource(links(app)));
+            Assert.assertEquals(links.size() - expected.size(), app.getMetrics().getDuplicateLinks());
+        }
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(file.getPath());
+        Assert.assertEquals(links.size(), app.getStore().getLinkCount());
+
+        File snapshot = folder.newFile();
+        app.writeSnapshot(snapshot.getPath());
+
+        App snapshotApp = new App(StorageMode.COMPACT);
+        snapshotApp.setMetrics(new Metrics());
+        snapshotApp.parseFile(snapshot.getPath(), deduplicating());
+
+        List<String> sorted = new ArrayList<>(expected);
+        Collections.sort(sorted);
+        List<String> actual = links(snapshotApp);
+        Collections.sort(actual);
+
+        Assert.assertEquals(sorted, actual);
+        Assert.assertEquals(links.size() - expected.size(), snapshotApp.getMetrics().getDuplicateLinks());
+    }
+
+    /**
+     * Test that link index follows clones and updates, updates do not add duplicate links, and link lookups
+     * give the same answers with and without the index
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneAndUpdate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        Random random = new Random(29);
+
+        for (StorageMode mode : new StorageMode[]{StorageMode.OBJECT, StorageMode.COMPACT}) {
+
+            File file = writeGraph(20, randomLinks(random, 20, 60));
+
+            App app = new App(mode);
+            app.setMetrics(new Metrics());
+            app.parseFile(file.getPath(), deduplicating());
+            long dropped = app.getMetrics().getDuplicateLinks();
+
+            App plain = new App(mode);
+            plain.parseFile(file.getPath());
+
+            app.clone(1 + random.nextInt(20));
+            app.clone(1 + random.nextInt(20));
+
+            // Links kept and removed by the update do not touch the removed entity
+            List<String> kept = new ArrayList<>();
+            for (String link : links(app)) {
+                if (!link.startsWith("3->") && !link.endsWith("->3")) {
+                    kept.add(link);
+                }
+            }
+
+            int[] existing = ids(kept.get(0));
+            int[] removed = ids(kept.get(1));
+            boolean selfLink = app.containsLink(5, 5);
+
+            GraphUpdate update = new GraphUpdate();
+            update.removeLink(removed[0], removed[1]);
+            update.removeEntity(3);
+            update.addLink(existing[0], existing[1]);
+            update.addLink(existing[0], existing[1]);
+            update.addLink(5, 5);
+            update.addLink(5, 5);
+
+            app.applyUpdate(update);
+
+            Assert.assertEquals(dropped + (selfLink ? 4 : 3), app.getMetrics().getDuplicateLinks());
+            Assert.assertTrue(app.containsLink(existing[0], existing[1]));
+            Assert.assertFalse(app.containsLink(removed[0], removed[1]));
+            Assert.assertTrue(app.containsLink(5, 5));
+
+            List<String> links = links(app);
+            Assert.assertEquals(new LinkedHashSet<>(links).size(), links.size());
+
+            // Index answers the same as scanning adjacency of the same graph
+            App scanning = new App(app.getStore());
+            int largestId = app.getStore().getLargestId();
+
+            for (int i = -1; i <= largestId + 1; i++) {
+                for (int j = -1; j <= largestId + 1; j++) {
+                    Assert.assertEquals(scanning.containsLink(i, j), app.containsLink(i, j));
+                }
+            }
+
+            for (String link : links) {
+                int[] ids = ids(link);
+                Assert.assertTrue(app.containsLink(ids[0], ids[1]));
+            }
+
+            for (int i = 1; i <= largestId; i++) {
+                Assert.assertFalse(app.containsLink(3, i));
+                Assert.assertFalse(app.containsLink(i, 3));
+            }
+
+            Assert.assertEquals(links(plain).contains("1->2"), plain.containsLink(1, 2));
+        }
+    }
+
+    /**
+     * Test that link index follows clones of every batch mode, so links of clones are found and an update
+     * does not add them again
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testBatchClone() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        File file = writeGraph(20, randomLinks(new Random(31), 20, 60));
+
+        for (BatchMode batchMode : BatchMode.values()) {
+            for (StorageMode mode : new StorageMode[]{StorageMode.OBJECT, StorageMode.COMPACT}) {
+
+                App app = new App(mode);
+                app.setMetrics(new Metrics());
+                app.parseFile(file.getPath(), deduplicating());
+                long dropped = app.getMetrics().getDuplicateLinks();
+
+                app.cloneAll(new int[]{1, 2, 3}, batchMode);
+
+                List<String> links = links(app);
+                for (String link : links) {
+                    int[] ids = ids(link);
+                    Assert.assertTrue(batchMode + " " + link, app.containsLink(ids[0], ids[1]));
+                }
+
+                GraphUpdate update = new GraphUpdate();
+                for (String link : links) {
+                    int[] ids = ids(link);
+                    update.addLink(ids[0], ids[1]);
+                }
+
+                app.applyUpdate(update);
+
+                Assert.assertEquals(links, links(app));
+                Assert.assertEquals(dropped + links.size(), app.getMetrics().getDuplicateLinks());
+            }
+        }
+    }
+
+    private static List<String> bySource(List<String> links) {
+        List<String> sorted = new ArrayList<>(links);
+        sorted.sort((a, b) -> Integer.compare(ids(a)[0], ids(b)[0]));
+        return sorted;
+    }
+
+    private static int[] ids(String link) {
+        String[] ids = link.split("->");
+        return new int[]{Integer.parseInt(ids[0]), Integer.parseInt(ids[1])};
+    }
+
+    private static ParserOptions deduplicating() {
+        ParserOptions options = new ParserOptions();
+        options.setDeduplicateLinks(true);
+        return options;
+    }
+
+    /**
+     * Random links between entities 1 to entityCount, a third of them repeat earlier links
+     */
+    private static List<Link> randomLinks(Random random, int entityCount, int count) {
+
+        List<Link> links = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            if (!links.isEmpty() && random.nextInt(3) == 0) {
+                links.add(links.get(random.nextInt(links.size())));
+            } else {
+                links.add(new Link(1 + random.nextInt(entityCount), 1 + random.nextInt(entityCount)));
+            }
+        }
+
+        return links;
+    }
+
+    private File writeGraph(int entityCount, List<Link> links) throws IOException {
+
+        File file = folder.newFile();
+
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+
+            writer.println("{\"entities\": [");
+            for (int id = 1; id <= entityCount; id++) {
+                writer.println((id > 1 ? "," : "") + "{\"entity_id\": " + id + ", \"name\": \"Entity" + id + "\"}");
+            }
+
+            writer.println("], \"links\": [");
+            for (int i = 0; i < links.size(); i++) {
+                writer.println((i > 0 ? "," : "") + "{\"from\": " + links.get(i).getFrom() + ", \"to\": " + links.get(i).getTo() + "}");
+            }
+
+            writer.println("]}");
+        }
+
+        return file;
+    }
+
+    private static List<String> links(App app) {
+
+        List<String> links = new ArrayList<>();
+        LinkCursor cursor = app.getStore().linkCursor(0);
+
+        while (cursor.next()) {
+            links.add(cursor.from() + "->" + cursor.to());
+        }
+
+        return links;
+    }
+}
@@ -0,0 +1,114 @@
+package app;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.store.CompactGraphBuilder;
+import app.store.StorageMode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class ReachabilityIndexTest {
+
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Test that cyclic graph is condensed and clone sizes are estimated without cloning
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testValidCyclicFile() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (StorageMode mode : new StorageMode[]{StorageMode.OBJECT, StorageMode.COMPACT}) {
+
+            App app = new App(mode);
+            app.parseFile(VALID_CYCLIC_JSON_FILE);
+
+            ReachabilityIndex index = app.getReachabilityIndex();
+
+            Assert.assertEquals(2, index.getComponentCount());
+            Assert.assertEquals(4, index.getComponentSize(3));
+            Assert.assertEquals(1, index.getComponentSize(11));
+
+            CloneEstimate estimate = app.estimateClone(5);
+            Assert.assertEquals(5, estimate.getEntityCount());
+            Assert.assertEquals(5, estimate.getLinkCount());
+
+            estimate = app.estimateClone(11);
+            Assert.assertEquals(1, estimate.getEntityCount());
+            Assert.assertEquals(1, estimate.getLinkCount());
+
+            Assert.assertEquals(5, app.getStore().getEntityCount());
+            Assert.assertSame(index, app.getReachabilityIndex());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            app.writeCloneEstimates(new int[]{5, 11}, out, 16);
+            Assert.assertEquals("{\"estimates\":[{\"entity_id\":5,\"entities\":5,\"links\":5},"
+                    + "{\"entity_id\":11,\"entities\":1,\"links\":1}]}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test that estimates match the clones on random graphs, also after the graph has been changed by cloning
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testSameAsClone() throws InvalidEntityLinkException {
+
+        Random random = new Random(19);
+
+        for (int round = 0; round < 30; round++) {
+
+            int entityCount = 1 + random.nextInt(500);
+            int linkCount = random.nextInt(entityCount * (1 + round % 3));
+            CompactGraphBuilder builder = new CompactGraphBuilder();
+
+            for (int id = 0; id < entityCount; id++) {
+                builder.addEntity(id, "Entity" + id, null);
+            }
+
+            for (int i = 0; i < linkCount; i++) {
+                builder.addLink(random.nextInt(entityCount), random.nextInt(entityCount));
+            }
+
+            App app = new App(builder.build());
+
+            for (int i = 0; i < 5; i++) {
+
+                int root = random.nextInt(entityCount);
+                CloneEstimate estimate = app.estimateClone(root);
+                CloneResult result = app.clone(root);
+
+                Assert.assertEquals(result.getCloneIds().length, estimate.getEntityCount());
+                Assert.assertEquals(result.getLinkCount(), estimate.getLinkCount());
+            }
+        }
+    }
+
+    /**
+     * Test that estimate of unknown entity is rejected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testUnknownEntity() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("No entity found with ID 4");
+
+        App app = new App();
+        app.parseFile(VALID_CYCLIC_JSON_FILE);
+        app.estimateClone(4);
+    }
+}
@@ -0,0 +1,284 @@
+package app.external;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.generator.GraphGenerator;
+import app.generator.Topology;
+import app.store.StorageMode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import parser.FileParser;
+import parser.InvalidJsonFormatException;
+import parser.ParserOptions;
+import parser.ParsingSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ExternalClonerTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that delta of external clone is the same as of breadth first traversal in memory,
+     * whether the graph fits the budget or is spilled to many runs
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testDeltaMatchesParallelTraversal() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try {
+            for (String file : inputFiles()) {
+                for (int root : new int[]{firstEntityId(file), 5, 17}) {
+
+                    App expected = new App(StorageMode.COMPACT);
+                    expected.parseFile(file);
+                    if (!expected.getStore().containsEntity(root)) {
+                        continue;
+                    }
+
+                    CloneResult result = expected.clone(root, pool);
+                    ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+                    expected.writeClonedElementsAndLinks(result, true, expectedOut, 16);
+
+                    for (long budget : new long[]{64L << 20, 16 * 1024}) {
+                        Assert.assertEquals(expectedOut.toString("UTF-8"), cloneExternal(file, root, budget, true));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test that whole graph output has the same entities and links as the graph cloned in memory,
+     * originals in input order first
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testGraphMatchesParallelTraversal() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try {
+            for (String file : inputFiles()) {
+
+                int root = firstEntityId(file);
+                App expected = new App(StorageMode.OBJECT);
+                expected.parseFile(file);
+                expected.clone(root, pool);
+
+                File expectedFile = folder.newFile();
+                try (OutputStream out = new FileOutputStream(expectedFile)) {
+                    expected.writeElementsAndLinks(out, 16);
+                }
+
+                File actualFile = folder.newFile();
+                Files.write(actualFile.toPath(), cloneExternal(file, root, 16 * 1024, false).getBytes(StandardCharsets.UTF_8));
+
+                List<String> actual = read(actualFile);
+                for (String kind : new String[]{"entity", "link"}) {
+                    List<String> input = select(read(new File(file)), kind);
+                    Assert.assertEquals(input, select(actual, kind).subList(0, input.size()));
+                }
+
+                List<String> expectedElements = read(expectedFile);
+                Collections.sort(expectedElements);
+                Collections.sort(actual);
+                Assert.assertEquals(expectedElements, actual);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test that unknown entity is rejected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testUnknownEntity() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Entity with ID 4 not found");
+
+        cloneExternal(VALID_JSON_FILE, 4, 1 << 20, true);
+    }
+
+    /**
+     * Test that link to a missing entity reachable from the cloned entity is rejected
+     * and that scratch files are deleted
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testMissingEntity() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        File file = folder.newFile("missing.json");
+        Files.write(file.toPath(), ("{\"entities\":[{\"entity_id\":1},{\"entity_id\":3}]," +
+                "\"links\":[{\"from\":1,\"to\":2},{\"from\":3,\"to\":1}]}").getBytes(StandardCharsets.UTF_8));
+
+        File scratch = folder.newFolder();
+        ExternalCloner cloner = new ExternalCloner(scratch, 1 << 20);
+
+        try {
+            cloner.clone(new FileParser(file.getPath()), 3, true, false, new ByteArrayOutputStream(), 16);
+            Assert.fail();
+        } catch (InvalidEntityLinkException e) {
+            Assert.assertEquals("No entity found with ID 2", e.getMessage());
+        }
+
+        Assert.assertEquals(0, scratch.list().length);
+    }
+
+    /**
+     * Test that links to missing entities are rejected also when they are not reachable from the cloned entity,
+     * in output of both the whole graph and the delta
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testUnreachableMissingEntity() throws InvalidJsonFormatException, InvalidEntityLinkException,
+            IOException {
+
+        // Link 3 -> 4 is not reachable from entity 1, link 5 -> 1 links missing entity to it
+        String[] links = {"{\"from\":3,\"to\":4}", "{\"from\":5,\"to\":1}"};
+        int[] missing = {3, 5};
+
+        for (int i = 0; i < links.length; i++) {
+
+            File file = folder.newFile("unreachable-" + i + ".json");
+            Files.write(file.toPath(), ("{\"entities\":[{\"entity_id\":1},{\"entity_id\":2}]," +
+                    "\"links\":[{\"from\":1,\"to\":2}," + links[i] + "]}").getBytes(StandardCharsets.UTF_8));
+
+            for (boolean delta : new boolean[]{false, true}) {
+
+                File scratch = folder.newFolder();
+                ExternalCloner cloner = new ExternalCloner(scratch, 1 << 20);
+
+                try {
+                    cloner.clone(new FileParser(file.getPath()), 1, delta, delta, new ByteArrayOutputStream(), 16);
+                    Assert.fail();
+                } catch (InvalidEntityLinkException e) {
+                    Assert.assertEquals("No entity found with ID " + missing[i], e.getMessage());
+                }
+
+                Assert.assertEquals(0, scratch.list().length);
+            }
+        }
+    }
+
+    private String cloneExternal(String file, int root, long budget, boolean delta)
+            throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        File scratch = folder.newFolder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExternalCloner(scratch, budget).clone(new ParserOptions().createParser(file), root, delta, delta, out, 16);
+
+        Assert.assertEquals(0, scratch.list().length);
+
+        return out.toString("UTF-8");
+    }
+
+    private List<String> inputFiles() throws IOException {
+
+        List<String> files = new ArrayList<>();
+        files.add(VALID_JSON_FILE);
+        files.add(VALID_CYCLIC_JSON_FILE);
+
+        for (Topology topology : new Topology[]{Topology.RANDOM, Topology.POWER_LAW, Topology.CHAINS, Topology.CLUSTERS}) {
+
+            GraphGenerator generator = new GraphGenerator();
+            generator.setEntityCount(2000);
+            generator.setTopology(topology);
+            generator.setChainLength(50);
+            generator.setClusterSize(20);
+            generator.setSelfLoopFraction(0.05);
+
+            File file = folder.newFile(topology.name() + ".json");
+            try (OutputStream out = new FileOutputStream(file)) {
+                generator.write(out);
+            }
+            files.add(file.getPath());
+        }
+
+        // Clone IDs start after 0 when all input IDs are negative
+        File negative = folder.newFile("negative.json");
+        Files.write(negative.toPath(), ("{\"entities\": [{\"entity_id\": -5, \"name\": \"EntityA\"}, " +
+                "{\"entity_id\": -3, \"name\": \"EntityB\"}], " +
+                "\"links\": [{\"from\": -5, \"to\": -3}]}").getBytes(StandardCharsets.UTF_8));
+        files.add(negative.getPath());
+
+        return files;
+    }
+
+    private static int firstEntityId(String file) throws IOException, InvalidJsonFormatException {
+        return Integer.parseInt(select(read(new File(file)), "entity").get(0).split(" ")[1]);
+    }
+
+    private static List<String> select(List<String> elements, String kind) {
+
+        List<String> selected = new ArrayList<>();
+
+        for (String element : elements) {
+            if (element.startsWith(kind + " ")) {
+                selected.add(element);
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * @return Entities and links of JSON file as text, in file order
+     */
+    private static List<String> read(File file) throws IOException, InvalidJsonFormatException {
+
+        List<String> elements = new ArrayList<>();
+
+        new FileParser(file.getPath()).parse(new ParsingSink() {
+
+            @Override
+            public void addEntity(int id, String name, String description) {
+                elements.add(String.format("entity %d %s %s", id, name, description));
+            }
+
+            @Override
+            public void addLink(int from, int to) {
+                elements.add(String.format("link %d %d", from, to));
+            }
+        });
+
+        return elements;
+    }
+}
@@ -0,0 +1,64 @@
+package app.external;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class RecordSorterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that records spilled to many runs and merged in several passes are read in stable key order
+     * with their values and data, and that run files are deleted on close
+     * @throws IOException
+     */
+    @Test
+    public void testSortSpilled() throws IOException {
+
+        for (long budget : new long[]{1 << 20, 16 * 1024, 4 * 1024}) {
+
+            Random random = new Random(budget);
+            List<long[]> expected = new ArrayList<>();
+
+            try (RecordSorter sorter = new RecordSorter(folder.getRoot(), budget, 1024)) {
+
+                for (int i = 0; i < 5000; i++) {
+                    long key = random.nextInt(500) - 250;
+                    byte[] data = i % 3 == 0 ? new byte[i % 50] : new byte[0];
+                    Arrays.fill(data, (byte) i);
+                    sorter.add(key, i, data);
+                    expected.add(new long[]{key, i, data.length});
+                }
+
+                Assert.assertEquals(budget > 1 << 16, sorter.getRunCount() == 0);
+
+                expected.sort(Comparator.comparingLong(record -> record[0]));
+
+                try (RecordReader reader = sorter.sorted()) {
+                    for (long[] record : expected) {
+                        Assert.assertTrue(reader.next());
+                        Assert.assertEquals(record[0], reader.key());
+                        Assert.assertEquals(record[1], reader.value());
+                        Assert.assertEquals(record[2], reader.data().length);
+                        for (byte b : reader.data()) {
+                            Assert.assertEquals((byte) record[1], b);
+                        }
+                    }
+                    Assert.assertFalse(reader.next());
+                }
+            }
+
+            Assert.assertEquals(0, folder.getRoot().list().length);
+        }
+    }
+}
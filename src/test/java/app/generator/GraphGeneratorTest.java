@@ -0,0 +1,141 @@
+package app.generator;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class GraphGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that graphs of every topology are valid input with all entities and links
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testTopologies() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (Topology topology : Topology.values()) {
+
+            GraphGenerator generator = new GraphGenerator();
+            generator.setTopology(topology);
+            generator.setEntityCount(2000);
+            generator.setSelfLoopFraction(0.1);
+
+            File file = folder.newFile(topology.name() + ".json");
+            long linkCount;
+
+            try (OutputStream out = new FileOutputStream(file)) {
+                linkCount = generator.write(out);
+            }
+
+            App app = new App(StorageMode.COMPACT);
+            app.parseFile(file.getPath());
+
+            Assert.assertEquals(2000, app.getStore().getEntityCount());
+            Assert.assertEquals(linkCount, app.getStore().getLinkCount());
+            Assert.assertEquals(2000, app.getStore().getLargestId());
+        }
+    }
+
+    /**
+     * Test that chains and clusters are disjoint and clusters are strongly connected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testChainsAndClusters() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        GraphGenerator generator = new GraphGenerator();
+        generator.setTopology(Topology.CHAINS);
+        generator.setEntityCount(95);
+        generator.setChainLength(10);
+
+        App app = generate(generator);
+
+        Assert.assertEquals(85, app.getStore().getLinkCount());
+        Assert.assertEquals(10, app.clone(11).size());
+        Assert.assertEquals(5, app.clone(91).size());
+
+        generator.setTopology(Topology.CLUSTERS);
+        generator.setClusterSize(20);
+
+        app = generate(generator);
+
+        // Last entity of a cluster reaches the whole cluster, but not the next one
+        Assert.assertEquals(20, app.clone(40).size());
+        Assert.assertEquals(15, app.clone(95).size());
+    }
+
+    /**
+     * Test that output depends only on options and seed
+     * @throws IOException
+     */
+    @Test
+    public void testSeed() throws IOException {
+
+        GraphGenerator generator = new GraphGenerator();
+        generator.setTopology(Topology.POWER_LAW);
+
+        String first = write(generator);
+        Assert.assertEquals(first, write(generator));
+
+        generator.setSeed(2);
+        Assert.assertNotEquals(first, write(generator));
+    }
+
+    /**
+     * Test that entity count estimated for output size gives output of about that size
+     * @throws IOException
+     */
+    @Test
+    public void testEstimateEntityCount() throws IOException {
+
+        for (Topology topology : Topology.values()) {
+
+            GraphGenerator generator = new GraphGenerator();
+            generator.setTopology(topology);
+            generator.setEntityCount(generator.estimateEntityCount(1 << 20));
+
+            double ratio = write(generator).length() / (double) (1 << 20);
+            Assert.assertTrue(topology + " " + ratio, ratio > 0.9 && ratio < 1.1);
+        }
+    }
+
+    private App generate(GraphGenerator generator) throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        File file = folder.newFile();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            generator.write(out);
+        }
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(file.getPath());
+
+        return app;
+    }
+
+    private static String write(GraphGenerator generator) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,114 @@
+package app.metrics;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import parser.InvalidJsonFormatException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+public class MetricsTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+
+    /**
+     * Test that phases and counters of parse, clone and output are recorded in stats
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testStats() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (StorageMode storageMode : new StorageMode[]{StorageMode.OBJECT, StorageMode.COMPACT}) {
+
+            App app = new App(storageMode);
+            app.setMetrics(new Metrics());
+            app.parseFile(VALID_JSON_FILE);
+            app.clone(5);
+
+            ByteArrayOutputStream graph = new ByteArrayOutputStream();
+            app.writeElementsAndLinks(graph, 1024);
+
+            ByteArrayOutputStream stats = new ByteArrayOutputStream();
+            app.getMetrics().writeStats(stats);
+            JsonNode node = new ObjectMapper().readTree(stats.toByteArray());
+
+            for (String phase : new String[]{"parse", "build", "clone", "serialize"}) {
+                Assert.assertEquals(1, node.get("phases").get(phase).get("count").asInt());
+                Assert.assertTrue(node.get("phases").get(phase).get("ms").asDouble() >= 0);
+            }
+
+            Assert.assertNull(node.get("phases").get("load_snapshot"));
+            Assert.assertEquals(4, node.get("entities_parsed").asInt());
+            Assert.assertEquals(4, node.get("links_parsed").asInt());
+            Assert.assertEquals(1, node.get("clones").asInt());
+            Assert.assertEquals(3, node.get("cloned_entities").asInt());
+            Assert.assertEquals(3, node.get("cloned_links").asInt());
+            Assert.assertEquals(2, node.get("traversal_steps").asInt());
+            Assert.assertEquals(graph.size(), node.get("bytes_written").asInt());
+            Assert.assertTrue(node.get("peak_heap_bytes").asLong() > 0);
+        }
+    }
+
+    /**
+     * Test that disabled metrics record nothing and do not wrap output
+     */
+    @Test
+    public void testDisabled() {
+
+        Metrics metrics = Metrics.DISABLED;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        metrics.end(Phase.CLONE, metrics.start());
+        metrics.cloned(10, 10, 10);
+        metrics.parsed(10, 10);
+
+        Assert.assertSame(out, metrics.countBytes(out));
+        Assert.assertTrue(metrics.getPhaseCounts().isEmpty());
+        Assert.assertEquals(0, metrics.getClones());
+        Assert.assertEquals(0, metrics.getEntitiesParsed());
+        Assert.assertEquals(0, metrics.getPeakHeapBytes());
+    }
+
+    /**
+     * Test that registered metrics are readable through platform MBean server
+     * @throws JMException
+     */
+    @Test
+    public void testMBean() throws JMException {
+
+        Metrics metrics = new Metrics();
+        metrics.register();
+        metrics.cloned(3, 2, 5);
+        metrics.end(Phase.CLONE, metrics.start());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+
+        Assert.assertEquals(1L, server.getAttribute(name, "Clones"));
+        Assert.assertEquals(5L, server.getAttribute(name, "TraversalSteps"));
+
+        // Peak is heap used at the end of the phase, not more than the heap committed then
+        long peak = (Long) server.getAttribute(name, "PeakHeapBytes");
+        Assert.assertTrue(peak > 0);
+        Assert.assertTrue(peak <= Runtime.getRuntime().totalMemory());
+
+        // Registering again replaces the metrics
+        new Metrics().register();
+        Assert.assertEquals(0L, server.getAttribute(name, "Clones"));
+
+        server.invoke(name, "reset", null, null);
+        Assert.assertEquals(0L, server.getAttribute(name, "PeakHeapBytes"));
+        server.unregisterMBean(name);
+    }
+}
@@ -0,0 +1,113 @@
+package app.output;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.StorageMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class GraphJsonWriterTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+
+    /**
+     * Test that streamed output is the same as output of ObjectMapper, also with tiny buffer
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testSameAsObjectMapper() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App();
+        app.parseFile(VALID_CYCLIC_JSON_FILE);
+        app.clone(app.findEntity(5));
+
+        Map<String, Collection<?>> outputMap = new HashMap<>();
+        outputMap.put("entities", app.getEntityMap().values());
+        outputMap.put("links", app.getLinks());
+
+        byte[] expected = new ObjectMapper().writeValueAsBytes(outputMap);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        app.writeElementsAndLinks(out, 1);
+
+        Assert.assertArrayEquals(expected, out.toByteArray());
+        Assert.assertEquals(new String(expected, "UTF-8"), app.printElementsAndLinks());
+    }
+
+    /**
+     * Test that compact storage is written in the same format, and that channel output works
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCompactStorageToChannel() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App objectApp = new App();
+        objectApp.parseFile(VALID_CYCLIC_JSON_FILE);
+        objectApp.clone(5);
+
+        App compactApp = new App(StorageMode.COMPACT);
+        compactApp.parseFile(VALID_CYCLIC_JSON_FILE);
+        compactApp.clone(5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GraphJsonWriter writer = new GraphJsonWriter(Channels.newChannel(out), 64)) {
+            writer.writeGraph(compactApp.getStore());
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        // Order of entities and links depends on storage, so only the content is compared
+        Map<?, ?> expected = mapper.readValue(objectApp.printElementsAndLinks(), Map.class);
+        Map<?, ?> actual = mapper.readValue(out.toByteArray(), Map.class);
+
+        Assert.assertEquals(new HashSet<>((Collection<?>) expected.get("entities")),
+                new HashSet<>((Collection<?>) actual.get("entities")));
+        Assert.assertEquals(new HashSet<>((Collection<?>) expected.get("links")),
+                new HashSet<>((Collection<?>) actual.get("links")));
+    }
+
+    /**
+     * Test that delta contains only cloned entities, new links and ID mapping
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testDelta() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (StorageMode storageMode : StorageMode.values()) {
+
+            App app = new App(storageMode);
+            app.parseFile(VALID_JSON_FILE);
+            CloneResult result = app.clone(5);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            app.writeClonedElementsAndLinks(result, true, out, GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+            Assert.assertEquals("{\"entities\":[" +
+                    "{\"name\":\"EntityB\",\"entity_id\":12}," +
+                    "{\"name\":\"EntityC\",\"description\":\"More details about entity C\",\"entity_id\":13}," +
+                    "{\"name\":\"EntityD\",\"entity_id\":14}]," +
+                    "\"links\":[{\"from\":3,\"to\":12},{\"from\":12,\"to\":13},{\"from\":13,\"to\":14}]," +
+                    "\"id_map\":[{\"original_id\":5,\"clone_id\":12},{\"original_id\":7,\"clone_id\":13}," +
+                    "{\"original_id\":11,\"clone_id\":14}]}", new String(out.toByteArray(), "UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package app.output;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.CompactGraphBuilder;
+import app.store.GraphStore;
+import app.store.ObjectGraphStore;
+import app.store.offheap.OffHeapMemory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import parser.ParsingResult;
+import parser.ParsingSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelGraphJsonWriterTest {
+
+    private static final String[] NAMES = {"EntityA", null, "Entity \"B\"", "Entit\u00e4t\nC", "\ud83d\ude00", ""};
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that output is the same as of the sequential writer for every storage, chunk size and number of threads,
+     * also when buffers are smaller than chunks, the channel writes a few bytes at a time and the writer is reused
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testSameAsSequential() throws InvalidEntityLinkException, IOException {
+
+        Random random = new Random(23);
+
+        for (int entityCount : new int[]{0, 1, 50, 3000}) {
+
+            int linkCount = entityCount == 0 ? 0 : random.nextInt(3 * entityCount);
+            ParsingResult result = new ParsingResult();
+            CompactGraphBuilder compact = new CompactGraphBuilder();
+            CompactGraphBuilder offHeap = new CompactGraphBuilder(OffHeapMemory.direct());
+            generate(random, entityCount, linkCount, result, compact, offHeap);
+
+            for (GraphStore store : new GraphStore[]{new ObjectGraphStore(result), compact.build(), offHeap.build()}) {
+
+                byte[] expected = sequential(store);
+
+                for (int threads : new int[]{1, 3}) {
+
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+
+                    for (int chunkSize : new int[]{1, 7, ParallelGraphJsonWriter.DEFAULT_CHUNK_SIZE}) {
+                        try (ParallelGraphJsonWriter writer = new ParallelGraphJsonWriter(pool, chunkSize, 16)) {
+                            for (int i = 0; i < 2; i++) {
+                                ChunkedChannel channel = new ChunkedChannel(1 + random.nextInt(100), -1);
+                                Assert.assertEquals(expected.length, writer.writeGraph(store, channel));
+                                Assert.assertArrayEquals(expected, channel.toByteArray());
+                            }
+                        }
+                    }
+
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that output written to a file by the app is the same as sequential output, also when the app writes
+     * again with the same writer after a clone
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testFileChannel() throws InvalidEntityLinkException, IOException {
+
+        ParsingResult result = new ParsingResult();
+        generate(new Random(29), 10000, 30000, result);
+
+        App app = new App(new ObjectGraphStore(result));
+
+        try (ParallelGraphJsonWriter writer = new ParallelGraphJsonWriter(ForkJoinPool.commonPool(),
+                ParallelGraphJsonWriter.DEFAULT_CHUNK_SIZE, GraphJsonWriter.DEFAULT_BUFFER_SIZE)) {
+
+            for (int write = 0; write < 2; write++) {
+
+                File file = folder.newFile();
+
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    app.writeElementsAndLinks(out.getChannel(), writer);
+                }
+
+                Assert.assertArrayEquals(sequential(app.getStore()), Files.readAllBytes(file.toPath()));
+
+                app.clone(1);
+            }
+        }
+    }
+
+    /**
+     * Test that failed write is reported and the writer can be used again
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testFailedWrite() throws InvalidEntityLinkException, IOException {
+
+        ParsingResult result = new ParsingResult();
+        generate(new Random(31), 1000, 3000, result);
+        GraphStore store = new ObjectGraphStore(result);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try (ParallelGraphJsonWriter writer = new ParallelGraphJsonWriter(pool, 10, 64)) {
+
+            try {
+                writer.writeGraph(store, new ChunkedChannel(1000, 5));
+                Assert.fail("Write should fail");
+            } catch (IOException e) {
+                Assert.assertEquals("Channel closed", e.getMessage());
+            }
+
+            ChunkedChannel channel = new ChunkedChannel(Integer.MAX_VALUE, -1);
+            writer.writeGraph(store, channel);
+            Assert.assertArrayEquals(sequential(store), channel.toByteArray());
+
+            thrown.expect(IOException.class);
+            writer.writeGraph(store, new ChunkedChannel(1000, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static byte[] sequential(GraphStore store) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GraphJsonWriter writer = new GraphJsonWriter(out)) {
+            writer.writeGraph(store);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void generate(Random random, int entityCount, int linkCount, ParsingSink... sinks) {
+
+        for (int id = 1; id <= entityCount; id++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            String description = random.nextBoolean() ? null : NAMES[random.nextInt(NAMES.length)] + id;
+            for (ParsingSink sink : sinks) {
+                sink.addEntity(id, name, description);
+            }
+        }
+
+        for (int i = 0; i < linkCount; i++) {
+            int from = 1 + random.nextInt(entityCount);
+            int to = 1 + random.nextInt(entityCount);
+            for (ParsingSink sink : sinks) {
+                sink.addLink(from, to);
+            }
+        }
+    }
+
+    /**
+     * Channel writing at most the given number of bytes per write, failing after the given number of writes
+     */
+    private static class ChunkedChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int maxBytes;
+        private int writesLeft;
+
+        ChunkedChannel(int maxBytes, int failAfter) {
+            this.maxBytes = maxBytes;
+            this.writesLeft = failAfter;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+
+            if (writesLeft-- == 0) {
+                throw new IOException("Channel closed");
+            }
+
+            long written = 0;
+
+            for (int i = offset; i < offset + length && written < maxBytes; i++) {
+                while (sources[i].hasRemaining() && written < maxBytes) {
+                    out.write(sources[i].get());
+                    written++;
+                }
+            }
+
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) throws IOException {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            return (int) write(new ByteBuffer[]{source});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package app.server;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.output.GraphJsonWriter;
+import app.store.StorageMode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CloneServerTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+
+    private CloneServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test that server responds with the same delta and graph as the app does
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testClone() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App expected = new App();
+        expected.parseFile(VALID_JSON_FILE);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        expected.writeClonedElementsAndLinks(expected.clone(5), true, delta, GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+
+        startServer(StorageMode.OBJECT, 2);
+
+        Assert.assertEquals(delta.toString("UTF-8"), get("/clone?id=5&delta&id-map"));
+        Assert.assertEquals(expected.printElementsAndLinks(), get("/graph"));
+
+        // Clones stay in the graph, next clone gets new IDs
+        JsonNode graph = new ObjectMapper().readTree(get("/clone?id=5"));
+        Assert.assertEquals(10, graph.get("entities").size());
+    }
+
+    /**
+     * Test that invalid and unknown entity IDs are rejected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidRequests() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        startServer(StorageMode.OBJECT, 1);
+
+        Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, status("/clone?id=abc"));
+        Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, status("/clone"));
+        Assert.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, status("/clone?id=4"));
+    }
+
+    /**
+     * Test that concurrent clone and graph requests are serialized correctly, every clone gets its own IDs
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRequests() throws Exception {
+
+        int clients = 8;
+        int requestsPerClient = 20;
+
+        startServer(StorageMode.COMPACT, 4);
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<List<String>>> futures = new ArrayList<>();
+
+        for (int client = 0; client < clients; client++) {
+            futures.add(pool.submit(() -> {
+
+                List<String> responses = new ArrayList<>();
+
+                for (int i = 0; i < requestsPerClient; i++) {
+                    responses.add(get("/clone?id=5&delta"));
+                    new ObjectMapper().readTree(get("/graph"));
+                }
+
+                return responses;
+            }));
+        }
+
+        Set<Integer> cloneIds = new HashSet<>();
+
+        for (Future<List<String>> future : futures) {
+            for (String response : future.get()) {
+                for (JsonNode entity : new ObjectMapper().readTree(response).get("entities")) {
+                    Assert.assertTrue(cloneIds.add(entity.get("entity_id").asInt()));
+                }
+            }
+        }
+
+        pool.shutdown();
+
+        Assert.assertEquals(clients * requestsPerClient * 3, cloneIds.size());
+
+        JsonNode graph = new ObjectMapper().readTree(get("/graph"));
+        Assert.assertEquals(4 + cloneIds.size(), graph.get("entities").size());
+        Assert.assertEquals(4 + clients * requestsPerClient * 3, graph.get("links").size());
+    }
+
+    /**
+     * Test that posted update changes the resident graph and invalid update is rejected
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testUpdate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        startServer(StorageMode.COMPACT, 1);
+
+        Assert.assertEquals("{\"entities\":3,\"links\":4}",
+                post("/update", "{\"removed_entities\": [{\"entity_id\": 11}], \"links\": [{\"from\": 7, \"to\": 3}]}"));
+
+        // 7 links back to 3, so all three remaining entities are cloned
+        JsonNode delta = new ObjectMapper().readTree(get("/clone?id=5&delta"));
+        Assert.assertEquals(3, delta.get("entities").size());
+
+        HttpURLConnection connection = open("/update");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("{\"removed_links\": [{\"from\": 11, \"to\": 3}]}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, connection.getResponseCode());
+
+        Assert.assertEquals(HttpURLConnection.HTTP_BAD_METHOD, status("/update"));
+    }
+
+    /**
+     * Test that malformed update is answered with bad request and does not change the graph
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testTruncatedUpdate() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        startServer(StorageMode.OBJECT, 1);
+        String graph = get("/graph");
+
+        for (String body : new String[]{"{\"links\": [{\"from\": 7, \"to\": 3}", "{\"links\": [{\"from\": 7,, ", ""}) {
+
+            HttpURLConnection connection = open("/update");
+            connection.setDoOutput(true);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, connection.getResponseCode());
+        }
+
+        Assert.assertEquals(graph, get("/graph"));
+    }
+
+    private String post(String path, String body) throws IOException {
+
+        HttpURLConnection connection = open(path);
+        connection.setDoOutput(true);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assert.assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                response.write(buffer, 0, count);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void startServer(StorageMode storageMode, int threads)
+            throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App(storageMode);
+        app.parseFile(VALID_JSON_FILE);
+
+        server = new CloneServer(app, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), threads,
+                GraphJsonWriter.DEFAULT_BUFFER_SIZE);
+        server.start();
+    }
+
+    private String get(String path) throws IOException {
+
+        HttpURLConnection connection = open(path);
+        Assert.assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                body.write(buffer, 0, count);
+            }
+        }
+
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int status(String path) throws IOException {
+
+        HttpURLConnection connection = open(path);
+        int status = connection.getResponseCode();
+        connection.disconnect();
+
+        return status;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+                server.getPort(), path).openConnection();
+    }
+}
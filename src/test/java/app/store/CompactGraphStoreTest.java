@@ -0,0 +1,219 @@
+package app.store;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.model.Entity;
+import app.util.IntList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import parser.InvalidJsonFormatException;
+import parser.ParsingResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CompactGraphStoreTest {
+
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+    private static final String INVALID_LINKS_JSON_FILE = "data/invalid-links.json";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Test that compact store clones cyclic graph the same way as object store
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testValidCyclicFile() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(VALID_CYCLIC_JSON_FILE);
+
+        Entity entity = app.findEntity(5);
+        Assert.assertEquals("EntityB", entity.getName());
+
+        CloneResult result = app.clone(entity);
+        GraphStore store = app.getStore();
+
+        Assert.assertArrayEquals(new int[]{13, 14, 15, 16, 17}, result.getCloneIds());
+        Assert.assertArrayEquals(new int[]{5, 7, 11, 12, 3}, result.getOriginalIds());
+        Assert.assertEquals("More details about entity C", store.getDescription(14));
+
+        Assert.assertArrayEquals(new int[]{17}, outgoing(store, 16, false));
+        Assert.assertArrayEquals(new int[]{15, 16}, outgoing(store, 14, false));
+        Assert.assertArrayEquals(new int[]{5, 7, 13}, outgoing(store, 3, false));
+        Assert.assertArrayEquals(new int[]{12}, outgoing(store, 3, true));
+        Assert.assertArrayEquals(new int[0], outgoing(store, 17, false));
+
+        Assert.assertEquals(11, store.getLinkCount());
+        Assert.assertEquals(10, store.getEntityCount());
+    }
+
+    /**
+     * Test that invalid entity-link structure is handled correctly
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidLinks() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+        thrown.expect(InvalidEntityLinkException.class);
+
+        App app = new App(StorageMode.COMPACT);
+        app.parseFile(INVALID_LINKS_JSON_FILE);
+    }
+
+    /**
+     * Test that link cursor enumerates each link exactly once, also when started in the middle
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testLinkCursor() throws InvalidEntityLinkException {
+
+        CompactGraphBuilder builder = new CompactGraphBuilder();
+        builder.addEntity(1, "A", null);
+        builder.addEntity(2, "B", null);
+        builder.addEntity(3, "C", null);
+        builder.addLink(3, 1);
+        builder.addLink(1, 2);
+        builder.addLink(3, 2);
+
+        CompactGraphStore store = builder.build();
+        store.addEntity(4, "D", null);
+        store.addLink(2, 4);
+
+        Assert.assertEquals("[1->2, 3->1, 3->2, 2->4]", links(store, 0).toString());
+        Assert.assertEquals("[3->2, 2->4]", links(store, 2).toString());
+        Assert.assertEquals("[2->4]", links(store, 3).toString());
+    }
+
+    /**
+     * Test that both stores produce the same clones on random graphs
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testSameClonesAsObjectStore() throws InvalidEntityLinkException {
+
+        Random random = new Random(42);
+
+        for (int round = 0; round < 20; round++) {
+
+            int entityCount = 1 + random.nextInt(200);
+            int linkCount = random.nextInt(entityCount * 3);
+
+            ParsingResult parsingResult = new ParsingResult();
+            CompactGraphBuilder builder = new CompactGraphBuilder();
+
+            for (int id = 0; id < entityCount; id++) {
+                parsingResult.addEntity(id * 2, "Entity" + id, null);
+                builder.addEntity(id * 2, "Entity" + id, null);
+            }
+
+            for (int i = 0; i < linkCount; i++) {
+                int from = random.nextInt(entityCount) * 2;
+                int to = random.nextInt(entityCount) * 2;
+                parsingResult.addLink(from, to);
+                builder.addLink(from, to);
+            }
+
+            ObjectGraphStore objectStore = new ObjectGraphStore(parsingResult);
+            CompactGraphStore compactStore = builder.build();
+
+            int root = random.nextInt(entityCount) * 2;
+
+            CloneResult objectResult = clone(objectStore, root);
+            CloneResult compactResult = clone(compactStore, root);
+
+            Assert.assertArrayEquals(objectResult.getOriginalIds(), compactResult.getOriginalIds());
+            Assert.assertArrayEquals(objectResult.getCloneIds(), compactResult.getCloneIds());
+            Assert.assertEquals(objectStore.getLinkCount(), compactStore.getLinkCount());
+
+            for (int id : objectResult.getCloneIds()) {
+                Assert.assertArrayEquals(outgoing(objectStore, id, false), outgoing(compactStore, id, false));
+                Assert.assertArrayEquals(outgoing(objectStore, id, true), outgoing(compactStore, id, true));
+            }
+        }
+    }
+
+    /**
+     * Test that compact store clones share name and description with their originals and that replacing them
+     * on either entity does not change the other
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testCloneSharesAttributes() throws InvalidEntityLinkException {
+
+        CompactGraphBuilder builder = new CompactGraphBuilder();
+
+        for (int id = 1; id <= 3; id++) {
+            builder.addEntity(id, "Entity" + id, "Description" + id);
+        }
+
+        builder.addLink(1, 2);
+        builder.addLink(2, 3);
+
+        GraphStore store = builder.build();
+
+        CloneResult result = clone(store, 2);
+        int clone = result.getCloneIds()[0];
+        int[] outgoing = outgoing(store, clone, false);
+
+        Assert.assertSame(store.getName(2), store.getName(clone));
+        Assert.assertSame(store.getDescription(2), store.getDescription(clone));
+
+        store.addEntity(clone, "Changed", null);
+
+        Assert.assertEquals("Changed", store.getName(clone));
+        Assert.assertNull(store.getDescription(clone));
+        Assert.assertEquals("Entity2", store.getName(2));
+        Assert.assertEquals("Description2", store.getDescription(2));
+        Assert.assertArrayEquals(outgoing, outgoing(store, clone, false));
+
+        int secondClone = clone(store, 2).getCloneIds()[0];
+        store.addEntity(2, "Original", "Changed");
+
+        Assert.assertEquals("Entity2", store.getName(secondClone));
+        Assert.assertEquals("Description2", store.getDescription(secondClone));
+        Assert.assertEquals("Changed", store.getName(clone));
+        Assert.assertArrayEquals(new int[]{3}, outgoing(store, 2, false));
+        Assert.assertEquals(7, store.getEntityCount());
+    }
+
+    private static CloneResult clone(GraphStore store, int root) {
+        App app = new App(store);
+        return app.clone(root);
+    }
+
+    private static int[] outgoing(GraphStore store, int id, boolean incoming) {
+
+        IntList list = new IntList();
+
+        if (incoming) {
+            store.copyIncoming(id, list);
+        } else {
+            store.copyOutgoing(id, list);
+        }
+
+        return list.toArray();
+    }
+
+    private static List<String> links(GraphStore store, int fromIndex) {
+
+        List<String> links = new ArrayList<>();
+        LinkCursor cursor = store.linkCursor(fromIndex);
+
+        while (cursor.next()) {
+            links.add(cursor.from() + "->" + cursor.to());
+        }
+
+        return links;
+    }
+}
@@ -0,0 +1,168 @@
+package app.store;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.util.IntList;
+import org.junit.Assert;
+import org.junit.Test;
+import parser.ParsingResult;
+import parser.ParsingSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class GraphBuilderTest {
+
+    /**
+     * Test that links resolved while parsing and links deferred until entities are parsed give the same adjacency,
+     * in the same order, as links resolved after parsing, whether links come before, after or among entities
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testDeferredLinks() throws InvalidEntityLinkException {
+
+        Random random = new Random(23);
+
+        for (int round = 0; round < 20; round++) {
+
+            // Large graphs are resolved in several batches while parsing, the last entity is linked
+            // only in the second half of the links, so resolution stops after some batches
+            int entityCount = 2 + random.nextInt(50);
+            int[][] links = new int[round % 2 == 0 ? 10_000 : random.nextInt(200)][];
+            for (int i = 0; i < links.length; i++) {
+                int range = i < links.length / 2 ? entityCount - 1 : entityCount;
+                links[i] = new int[]{1 + random.nextInt(range), 1 + random.nextInt(range)};
+            }
+
+            ParsingResult result = new ParsingResult();
+            feed(result, entityCount, links, entityCount);
+            ObjectGraphStore expected = new ObjectGraphStore(result);
+
+            for (int entitiesFirst : new int[]{entityCount, entityCount - 1, 0, random.nextInt(entityCount + 1)}) {
+
+                ObjectGraphBuilder objectBuilder = new ObjectGraphBuilder();
+                feed(objectBuilder, entityCount, links, entitiesFirst);
+                assertSameAdjacency(expected, objectBuilder.build(), entityCount);
+
+                CompactGraphBuilder compactBuilder = new CompactGraphBuilder();
+                feed(compactBuilder, entityCount, links, entitiesFirst);
+                CompactGraphStore compact = compactBuilder.build();
+                assertSameAdjacency(expected, compact, entityCount);
+
+                CompactGraphBuilder deferredBuilder = new CompactGraphBuilder();
+                feed(deferredBuilder, entityCount, links, 0);
+                Assert.assertEquals(links(deferredBuilder.build()), links(compact));
+            }
+        }
+    }
+
+    /**
+     * Test that link to a missing entity is reported the same way whether links are resolved while parsing or after
+     */
+    @Test
+    public void testInvalidLinks() {
+
+        int[][] batch = new int[5000][];
+        Arrays.fill(batch, new int[]{1, 2});
+
+        int[][][] cases = {
+                {{1, 2}, {3, 2}, {1, 4}},
+                {{1, 2}, {2, 5}, {6, 1}},
+                concat(batch, new int[][]{{7, 1}, {1, 2}}),
+        };
+
+        for (int[][] links : cases) {
+
+            ParsingResult result = new ParsingResult();
+            feed(result, 3, links, 3);
+            String expected = message(() -> new ObjectGraphStore(result));
+            Assert.assertNotNull(expected);
+
+            for (int entitiesFirst : new int[]{3, 1, 0}) {
+
+                ObjectGraphBuilder objectBuilder = new ObjectGraphBuilder();
+                feed(objectBuilder, 3, links, entitiesFirst);
+                Assert.assertEquals(expected, message(objectBuilder::build));
+
+                CompactGraphBuilder compactBuilder = new CompactGraphBuilder();
+                feed(compactBuilder, 3, links, entitiesFirst);
+                Assert.assertEquals(expected, message(compactBuilder::build));
+            }
+        }
+    }
+
+    private static int[][] concat(int[][] first, int[][] second) {
+        int[][] links = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, links, first.length, second.length);
+        return links;
+    }
+
+    /**
+     * Adds entities 1 to entityCount and the links, entitiesFirst entities are added before the links
+     */
+    private static void feed(ParsingSink sink, int entityCount, int[][] links, int entitiesFirst) {
+
+        for (int id = 1; id <= entitiesFirst; id++) {
+            sink.addEntity(id, "Entity" + id, null);
+        }
+
+        for (int[] link : links) {
+            sink.addLink(link[0], link[1]);
+        }
+
+        for (int id = entitiesFirst + 1; id <= entityCount; id++) {
+            sink.addEntity(id, "Entity" + id, null);
+        }
+    }
+
+    private static void assertSameAdjacency(GraphStore expected, GraphStore actual, int entityCount) {
+
+        Assert.assertEquals(expected.getLinkCount(), actual.getLinkCount());
+        Assert.assertEquals(expected.getLargestId(), actual.getLargestId());
+
+        for (int id = 1; id <= entityCount; id++) {
+            Assert.assertEquals(expected.getName(id), actual.getName(id));
+            Assert.assertArrayEquals(neighbours(expected, id, false), neighbours(actual, id, false));
+            Assert.assertArrayEquals(neighbours(expected, id, true), neighbours(actual, id, true));
+        }
+    }
+
+    private static int[] neighbours(GraphStore store, int id, boolean incoming) {
+
+        IntList target = new IntList();
+
+        if (incoming) {
+            store.copyIncoming(id, target);
+        } else {
+            store.copyOutgoing(id, target);
+        }
+
+        return target.toArray();
+    }
+
+    private static List<String> links(GraphStore store) {
+
+        List<String> links = new ArrayList<>();
+        LinkCursor cursor = store.linkCursor(0);
+
+        while (cursor.next()) {
+            links.add(cursor.from() + "->" + cursor.to());
+        }
+
+        return links;
+    }
+
+    private static String message(Build build) {
+        try {
+            build.run();
+            return null;
+        } catch (InvalidEntityLinkException e) {
+            return e.getMessage();
+        }
+    }
+
+    private interface Build {
+        GraphStore run() throws InvalidEntityLinkException;
+    }
+}
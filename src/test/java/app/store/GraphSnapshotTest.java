@@ -0,0 +1,140 @@
+package app.store;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.util.IntList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import parser.InvalidJsonFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class GraphSnapshotTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+    private static final String VALID_NULL_JSON_FILE = "data/valid-null.json";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that loaded snapshot has the same entities, strings and adjacency in the same order,
+     * including entities and links added by cloning before the snapshot was written
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testRoundTrip() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        for (StorageMode storageMode : StorageMode.values()) {
+            for (String file : new String[]{VALID_JSON_FILE, VALID_CYCLIC_JSON_FILE, VALID_NULL_JSON_FILE}) {
+
+                App app = new App(storageMode);
+                app.parseFile(file);
+                app.clone(3);
+
+                File snapshot = folder.newFile();
+                app.writeSnapshot(snapshot.getPath());
+
+                GraphStore expected = app.getStore();
+                GraphStore actual = GraphSnapshot.load(snapshot, new HeapMemory());
+
+                Assert.assertEquals(expected.getLargestId(), actual.getLargestId());
+                Assert.assertEquals(expected.getEntityCount(), actual.getEntityCount());
+                Assert.assertEquals(expected.getLinkCount(), actual.getLinkCount());
+
+                EntityCursor entities = expected.entityCursor();
+
+                while (entities.next()) {
+                    int id = entities.id();
+                    Assert.assertEquals(entities.name(), actual.getName(id));
+                    Assert.assertEquals(entities.description(), actual.getDescription(id));
+                    Assert.assertArrayEquals(neighbours(expected, id, false), neighbours(actual, id, false));
+                    Assert.assertArrayEquals(neighbours(expected, id, true), neighbours(actual, id, true));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that app clones snapshot input the same way as JSON input
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testCloneFromSnapshot() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        File snapshot = folder.newFile();
+
+        App jsonApp = new App(StorageMode.COMPACT);
+        jsonApp.parseFile(VALID_JSON_FILE);
+        jsonApp.writeSnapshot(snapshot.getPath());
+
+        App snapshotApp = new App();
+        snapshotApp.parseFile(snapshot.getPath());
+        Assert.assertEquals("EntityC", snapshotApp.findEntity(7).getName());
+
+        CloneResult jsonResult = jsonApp.clone(5);
+        CloneResult snapshotResult = snapshotApp.clone(5);
+
+        Assert.assertArrayEquals(jsonResult.getOriginalIds(), snapshotResult.getOriginalIds());
+        Assert.assertArrayEquals(jsonResult.getCloneIds(), snapshotResult.getCloneIds());
+
+        // Snapshot keeps string references valid after new strings are added
+        snapshotApp.getStore().addEntity(100, "Added", null);
+        Assert.assertEquals("Added", snapshotApp.getStore().getName(100));
+        Assert.assertEquals("EntityD", snapshotApp.getStore().getName(11));
+
+        Assert.assertEquals(jsonApp.printElementsAndLinks(),
+                print(snapshotApp).replace(",{\"name\":\"Added\",\"entity_id\":100}", ""));
+    }
+
+    /**
+     * Test that JSON file is not taken for a snapshot
+     * @throws IOException
+     */
+    @Test
+    public void testNotSnapshot() throws IOException {
+
+        Assert.assertFalse(GraphSnapshot.isSnapshot(new File(VALID_JSON_FILE)));
+        Assert.assertFalse(GraphSnapshot.isSnapshot(folder.newFile()));
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Not a graph snapshot");
+
+        GraphSnapshot.load(new File(VALID_JSON_FILE), new HeapMemory());
+    }
+
+    private static String print(App app) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        app.writeElementsAndLinks(out, 16);
+
+        return out.toString("UTF-8");
+    }
+
+    private static int[] neighbours(GraphStore store, int id, boolean incoming) {
+
+        IntList list = new IntList();
+
+        if (incoming) {
+            store.copyIncoming(id, list);
+        } else {
+            store.copyOutgoing(id, list);
+        }
+
+        return list.toArray();
+    }
+}
@@ -0,0 +1,62 @@
+package app.store;
+
+import app.App;
+import app.exceptions.InvalidEntityLinkException;
+import app.util.IntList;
+import org.junit.Assert;
+import org.junit.Test;
+import parser.ParsingResult;
+
+public class ObjectGraphStoreTest {
+
+    /**
+     * Test that object store clones share name and description with their originals and that replacing them
+     * on either entity does not change the other
+     * @throws InvalidEntityLinkException
+     */
+    @Test
+    public void testCloneSharesAttributes() throws InvalidEntityLinkException {
+
+        ParsingResult parsingResult = new ParsingResult();
+
+        for (int id = 1; id <= 3; id++) {
+            parsingResult.addEntity(id, "Entity" + id, "Description" + id);
+        }
+
+        parsingResult.addLink(1, 2);
+        parsingResult.addLink(2, 3);
+
+        ObjectGraphStore store = new ObjectGraphStore(parsingResult);
+        App app = new App(store);
+
+        int clone = app.clone(2).getCloneIds()[0];
+        int[] outgoing = outgoing(store, clone);
+
+        Assert.assertSame(store.getName(2), store.getName(clone));
+        Assert.assertSame(store.getDescription(2), store.getDescription(clone));
+
+        store.addEntity(clone, "Changed", null);
+
+        Assert.assertEquals("Changed", store.getName(clone));
+        Assert.assertNull(store.getDescription(clone));
+        Assert.assertEquals("Entity2", store.getName(2));
+        Assert.assertEquals("Description2", store.getDescription(2));
+        Assert.assertArrayEquals(outgoing, outgoing(store, clone));
+
+        int secondClone = app.clone(2).getCloneIds()[0];
+        store.addEntity(2, "Original", "Changed");
+
+        Assert.assertEquals("Entity2", store.findEntity(secondClone).getName());
+        Assert.assertEquals("Description2", store.findEntity(secondClone).getDescription());
+        Assert.assertEquals("Original", store.findEntity(2).getName());
+        Assert.assertEquals("Changed", store.getName(clone));
+        Assert.assertArrayEquals(new int[]{3}, outgoing(store, 2));
+        Assert.assertEquals(7, store.getEntityCount());
+    }
+
+    private static int[] outgoing(GraphStore store, int id) {
+        IntList list = new IntList();
+        store.copyOutgoing(id, list);
+        return list.toArray();
+    }
+}
@@ -0,0 +1,98 @@
+package app.store.offheap;
+
+import app.App;
+import app.CloneResult;
+import app.exceptions.InvalidEntityLinkException;
+import app.store.GraphStore;
+import app.store.StorageMode;
+import app.store.StringTable;
+import app.util.IntArray;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parser.InvalidJsonFormatException;
+
+import java.io.IOException;
+
+public class OffHeapMemoryTest {
+
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that int array keeps values across chunk boundaries in both direct and mapped memory
+     * @throws IOException
+     */
+    @Test
+    public void testIntArray() throws IOException {
+
+        for (OffHeapMemory memory : new OffHeapMemory[]{OffHeapMemory.direct(), OffHeapMemory.mapped(folder.getRoot())}) {
+
+            IntArray array = memory.allocate(0);
+            int count = memory.getChunkBytes() / Integer.BYTES * 3 + 5;
+
+            for (int i = 0; i < count; i++) {
+                array.add(i * 3);
+            }
+
+            Assert.assertEquals(count, array.size());
+            Assert.assertEquals(0, array.get(0));
+            Assert.assertEquals((count - 1) * 3, array.get(count - 1));
+
+            array.resize(10);
+            array.resize(20);
+            Assert.assertEquals(27, array.get(9));
+            Assert.assertEquals(0, array.get(10));
+        }
+    }
+
+    /**
+     * Test that string table returns stored strings including null, non ASCII and strings larger than a chunk
+     */
+    @Test
+    public void testStringTable() {
+
+        OffHeapMemory memory = OffHeapMemory.direct();
+        StringTable table = memory.newStringTable();
+
+        StringBuilder large = new StringBuilder();
+        while (large.length() <= memory.getChunkBytes()) {
+            large.append("Entity");
+        }
+
+        int nullRef = table.add(null);
+        int unicodeRef = table.add("Entit\u00e4t \u2713");
+        int largeRef = table.add(large.toString());
+        int emptyRef = table.add("");
+
+        Assert.assertNull(table.get(nullRef));
+        Assert.assertEquals("Entit\u00e4t \u2713", table.get(unicodeRef));
+        Assert.assertEquals(large.toString(), table.get(largeRef));
+        Assert.assertEquals("", table.get(emptyRef));
+    }
+
+    /**
+     * Test that off heap storage clones the same way as object storage
+     * @throws InvalidJsonFormatException
+     * @throws InvalidEntityLinkException
+     * @throws IOException
+     */
+    @Test
+    public void testValidCyclicFile() throws InvalidJsonFormatException, InvalidEntityLinkException, IOException {
+
+        App app = new App(StorageMode.OFF_HEAP);
+        app.parseFile(VALID_CYCLIC_JSON_FILE);
+
+        CloneResult result = app.clone(app.findEntity(5));
+        GraphStore store = app.getStore();
+
+        Assert.assertArrayEquals(new int[]{13, 14, 15, 16, 17}, result.getCloneIds());
+        Assert.assertEquals("EntityC", store.getName(14));
+        Assert.assertEquals("More details about entity C", store.getDescription(14));
+        Assert.assertEquals(11, store.getLinkCount());
+        Assert.assertTrue(app.printElementsAndLinks().contains("{\"from\":16,\"to\":17}"));
+    }
+}
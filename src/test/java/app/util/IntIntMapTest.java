@@ -0,0 +1,50 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+    /**
+     * Test that values can be stored and looked up, including zero and negative keys
+     */
+    @Test
+    public void testPutAndGet() {
+
+        IntIntMap map = new IntIntMap(2);
+
+        map.put(0, 10);
+        map.put(-1, 11);
+        map.put(Integer.MIN_VALUE, 12);
+
+        for (int i = 1; i <= 10000; i++) {
+            map.put(i, i * 2);
+        }
+
+        Assert.assertEquals(10003, map.size());
+        Assert.assertEquals(10, map.get(0, -5));
+        Assert.assertEquals(11, map.get(-1, -5));
+        Assert.assertEquals(12, map.get(Integer.MIN_VALUE, -5));
+        Assert.assertEquals(20000, map.get(10000, -5));
+        Assert.assertEquals(-5, map.get(10001, -5));
+        Assert.assertFalse(map.containsKey(-2));
+    }
+
+    /**
+     * Test that putting existing key replaces the value without changing size
+     */
+    @Test
+    public void testReplace() {
+
+        IntIntMap map = new IntIntMap();
+
+        map.put(7, 1);
+        map.put(7, 2);
+        map.put(0, 1);
+        map.put(0, 2);
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(2, map.get(7, -1));
+        Assert.assertEquals(2, map.get(0, -1));
+    }
+}
@@ -0,0 +1,73 @@
+package app.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class LongHashSetTest {
+
+    /**
+     * Test that keys can be added and looked up, including zero and negative keys
+     */
+    @Test
+    public void testAddAndContains() {
+
+        LongHashSet set = new LongHashSet(2);
+
+        Assert.assertTrue(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.add(Long.MIN_VALUE));
+        Assert.assertFalse(set.add(0));
+
+        for (long i = 1; i <= 10000; i++) {
+            Assert.assertTrue(set.add(i << 32));
+        }
+
+        Assert.assertFalse(set.add(10000L << 32));
+        Assert.assertEquals(10003, set.size());
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertTrue(set.contains(Long.MIN_VALUE));
+        Assert.assertTrue(set.contains(5000L << 32));
+        Assert.assertFalse(set.contains(5000));
+        Assert.assertFalse(set.contains(Long.MAX_VALUE));
+
+        set.clear();
+
+        Assert.assertEquals(0, set.size());
+        Assert.assertFalse(set.contains(0));
+        Assert.assertFalse(set.contains(1L << 32));
+    }
+
+    /**
+     * Test that random adds and removes give the same set as {@link HashSet}, keys from a small range
+     * collide often, so keys moved back after removals must stay reachable
+     */
+    @Test
+    public void testRemove() {
+
+        Random random = new Random(23);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+
+        for (int i = 0; i < 200000; i++) {
+
+            long key = random.nextInt(2000) - 100;
+
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                Assert.assertEquals(expected.add(key), set.add(key));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), set.size());
+
+        for (long key = -100; key < 1900; key++) {
+            Assert.assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+}
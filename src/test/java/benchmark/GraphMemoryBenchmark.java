@@ -0,0 +1,90 @@
+package benchmark;
+
+import app.exceptions.InvalidEntityLinkException;
+import app.store.CompactGraphBuilder;
+import app.store.GraphStore;
+import app.store.ObjectGraphStore;
+import app.store.offheap.OffHeapMemory;
+import parser.ParsingResult;
+import parser.ParsingSink;
+
+import java.util.Random;
+
+/**
+ * Compares retained heap of object graph, compact graph and off heap compact graph for the same random graph.
+ * Off heap run needs -XX:MaxDirectMemorySize large enough for the graph.
+ * <p>
+ * Usage: GraphMemoryBenchmark [entityCount] [linksPerEntity]
+ */
+public class GraphMemoryBenchmark {
+
+    private static final String[] NAMES = {"EntityA", "EntityB", "EntityC", "EntityD"};
+
+    public static void main(String[] args) throws InvalidEntityLinkException {
+
+        int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int linksPerEntity = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        long baseline = usedHeap();
+
+        ParsingResult parsingResult = new ParsingResult();
+        generate(parsingResult, entityCount, linksPerEntity);
+        GraphStore objectStore = new ObjectGraphStore(parsingResult);
+        parsingResult = null;
+
+        long objectBytes = usedHeap() - baseline;
+        print("object", objectStore, objectBytes);
+        objectStore = null;
+
+        baseline = usedHeap();
+
+        CompactGraphBuilder builder = new CompactGraphBuilder();
+        generate(builder, entityCount, linksPerEntity);
+        GraphStore compactStore = builder.build();
+        builder = null;
+
+        long compactBytes = usedHeap() - baseline;
+        print("compact", compactStore, compactBytes);
+        compactStore = null;
+
+        baseline = usedHeap();
+
+        builder = new CompactGraphBuilder(OffHeapMemory.direct());
+        generate(builder, entityCount, linksPerEntity);
+        GraphStore offHeapStore = builder.build();
+        builder = null;
+
+        print("off-heap", offHeapStore, usedHeap() - baseline);
+
+        System.out.println(String.format("ratio    %.1fx", (double) objectBytes / compactBytes));
+    }
+
+    private static void generate(ParsingSink sink, int entityCount, int linksPerEntity) {
+
+        Random random = new Random(1);
+
+        for (int id = 1; id <= entityCount; id++) {
+            sink.addEntity(id, NAMES[id % NAMES.length], null);
+        }
+
+        for (int i = 0; i < entityCount * linksPerEntity; i++) {
+            sink.addLink(1 + random.nextInt(entityCount), 1 + random.nextInt(entityCount));
+        }
+    }
+
+    private static void print(String name, GraphStore store, long bytes) {
+        System.out.println(String.format("%-8s %,d entities, %,d links: %,d bytes, %.1f bytes per link",
+                name, store.getEntityCount(), store.getLinkCount(), bytes, (double) bytes / store.getLinkCount()));
+    }
+
+    private static long usedHeap() {
+
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
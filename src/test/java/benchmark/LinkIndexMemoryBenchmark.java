@@ -0,0 +1,71 @@
+package benchmark;
+
+import app.model.Link;
+import app.store.LinkIndex;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares retained heap of {@link LinkIndex} and {@link HashSet} of {@link Link} objects for the same random links.
+ * Insert and lookup time are measured by the JMH LinkIndexBenchmark.
+ * <p>
+ * Usage: LinkIndexMemoryBenchmark [linkCount] [entityCount]
+ */
+public class LinkIndexMemoryBenchmark {
+
+    public static void main(String[] args) {
+
+        int linkCount = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int entityCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        int[] from = new int[linkCount];
+        int[] to = new int[linkCount];
+        Random random = new Random(1);
+
+        for (int i = 0; i < linkCount; i++) {
+            from[i] = 1 + random.nextInt(entityCount);
+            to[i] = 1 + random.nextInt(entityCount);
+        }
+
+        long baseline = usedHeap();
+
+        Set<Link> set = new HashSet<>();
+        for (int i = 0; i < linkCount; i++) {
+            set.add(new Link(from[i], to[i]));
+        }
+
+        long setBytes = usedHeap() - baseline;
+        print("HashSet", set.size(), setBytes);
+        set = null;
+
+        baseline = usedHeap();
+
+        LinkIndex index = new LinkIndex();
+        for (int i = 0; i < linkCount; i++) {
+            index.add(from[i], to[i]);
+        }
+
+        long indexBytes = usedHeap() - baseline;
+        print("LinkIndex", index.size(), indexBytes);
+
+        System.out.println(String.format("ratio     %.1fx", (double) setBytes / indexBytes));
+    }
+
+    private static void print(String name, int links, long bytes) {
+        System.out.println(String.format("%-9s %,d links: %,d bytes, %.1f bytes per link",
+                name, links, bytes, (double) bytes / links));
+    }
+
+    private static long usedHeap() {
+
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -6,6 +6,9 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class FileParserTest {
 
@@ -33,6 +36,48 @@ public class FileParserTest {
         Assert.assertEquals(11, parsingResult.getLargestId());
     }
 
+    /**
+     * Test that memory mapped input gives the same result as regular input
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testValidJson_mapped() throws IOException, InvalidJsonFormatException {
+
+        ParsingResult expected = new FileParser(VALID_JSON_FILE).parse();
+        ParsingResult parsingResult = new FileParser(VALID_JSON_FILE, true).parse();
+
+        Assert.assertEquals(expected.getEntities().keySet(), parsingResult.getEntities().keySet());
+        Assert.assertEquals(expected.getLinks(), parsingResult.getLinks());
+        Assert.assertEquals(expected.getLargestId(), parsingResult.getLargestId());
+    }
+
+    /**
+     * Test that mapped input reads files spanning several mapped windows
+     * @throws IOException
+     */
+    @Test
+    public void testMappedWindows() throws IOException {
+
+        byte[] expected = Files.readAllBytes(Paths.get(VALID_JSON_FILE));
+        byte[] actual = new byte[expected.length];
+
+        try (InputStream in = new MappedFileInputStream(VALID_JSON_FILE, 7)) {
+
+            int length = 0;
+            int count;
+
+            while ((count = in.read(actual, length, Math.min(10, actual.length - length))) > 0) {
+                length += count;
+            }
+
+            Assert.assertEquals(expected.length, length);
+            Assert.assertEquals(-1, in.read());
+        }
+
+        Assert.assertArrayEquals(expected, actual);
+    }
+
     /**
      * Test that invalid json is handled correctly
      * @throws IOException
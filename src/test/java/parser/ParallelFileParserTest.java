@@ -0,0 +1,208 @@
+package parser;
+
+import app.model.Entity;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ParallelFileParserTest {
+
+    private static final String VALID_JSON_FILE = "data/valid.json";
+    private static final String VALID_CYCLIC_JSON_FILE = "data/valid-cyclic.json";
+    private static final String VALID_NULL_JSON_FILE = "data/valid-null.json";
+    private static final String INVALID_JSON_FILE = "data/invalid.json";
+    private static final String INVALID_JSON_MISSING_FIELDS_FILE = "data/invalid-json-missing-fields.json";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that parallel parser gives the same result as sequential parser, with chunks of single objects
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testSameAsFileParser() throws IOException, InvalidJsonFormatException {
+
+        for (String file : new String[]{VALID_JSON_FILE, VALID_CYCLIC_JSON_FILE, VALID_NULL_JSON_FILE}) {
+            assertSameResult(file);
+        }
+    }
+
+    /**
+     * Test that strings with brackets, quotes, escapes and non ASCII characters do not confuse the pre-scan
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testTrickyStrings() throws IOException, InvalidJsonFormatException {
+
+        File file = folder.newFile("tricky.json");
+
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write("{ \"links\" : [ {\"from\": 2, \"to\": 1} ],\n\"entities\": [\n");
+            writer.write("{\"name\": \"a}]\\\"{[\\\\\", \"entity_id\": 1, \"extra\": \"]}\"},\n");
+            writer.write("{\"entity_id\": 2, \"name\": \"Entit\u00e4t \u2713\", \"description\": \"\\u0041\"}\n");
+            writer.write("] }\n");
+        }
+
+        assertSameResult(file.getPath());
+
+        ParsingResult result = new ParallelFileParser(file.getPath(), 2, 1).parse();
+        Assert.assertEquals("a}]\"{[\\", result.getEntities().get(1).getName());
+        Assert.assertEquals("Entit\u00e4t \u2713", result.getEntities().get(2).getName());
+        Assert.assertEquals("A", result.getEntities().get(2).getDescription());
+    }
+
+    /**
+     * Test that escapes and brackets falling on the boundaries of pre-scan blocks are handled
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testBlockBoundaries() throws IOException, InvalidJsonFormatException {
+
+        File file = folder.newFile("large.json");
+
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+
+            writer.write("{\"entities\":[");
+
+            // Names of varying length shift escapes across every offset of a block
+            for (int id = 1; id <= 30_000; id++) {
+                writer.write(id > 1 ? ",\n" : "");
+                writer.write("{\"entity_id\":" + id + ",\"name\":\"");
+                for (int i = 0; i < id % 29; i++) {
+                    writer.write("\\\"}]\\\\");
+                }
+                writer.write("\", \"extra\": \"[[{}]]\"}");
+            }
+
+            writer.write("],\"links\":[{\"from\":1,\"to\":2}]}");
+        }
+
+        Assert.assertTrue(file.length() > 2 << 20);
+        assertSameResult(file.getPath());
+    }
+
+    /**
+     * Test that repeated names and descriptions are parsed to the same instance, also across chunks
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testInternStrings() throws IOException, InvalidJsonFormatException {
+
+        File file = folder.newFile("repeated.json");
+
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write("{\"entities\":[");
+            for (int id = 1; id <= 1000; id++) {
+                writer.write(id > 1 ? ",\n" : "");
+                writer.write("{\"entity_id\":" + id + ",\"name\":\"Name " + (id % 10) + "\",\"description\":\"Name 0\"}");
+            }
+            writer.write("],\"links\":[]}");
+        }
+
+        for (JsonFileParser parser : new JsonFileParser[]{
+                new FileParser(file.getPath(), false, new StringPool()),
+                new ParallelFileParser(file.getPath(), 3, 64, new StringPool())}) {
+
+            ParsingResult result = parser.parse();
+
+            Entity first = result.getEntities().get(10);
+            Assert.assertEquals("Name 0", first.getName());
+            Assert.assertSame(first.getName(), first.getDescription());
+
+            for (Entity entity : result.getEntities().values()) {
+                Assert.assertSame(result.getEntities().get(10 + entity.getId() % 10).getName(), entity.getName());
+                Assert.assertSame(first.getName(), entity.getDescription());
+            }
+        }
+
+        StringPool pool = new StringPool();
+        new ParallelFileParser(file.getPath(), 3, 64, pool).parse();
+
+        Assert.assertEquals(10, pool.size());
+        Assert.assertEquals(2000, pool.getLookups());
+        Assert.assertTrue(pool.getSavedBytes() > 0);
+    }
+
+    /**
+     * Test that invalid json is handled correctly
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testInvalidJson() throws IOException, InvalidJsonFormatException {
+        thrown.expect(InvalidJsonFormatException.class);
+
+        new ParallelFileParser(INVALID_JSON_FILE, 2, 1).parse();
+    }
+
+    /**
+     * Test that valid json but with missing necessary fields is handled correctly
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testInvalidJson_missingFields() throws IOException, InvalidJsonFormatException {
+        thrown.expect(InvalidJsonFormatException.class);
+        thrown.expectMessage("entity_id property not found");
+
+        new ParallelFileParser(INVALID_JSON_MISSING_FIELDS_FILE, 2, 1).parse();
+    }
+
+    /**
+     * Test that files the scanner does not split are read through memory mapping when it is selected
+     * @throws IOException
+     * @throws InvalidJsonFormatException
+     */
+    @Test
+    public void testMappedFallback() throws IOException, InvalidJsonFormatException {
+
+        ParserOptions options = new ParserOptions();
+        options.setThreads(2);
+        options.setMapped(true);
+
+        Assert.assertTrue(((ParallelFileParser) options.createParser(INVALID_JSON_FILE)).sequentialParser().isMapped());
+        Assert.assertFalse(new ParallelFileParser(INVALID_JSON_FILE, 2, 1).sequentialParser().isMapped());
+
+        thrown.expect(InvalidJsonFormatException.class);
+        thrown.expectMessage("entity_id property not found");
+
+        new ParallelFileParser(INVALID_JSON_MISSING_FIELDS_FILE, 2, 1, null, true).parse();
+    }
+
+    private static void assertSameResult(String file) throws IOException, InvalidJsonFormatException {
+
+        ParsingResult expected = new FileParser(file).parse();
+
+        for (int chunkBytes : new int[]{1, 64, ParallelFileParser.DEFAULT_CHUNK_BYTES}) {
+
+            ParsingResult actual = new ParallelFileParser(file, 3, chunkBytes).parse();
+
+            Assert.assertEquals(expected.getLargestId(), actual.getLargestId());
+            Assert.assertEquals(expected.getLinks(), actual.getLinks());
+            Assert.assertEquals(expected.getEntities().keySet(), actual.getEntities().keySet());
+
+            for (Entity entity : expected.getEntities().values()) {
+                Entity other = actual.getEntities().get(entity.getId());
+                Assert.assertEquals(entity.getName(), other.getName());
+                Assert.assertEquals(entity.getDescription(), other.getDescription());
+            }
+        }
+    }
+}